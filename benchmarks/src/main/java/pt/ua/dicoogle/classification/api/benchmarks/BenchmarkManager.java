@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Optional;
+
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+
+import pt.ua.dicoogle.classification.api.AbstractClassifierManager;
+import pt.ua.dicoogle.sdk.StorageInputStream;
+
+/** A classifier manager of stub classifiers, reading from an in-memory storage.
+ */
+public class BenchmarkManager extends AbstractClassifierManager<StubClassifier, float[], StubDescriptor> {
+    private final InMemoryStorage storage;
+
+    public BenchmarkManager(InMemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    protected Optional<StorageInputStream> fromStorage(URI item) {
+        for (StorageInputStream s : storage.at(item)) {
+            return Optional.of(s);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    protected boolean canClassify(String criterion, DicomObject obj, Object... parameters) {
+        return "CT".equals(obj.getString(Tag.Modality));
+    }
+
+    @Override
+    protected float[] toDataPoint(DicomObject dicomObject) throws IOException {
+        byte[] bytes = dicomObject.getBytes(Tag.PixelData);
+        ShortBuffer pixels = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        float[] out = new float[pixels.remaining()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = pixels.get(i) & 0xFFFF;
+        }
+        return out;
+    }
+
+    @Override
+    protected StubClassifier createClassifier(StubDescriptor descriptor) {
+        return new StubClassifier(descriptor.getNumClasses(), descriptor.getPasses());
+    }
+
+    @Override
+    public String getName() {
+        return "bench";
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ua.dicoogle.classification.api.Classifiers;
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+/** Benchmarks of the conversions between prediction dictionaries and search results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClassifiersBenchmark {
+
+    @Param({"5", "1000"})
+    public int numClasses;
+
+    private Map<String, Double> predictions;
+    private Collection<SearchResult> results;
+
+    @Setup
+    public void setup() {
+        predictions = new HashMap<>();
+        for (int i = 0; i < numClasses; i++) {
+            predictions.put("organ#class" + i, 1.0 / (i + 1));
+        }
+        results = Classifiers.toResult("bench", predictions);
+    }
+
+    @Benchmark
+    public Collection<SearchResult> toResult() {
+        return Classifiers.toResult("bench", predictions);
+    }
+
+    @Benchmark
+    public Map<URI, Double> toDictionary() {
+        return Classifiers.toDictionary(results);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Compares two JMH result files in CSV format ({@code -rf csv}), printing the relative change of each
+ * benchmark's score. A change is flagged as significant when the scores differ by more than the sum of
+ * their error margins.
+ *
+ * Usage: {@code java -cp target/benchmarks.jar pt.ua.dicoogle.classification.api.benchmarks.CompareResults
+ * baseline.csv candidate.csv}
+ */
+public final class CompareResults {
+
+    private CompareResults() {}
+
+    private static final class Row {
+        final double score;
+        final double error;
+        final String unit;
+
+        Row(double score, double error, String unit) {
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.csv> <candidate.csv>");
+            System.exit(2);
+        }
+        Map<String, Row> baseline = read(args[0]);
+        Map<String, Row> candidate = read(args[1]);
+        System.out.println(String.format("%-90s %14s %14s %9s", "Benchmark", "Baseline", "Candidate", "Change"));
+        for (Map.Entry<String, Row> e : baseline.entrySet()) {
+            Row a = e.getValue();
+            Row b = candidate.get(e.getKey());
+            if (b == null) {
+                System.out.println(String.format("%-90s %14.3f %14s", e.getKey(), a.score, "-"));
+                continue;
+            }
+            double change = (b.score - a.score) / a.score * 100;
+            boolean significant = Math.abs(b.score - a.score) > a.error + b.error;
+            System.out.println(String.format("%-90s %14.3f %14.3f %+8.1f%% %s %s", e.getKey(), a.score, b.score,
+                    change, a.unit, significant ? "*" : ""));
+        }
+        for (String key : candidate.keySet()) {
+            if (!baseline.containsKey(key)) {
+                System.out.println(String.format("%-90s %14s %14.3f", key, "-", candidate.get(key).score));
+            }
+        }
+        System.out.println("(*) difference larger than the sum of both error margins");
+    }
+
+    private static Map<String, Row> read(String path) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+        Map<String, Row> rows = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return rows;
+        }
+        List<String> header = split(lines.get(0));
+        int iName = header.indexOf("Benchmark");
+        int iMode = header.indexOf("Mode");
+        int iThreads = header.indexOf("Threads");
+        int iScore = header.indexOf("Score");
+        int iError = header.indexOf("Score Error (99.9%)");
+        int iUnit = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> cols = split(line);
+            StringBuilder key = new StringBuilder(cols.get(iName))
+                    .append(" [").append(cols.get(iMode)).append(", t=").append(cols.get(iThreads));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < cols.size() && !cols.get(i).isEmpty()) {
+                    key.append(", ").append(header.get(i).substring(7)).append('=').append(cols.get(i));
+                }
+            }
+            key.append(']');
+            double error = parse(cols.get(iError));
+            rows.put(key.toString(), new Row(parse(cols.get(iScore)), Double.isNaN(error) ? 0 : error,
+                    cols.get(iUnit)));
+        }
+        return rows;
+    }
+
+    private static double parse(String s) {
+        try {
+            return Double.parseDouble(s.replace(',', '.'));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private static List<String> split(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString());
+        return out;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.dcm4che2.data.DicomObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ua.dicoogle.classification.api.condition.CustomDicomConditions;
+import pt.ua.dicoogle.classification.api.condition.DicomAttributeConditions;
+import pt.ua.dicoogle.classification.api.condition.DicomCondition;
+import pt.ua.dicoogle.classification.api.util.AxialType;
+
+/** Benchmarks of DICOM condition evaluation on a single object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConditionsBenchmark {
+
+    private DicomObject obj;
+    private DicomCondition modalityEquals;
+    private DicomCondition modalityMatchesRegex;
+    private DicomCondition modalityMatchesPattern;
+    private DicomCondition imageTypeExists;
+    private DicomCondition axialTypeEquals;
+
+    @Setup
+    public void setup() {
+        obj = SyntheticDicom.ctSlice(0, 16, 16);
+        modalityEquals = DicomAttributeConditions.equals("Modality", "CT");
+        modalityMatchesRegex = DicomAttributeConditions.matches("Modality", "C[TR]");
+        modalityMatchesPattern = DicomAttributeConditions.matches("Modality", Pattern.compile("C[TR]"));
+        imageTypeExists = DicomAttributeConditions.exists("ImageType");
+        axialTypeEquals = CustomDicomConditions.axialTypeEquals("transverse");
+    }
+
+    @Benchmark
+    public boolean attributeEquals() {
+        return modalityEquals.test(obj);
+    }
+
+    @Benchmark
+    public boolean attributeMatchesRegex() {
+        return modalityMatchesRegex.test(obj);
+    }
+
+    @Benchmark
+    public boolean attributeMatchesPattern() {
+        return modalityMatchesPattern.test(obj);
+    }
+
+    @Benchmark
+    public boolean attributeExists() {
+        return imageTypeExists.test(obj);
+    }
+
+    @Benchmark
+    public boolean axialTypeEquals() {
+        return axialTypeEquals.test(obj);
+    }
+
+    @Benchmark
+    public Optional<AxialType> ctAxialType() {
+        return AxialType.getCTAxialType(obj);
+    }
+}
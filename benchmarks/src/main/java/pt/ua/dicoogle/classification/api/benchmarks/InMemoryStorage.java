@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.io.DicomInputStream;
+
+import pt.ua.dicoogle.sdk.StorageInputStream;
+import pt.ua.dicoogle.sdk.StorageInterface;
+import pt.ua.dicoogle.sdk.settings.ConfigurationHolder;
+
+/** A read-only storage keeping whole files in memory, for benchmarking without disk I/O.
+ */
+public class InMemoryStorage implements StorageInterface {
+    public static final String SCHEME = "mem";
+
+    private final Map<URI, byte[]> files = new ConcurrentHashMap<>();
+
+    public URI put(String path, byte[] data) {
+        URI uri = URI.create(SCHEME + ":/" + path);
+        files.put(uri, data);
+        return uri;
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    public boolean handles(URI location) {
+        return SCHEME.equals(location.getScheme());
+    }
+
+    @Override
+    public Iterable<StorageInputStream> at(URI location, Object... parameters) {
+        byte[] data = files.get(location);
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new StorageInputStream() {
+            @Override
+            public URI getURI() {
+                return location;
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new ByteArrayInputStream(data);
+            }
+
+            @Override
+            public long getSize() throws IOException {
+                return data.length;
+            }
+        });
+    }
+
+    @Override
+    public URI store(DicomObject dicomObject, Object... parameters) {
+        throw new UnsupportedOperationException("read-only storage");
+    }
+
+    @Override
+    public URI store(DicomInputStream inputStream, Object... parameters) throws IOException {
+        throw new UnsupportedOperationException("read-only storage");
+    }
+
+    @Override
+    public void remove(URI location) {
+        files.remove(location);
+    }
+
+    @Override
+    public String getName() {
+        return "in-memory-storage";
+    }
+
+    @Override
+    public boolean enable() {
+        return true;
+    }
+
+    @Override
+    public boolean disable() {
+        return false;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void setSettings(ConfigurationHolder configurationHolder) {
+    }
+
+    @Override
+    public ConfigurationHolder getSettings() {
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ua.dicoogle.classification.api.PredictionIdentifier;
+
+/** Benchmarks of prediction identifier encoding and decoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PredictionIdentifierBenchmark {
+
+    private final PredictionIdentifier id = new PredictionIdentifier("organ-net", "organ", "liver");
+    private final URI uri = URI.create("class://organ-net/organ#liver");
+    private final URI nestedUri = URI.create("class://organ-net/body/abdomen/organ#liver");
+
+    @Benchmark
+    public URI toURIStatic() {
+        return PredictionIdentifier.toURI("organ-net", "organ", "liver");
+    }
+
+    @Benchmark
+    public URI toURI() {
+        return id.toURI();
+    }
+
+    @Benchmark
+    public PredictionIdentifier decompose() {
+        return PredictionIdentifier.decompose(uri);
+    }
+
+    @Benchmark
+    public PredictionIdentifier decomposeNested() {
+        return PredictionIdentifier.decompose(nestedUri);
+    }
+}
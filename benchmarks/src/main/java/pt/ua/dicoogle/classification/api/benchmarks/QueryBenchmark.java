@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+/** End-to-end benchmark of {@code query()} over synthetic DICOM files in an in-memory storage: storage
+ * retrieval, DICOM parsing, condition checking, data point conversion, prediction and result conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class QueryBenchmark {
+    private static final int NUM_ITEMS = 64;
+
+    @Param({"64", "512"})
+    public int size;
+
+    @Param({"organ", "organ,modality"})
+    public String criteria;
+
+    private BenchmarkManager manager;
+    private URI[] items;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        InMemoryStorage storage = new InMemoryStorage();
+        items = new URI[NUM_ITEMS];
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            items[i] = storage.put("series/" + i + ".dcm",
+                    SyntheticDicom.toFile(SyntheticDicom.ctSlice(i, size, size)));
+        }
+        manager = new BenchmarkManager(storage);
+        manager.register(new StubDescriptor("organ-net", 10, 1, "organ"));
+        manager.register(new StubDescriptor("modality-net", 5, 1, "modality"));
+    }
+
+    @Benchmark
+    public Iterable<SearchResult> query() {
+        URI item = items[next];
+        next = (next + 1) % NUM_ITEMS;
+        return manager.query(criteria, item);
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import pt.ua.dicoogle.classification.api.RequestClass;
+import pt.ua.dicoogle.classification.api.metrics.LatencyHistogram;
+import pt.ua.dicoogle.classification.api.metrics.Stage;
+import pt.ua.dicoogle.classification.api.metrics.WorkloadRecord;
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+/** Drives a recorded or synthetic workload against a {@link BenchmarkManager}, and reports throughput and latency
+ * percentiles. Recorded workloads are the files written by a
+ * {@link pt.ua.dicoogle.classification.api.metrics.WorkloadRecorder}. Recorded items are replaced by synthetic CT
+ * slices in an in-memory storage, and stub classifiers take the recorded prediction time of each call.
+ *
+ * Requests are issued at a fixed rate (open loop) when one is given, with latencies measured from the time each
+ * request was due, so that a stalled system is not hidden by fewer requests being issued. Otherwise, each of the
+ * client threads issues requests back to back (closed loop).
+ *
+ * Usage: {@code java -cp target/benchmarks.jar pt.ua.dicoogle.classification.api.benchmarks.ReplayWorkload
+ * [options]}, with the options:
+ * <ul>
+ * <li>{@code --workload <file>}: replay a recorded workload</li>
+ * <li>{@code --synthetic <n>}: issue n synthetic requests (default 10000, unless a workload is given)</li>
+ * <li>{@code --criteria <c1;c2;...>}: the criteria of synthetic requests, used in turn (default {@code organ})</li>
+ * <li>{@code --bulk <fraction>}: the fraction of synthetic requests marked as bulk (default 0)</li>
+ * <li>{@code --latency-us <us>}: the prediction time of synthetic requests, and of recorded requests without
+ * one (default 1000)</li>
+ * <li>{@code --concurrency <k>}: the number of client threads (default 8)</li>
+ * <li>{@code --rate <r>}: the request rate per second, or 0 for as fast as possible (default 0)</li>
+ * <li>{@code --items <n>} and {@code --size <s>}: the number and size of synthetic items (default 64 and 256)</li>
+ * </ul>
+ */
+public final class ReplayWorkload {
+
+    private ReplayWorkload() {}
+
+    private static final class Request {
+        final String criterion;
+        final int item;
+        final RequestClass requestClass;
+        final long latencyNanos;
+
+        Request(String criterion, int item, RequestClass requestClass, long latencyNanos) {
+            this.criterion = criterion;
+            this.item = item;
+            this.requestClass = requestClass;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("Usage: ReplayWorkload [--workload <file> | --synthetic <n>] [--criteria <c1;c2>]"
+                        + " [--bulk <fraction>] [--latency-us <us>] [--concurrency <k>] [--rate <r>]"
+                        + " [--items <n>] [--size <s>]");
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        long latencyNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(options.getOrDefault("latency-us", "1000")));
+        int numItems = Integer.parseInt(options.getOrDefault("items", "64"));
+        int size = Integer.parseInt(options.getOrDefault("size", "256"));
+
+        List<Request> requests;
+        if (options.containsKey("workload")) {
+            requests = readWorkload(options.get("workload"), numItems, latencyNanos);
+        } else {
+            requests = synthetic(Integer.parseInt(options.getOrDefault("synthetic", "10000")),
+                    options.getOrDefault("criteria", "organ").split(";"),
+                    Double.parseDouble(options.getOrDefault("bulk", "0")), numItems, latencyNanos);
+        }
+        if (requests.isEmpty()) {
+            System.err.println("Nothing to replay");
+            System.exit(1);
+        }
+
+        InMemoryStorage storage = new InMemoryStorage();
+        URI[] items = new URI[numItems];
+        for (int i = 0; i < numItems; i++) {
+            byte[] file = SyntheticDicom.toFile(SyntheticDicom.ctSlice(i, size, size));
+            items[i] = storage.put("replay/" + i + ".dcm", file);
+        }
+        BenchmarkManager manager = new BenchmarkManager(storage);
+        Set<String> criteria = new LinkedHashSet<>();
+        for (Request r : requests) {
+            for (String c : r.criterion.split(",")) {
+                criteria.add(c.trim());
+            }
+        }
+        for (String c : criteria) {
+            manager.register(new StubDescriptor(c + "-net", 10, 0, c));
+        }
+
+        Map<RequestClass, LatencyHistogram> latencies = new EnumMap<>(RequestClass.class);
+        for (RequestClass c : RequestClass.values()) {
+            latencies.put(c, new LatencyHistogram());
+        }
+        LongAdder errors = new LongAdder();
+        AtomicInteger next = new AtomicInteger();
+        Thread[] clients = new Thread[concurrency];
+        long start = System.nanoTime();
+        for (int t = 0; t < concurrency; t++) {
+            clients[t] = new Thread(() -> {
+                for (int i = next.getAndIncrement(); i < requests.size(); i = next.getAndIncrement()) {
+                    Request r = requests.get(i);
+                    long due = rate > 0 ? start + (long) (i * 1e9 / rate) : System.nanoTime();
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    Collection<SearchResult> results = manager.query(r.criterion, items[r.item], r.requestClass,
+                            new SimulatedLatency(r.latencyNanos));
+                    latencies.get(r.requestClass).record(System.nanoTime() - due);
+                    if (results.isEmpty()
+                            || results.stream().anyMatch(s -> !(s.getScore() >= 0 && s.getScore() <= 1))) {
+                        errors.increment();
+                    }
+                }
+            }, "replay-client-" + t);
+            clients[t].start();
+        }
+        for (Thread t : clients) {
+            t.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("requests=%d errors=%d concurrency=%d rate=%s elapsed=%.2fs "
+                + "throughput=%.1f/s", requests.size(), errors.sum(), concurrency,
+                rate > 0 ? String.valueOf(rate) : "max", seconds, requests.size() / seconds));
+        System.out.println(String.format("%-12s %8s %10s %10s %10s %10s %10s %10s", "class", "n", "mean", "p50",
+                "p90", "p99", "p99.9", "max"));
+        for (Map.Entry<RequestClass, LatencyHistogram> e : latencies.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            if (h.getCount() == 0) {
+                continue;
+            }
+            System.out.println(String.format("%-12s %8d %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f", e.getKey(),
+                    h.getCount(), h.getMean() / 1e6, h.getValueAtPercentile(50) / 1e6,
+                    h.getValueAtPercentile(90) / 1e6, h.getValueAtPercentile(99) / 1e6,
+                    h.getValueAtPercentile(99.9) / 1e6, h.getMax() / 1e6));
+        }
+        System.out.println("(latencies in milliseconds)");
+    }
+
+    private static List<Request> readWorkload(String file, int numItems, long defaultLatencyNanos)
+            throws IOException {
+        List<Request> requests = new ArrayList<>();
+        Map<String, Integer> itemIds = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                WorkloadRecord r = WorkloadRecord.parse(line);
+                // the same recorded item maps to the same synthetic item, to keep caches as effective
+                String key = r.getItem() != null ? r.getItem() : "#" + requests.size();
+                int item = itemIds.computeIfAbsent(key, k -> itemIds.size()) % numItems;
+                long predict = TimeUnit.MICROSECONDS.toNanos(r.getStageMicros(Stage.PREDICT));
+                RequestClass requestClass = r.getShape().contains(RequestClass.BULK.name())
+                        ? RequestClass.BULK : RequestClass.INTERACTIVE;
+                requests.add(new Request(r.getCriterion(), item, requestClass,
+                        predict > 0 ? predict : defaultLatencyNanos));
+            }
+        }
+        return requests;
+    }
+
+    private static List<Request> synthetic(int n, String[] criteria, double bulk, int numItems, long latencyNanos) {
+        List<Request> requests = new ArrayList<>(n);
+        // spread bulk requests evenly
+        double bulkSoFar = 0;
+        for (int i = 0; i < n; i++) {
+            bulkSoFar += bulk;
+            RequestClass requestClass = RequestClass.INTERACTIVE;
+            if (bulkSoFar >= 1) {
+                bulkSoFar -= 1;
+                requestClass = RequestClass.BULK;
+            }
+            requests.add(new Request(criteria[i % criteria.length], i % numItems, requestClass, latencyNanos));
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+/** A request parameter asking {@link StubClassifier} to take a given time per prediction, as a stand-in for a
+ * real model's inference time.
+ */
+public final class SimulatedLatency {
+    private final long nanos;
+
+    public SimulatedLatency(long nanos) {
+        this.nanos = nanos;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /** Find the simulated latency among a request's parameters.
+     *
+     * @param parameters the parameters
+     * @return the simulated latency in nanoseconds, 0 if there is none
+     */
+    public static long of(Object... parameters) {
+        for (Object p : parameters) {
+            if (p instanceof SimulatedLatency) {
+                return ((SimulatedLatency) p).nanos;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return nanos + "ns";
+    }
+}
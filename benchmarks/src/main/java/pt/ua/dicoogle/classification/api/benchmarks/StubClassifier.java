@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import pt.ua.dicoogle.classification.api.ClassifierInterface;
+
+/** A classifier stub which produces a fixed set of classes, after a configurable amount of work over the
+ * data point. If the request carries a {@link SimulatedLatency}, the stub also waits for that long, without
+ * using the CPU, like a model running on an accelerator.
+ */
+public class StubClassifier implements ClassifierInterface<float[]> {
+    private final String[] classes;
+    private final int passes;
+
+    public StubClassifier(int numClasses, int passes) {
+        this.classes = new String[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            this.classes[i] = "c" + i;
+        }
+        this.passes = passes;
+    }
+
+    @Override
+    public Map<String, Double> predict(String criterion, float[] item, Object... parameters) {
+        long latency = SimulatedLatency.of(parameters);
+        if (latency > 0) {
+            long deadline = System.nanoTime() + latency;
+            for (long left = latency; left > 0; left = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(left);
+            }
+        }
+        double acc = 0;
+        for (int p = 0; p < passes; p++) {
+            for (float v : item) {
+                acc += v;
+            }
+        }
+        double base = 1.0 / classes.length;
+        Map<String, Double> out = new HashMap<>(classes.length * 2);
+        for (int i = 0; i < classes.length; i++) {
+            out.put(classes[i], acc == 0 ? base : base * ((i + acc) % 1.0 + 0.5) / 1.5);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import pt.ua.dicoogle.classification.api.ClassifierDescriptor;
+
+/** A descriptor for {@link StubClassifier} instances.
+ */
+public class StubDescriptor implements ClassifierDescriptor {
+    private final String name;
+    private final String[] criteria;
+    private final int numClasses;
+    private final int passes;
+
+    public StubDescriptor(String name, int numClasses, int passes, String... criteria) {
+        this.name = name;
+        this.criteria = criteria;
+        this.numClasses = numClasses;
+        this.passes = passes;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Collection<String> getCriteria() {
+        return Arrays.asList(criteria);
+    }
+
+    @Override
+    public boolean isPreload() {
+        return true;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    public int getPasses() {
+        return passes;
+    }
+}
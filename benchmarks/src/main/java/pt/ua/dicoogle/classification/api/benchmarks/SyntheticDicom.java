@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.dcm4che2.data.BasicDicomObject;
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.data.UID;
+import org.dcm4che2.data.VR;
+import org.dcm4che2.io.DicomOutputStream;
+
+/** Factory of synthetic DICOM objects for the benchmarks.
+ */
+public final class SyntheticDicom {
+
+    private SyntheticDicom() {}
+
+    /** Create a synthetic axial CT slice with 16-bit monochrome pixel data.
+     *
+     * @param index the index of the instance in its series
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @return a new DICOM object
+     */
+    public static DicomObject ctSlice(int index, int rows, int columns) {
+        String iuid = "1.2.826.0.1.3680043.2.1125.1." + index;
+        BasicDicomObject obj = new BasicDicomObject();
+        obj.initFileMetaInformation(UID.CTImageStorage, iuid, UID.ExplicitVRLittleEndian);
+        obj.putString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
+        obj.putString(Tag.SOPInstanceUID, VR.UI, iuid);
+        obj.putString(Tag.SeriesInstanceUID, VR.UI, "1.2.826.0.1.3680043.2.1125.1");
+        obj.putString(Tag.Modality, VR.CS, "CT");
+        obj.putString(Tag.ImageType, VR.CS, "ORIGINAL\\PRIMARY\\AXIAL");
+        obj.putDoubles(Tag.ImageOrientationPatient, VR.DS, new double[]{1, 0, 0, 0, 1, 0});
+        obj.putInt(Tag.SamplesPerPixel, VR.US, 1);
+        obj.putString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2");
+        obj.putInt(Tag.Rows, VR.US, rows);
+        obj.putInt(Tag.Columns, VR.US, columns);
+        obj.putInt(Tag.BitsAllocated, VR.US, 16);
+        obj.putInt(Tag.BitsStored, VR.US, 12);
+        obj.putInt(Tag.HighBit, VR.US, 11);
+        obj.putInt(Tag.PixelRepresentation, VR.US, 0);
+        byte[] pixels = new byte[rows * columns * 2];
+        for (int i = 0; i < pixels.length; i += 2) {
+            int v = (i * 31 + index * 7) & 0x0FFF;
+            pixels[i] = (byte) v;
+            pixels[i + 1] = (byte) (v >> 8);
+        }
+        obj.putBytes(Tag.PixelData, VR.OW, pixels);
+        return obj;
+    }
+
+    /** Encode a DICOM object as a DICOM file.
+     *
+     * @param obj the DICOM object, with file meta information
+     * @return the file's contents
+     * @throws IOException on encoding failure
+     */
+    public static byte[] toFile(DicomObject obj) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DicomOutputStream dos = new DicomOutputStream(out)) {
+            dos.writeDicomFile(obj);
+        }
+        return out.toByteArray();
+    }
+}
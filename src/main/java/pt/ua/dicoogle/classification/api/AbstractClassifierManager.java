@@ -24,14 +24,33 @@ package pt.ua.dicoogle.classification.api;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pt.ua.dicoogle.classification.api.metrics.Counter;
+import pt.ua.dicoogle.classification.api.metrics.FlightEvent;
+import pt.ua.dicoogle.classification.api.metrics.FlightEvents;
+import pt.ua.dicoogle.classification.api.metrics.Stage;
+import pt.ua.dicoogle.classification.api.util.CircuitBreaker;
+import pt.ua.dicoogle.classification.api.util.ConcurrencyLimiter;
+import pt.ua.dicoogle.classification.api.util.InstancePool;
 import pt.ua.dicoogle.classification.api.util.LazyLoader;
+import pt.ua.dicoogle.classification.api.worker.WorkerFactory;
+import pt.ua.dicoogle.classification.api.worker.WorkerPool;
 
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 /** This abstract manager instantiates, destroys and delegates tasks to classifiers. This class implements classifier
  * selection based on classification criteria, making it possible for a Dicoogle classifier plugin to withhold multiple
  * classifiers. It also supports multi-criterion prediction in a single call, by using comma-separated criteria.
+ * Classifiers can be replaced with a new version at run-time, without interrupting predictions (see {@link #swap}).
  * @param <C> the concrete type of classifiers to manage
  * @param <B> a suitable representation type for the data points being classified
  * @param <D> a possible sub-type for classifier descriptors
@@ -40,8 +59,104 @@ import java.util.stream.Stream;
 public abstract class AbstractClassifierManager<C extends ClassifierInterface<B>, B, D extends ClassifierDescriptor> extends AbstractClassifierPlugin<B> implements ClassifierManager<C, B, D> {
     private static final Logger logger = LoggerFactory.getLogger(AbstractClassifierManager.class);
 
-    private final Map<String, LazyLoader<C>> classifiers = new HashMap<>();
-    private final Map<String, String> byCriterion = new HashMap<>();
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+    private final Map<String, String> byCriterion = new ConcurrentHashMap<>();
+    private final Map<String, String> stamps = new ConcurrentHashMap<>();
+
+    /** The scheduler evicting idle pooled instances, shared by all managers and created on first use. */
+    private static final class Eviction {
+        static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "classifier-pool-eviction");
+            t.setDaemon(true);
+            return t;
+        });
+
+        static {
+            SCHEDULER.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /** The state of one version of a named classifier: its instances and the policies guarding them.
+     * A generation is retired when replaced, and its instances are released once the predictions
+     * running on it have finished.
+     */
+    private final class Generation {
+        final String name;
+        final D descriptor;
+        final LazyLoader<C> loader;
+        final ConcurrencyLimiter limiter;
+        final InstancePool<C> pool;
+        final ScheduledFuture<?> eviction;
+        final CircuitBreaker breaker;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean released = new AtomicBoolean();
+        volatile boolean retired = false;
+        volatile LoadStatus status = null;
+
+        Generation(D descriptor) {
+            this.name = descriptor.getName();
+            this.descriptor = descriptor;
+            LazyLoader<C> l = new LazyLoader<>(() -> loadClassifier(descriptor, this, true));
+            this.loader = l;
+            this.limiter = descriptor.getMaxConcurrency() > 0
+                    ? new ConcurrencyLimiter(descriptor.getMaxConcurrency(), descriptor.getMaxQueueLength(),
+                            descriptor.isAdaptiveConcurrency())
+                    : null;
+            // the lazily loaded instance is shared with the pool as its core instance
+            this.pool = descriptor.getPoolSize() > 1
+                    ? new InstancePool<>(l::get, () -> loadClassifier(descriptor, this, false),
+                            c -> evictClassifier(this.name, c), descriptor.getPoolSize(),
+                            descriptor.getPoolIdleTimeoutMillis())
+                    : null;
+            // idle instances are also evicted when there is no traffic to trigger it
+            long period = Math.max(descriptor.getPoolIdleTimeoutMillis() / 2, 1);
+            this.eviction = this.pool != null
+                    ? Eviction.SCHEDULER.scheduleWithFixedDelay(this.pool::evictIdle, period, period,
+                            TimeUnit.MILLISECONDS)
+                    : null;
+            this.breaker = createCircuitBreaker(descriptor);
+        }
+
+        /** Start a call on this generation, unless it was retired. */
+        boolean enter() {
+            this.inFlight.incrementAndGet();
+            if (this.retired) {
+                this.exit();
+                return false;
+            }
+            return true;
+        }
+
+        void exit() {
+            if (this.inFlight.decrementAndGet() == 0 && this.retired) {
+                this.release();
+            }
+        }
+
+        void retire() {
+            this.retired = true;
+            if (this.inFlight.get() == 0) {
+                this.release();
+            }
+        }
+
+        private void release() {
+            if (!this.released.compareAndSet(false, true)) {
+                return;
+            }
+            logger.debug("Releasing version {} of classifier {}", this.descriptor.getVersion(), this.name);
+            if (this.eviction != null) {
+                this.eviction.cancel(false);
+            }
+            if (this.pool != null) {
+                this.pool.clear();
+            }
+            C classifier = this.loader.take();
+            if (classifier != null) {
+                evictClassifier(this.name, classifier);
+            }
+        }
+    }
 
     @Override
     public void register(D descriptor) {
@@ -49,19 +164,232 @@ public abstract class AbstractClassifierManager<C extends ClassifierInterface<B>
 
         String name = descriptor.getName();
         logger.debug("Registering classifier {} ...", name);
-        LazyLoader<C> l = new LazyLoader<>(() -> this.createClassifier(descriptor));
+        Generation g = new Generation(descriptor);
         if (descriptor.isPreload()) {
             logger.debug("Preloading classifier {} ...", name);
-            l.get();
+            g.loader.get();
+        }
+        this.install(g);
+    }
+
+    /** Replace a classifier with a new version, without interrupting predictions. The new classifier is loaded
+     * on a background thread, and predictions are routed to it once it is ready. Predictions already running
+     * on the previous version are allowed to finish, after which its instances are released. If loading fails,
+     * the previous version remains in place. A name which was not registered is registered once loaded.
+     *
+     * @param descriptor the descriptor of the new version
+     * @return a future which completes when predictions are routed to the new version
+     */
+    public CompletableFuture<Void> swap(D descriptor) {
+        Objects.requireNonNull(descriptor);
+        return this.swap(descriptor, r -> {
+            Thread t = new Thread(r, "classifier-swap-" + descriptor.getName());
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+
+    /** Replace a classifier with a new version, without interrupting predictions, loading it with the given
+     * executor.
+     *
+     * @param descriptor the descriptor of the new version
+     * @param executor the executor on which to load the new version
+     * @return a future which completes when predictions are routed to the new version
+     * @see #swap(ClassifierDescriptor)
+     */
+    public CompletableFuture<Void> swap(D descriptor, Executor executor) {
+        Objects.requireNonNull(descriptor);
+        Objects.requireNonNull(executor);
+        return CompletableFuture.runAsync(() -> {
+            String name = descriptor.getName();
+            logger.debug("Loading version {} of classifier {} ...", descriptor.getVersion(), name);
+            Generation g = new Generation(descriptor);
+            try {
+                g.loader.get();
+            } catch (RuntimeException | Error ex) {
+                g.retire();
+                throw ex;
+            }
+            this.install(g);
+            logger.info("Classifier {} switched to version {}", name, descriptor.getVersion());
+        }, executor);
+    }
+
+    private synchronized void install(Generation g) {
+        String name = g.name;
+        Generation old = this.generations.put(name, g);
+        if (old != null) {
+            // drop criteria no longer declared by the classifier
+            this.byCriterion.entrySet().removeIf(
+                    e -> e.getValue().equals(name) && !g.descriptor.getCriteria().contains(e.getKey()));
         }
-        this.classifiers.put(name, l);
-        for (String cr : descriptor.getCriteria()) {
-            if (this.byCriterion.containsKey(cr)) {
+        for (String cr : g.descriptor.getCriteria()) {
+            String current = this.byCriterion.get(cr);
+            if (current != null && !current.equals(name)
+                    && name.equals(this.descriptorOf(current).getCascadeTarget())) {
+                // the criterion is served by the head of the cascade
+                continue;
+            }
+            if (current != null && current.equals(g.descriptor.getCascadeTarget())) {
+                // this classifier becomes the head of the cascade
+                this.byCriterion.put(cr, name);
+                continue;
+            }
+            if (current != null && !current.equals(name)) {
                 logger.warn("Classifier criterion collision! Will use {} instead of {} for '{}'",
-                        name, this.byCriterion.get(cr), cr);
+                        name, current, cr);
             }
             this.byCriterion.put(cr, name);
         }
+        this.stamps.clear();
+        if (old != null) {
+            if (!old.descriptor.getVersion().equals(g.descriptor.getVersion())) {
+                this.clearPredictionCaches();
+            }
+            old.retire();
+        }
+    }
+
+    private Generation generationOf(String name) {
+        Generation g = this.generations.get(name);
+        if (g == null) {
+            throw new NoSuchElementException("No such classifier " + name);
+        }
+        return g;
+    }
+
+    private D descriptorOf(String name) {
+        return this.generationOf(name).descriptor;
+    }
+
+    /** Obtain the version of the classifier currently receiving predictions under the given name.
+     *
+     * @param name the classifier's unique name
+     * @return the version declared by the classifier's descriptor
+     * @throws java.util.NoSuchElementException if no such classifier with the given name was registered
+     */
+    public String getVersion(String name) {
+        return this.descriptorOf(name).getVersion();
+    }
+
+    /** Obtain the version stamp of a classifier's predictions. The stamp identifies the current version of the
+     * classifier and, recursively, of its cascade target and of the classifiers it depends on (see
+     * {@link ClassifierDescriptor#getDependsOn}), so that it changes whenever any of them is replaced by another
+     * version.
+     *
+     * @param name the classifier's unique name, which is the criterion part of the manager's predictions
+     * @return an opaque version stamp, or null if no such classifier was registered
+     */
+    @Override
+    public String getVersionStamp(String name) {
+        String stamp = this.stamps.get(name);
+        if (stamp == null && this.generations.containsKey(name)) {
+            stamp = this.stampOf(name, new HashSet<>());
+            this.stamps.put(name, stamp);
+        }
+        return stamp;
+    }
+
+    private String stampOf(String name, Set<String> visiting) {
+        Generation g = this.generations.get(name);
+        if (g == null) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name).append('@').append(g.descriptor.getVersion());
+        if (!visiting.add(name)) {
+            // a dependency cycle, which would otherwise never end
+            return sb.toString();
+        }
+        String target = g.descriptor.getCascadeTarget();
+        if (target != null && this.generations.containsKey(target)) {
+            // the predictions of a cascade may come from its target
+            sb.append('>').append(this.stampOf(target, visiting));
+        }
+        List<String> deps = new ArrayList<>(g.descriptor.getDependsOn());
+        if (!deps.isEmpty()) {
+            Collections.sort(deps);
+            sb.append('(');
+            for (int i = 0; i < deps.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(this.stampOf(deps.get(i), visiting));
+            }
+            sb.append(')');
+        }
+        visiting.remove(name);
+        return sb.toString();
+    }
+
+    /** Obtain the classifiers affected by a change in the given classifiers: these and, transitively, all
+     * classifiers depending on them or cascading into them.
+     *
+     * @param names the names of the changed classifiers
+     * @return the names of the affected classifiers, each one after all the affected classifiers it depends on
+     */
+    public List<String> getAffectedClassifiers(Collection<String> names) {
+        Set<String> affected = new HashSet<>(names);
+        boolean grown;
+        do {
+            grown = false;
+            for (Generation g : this.generations.values()) {
+                if (!affected.contains(g.name)
+                        && (g.descriptor.getDependsOn().stream().anyMatch(affected::contains)
+                            || affected.contains(g.descriptor.getCascadeTarget()))) {
+                    affected.add(g.name);
+                    grown = true;
+                }
+            }
+        } while (grown);
+        List<String> ordered = new ArrayList<>(affected.size());
+        Set<String> visited = new HashSet<>();
+        for (String name : new TreeSet<>(affected)) {
+            this.visitDependencies(name, affected, visited, ordered);
+        }
+        return ordered;
+    }
+
+    private void visitDependencies(String name, Set<String> affected, Set<String> visited, List<String> ordered) {
+        if (!visited.add(name)) {
+            return;
+        }
+        Generation g = this.generations.get(name);
+        if (g != null) {
+            for (String dep : g.descriptor.getDependsOn()) {
+                if (affected.contains(dep)) {
+                    this.visitDependencies(dep, affected, visited, ordered);
+                }
+            }
+        }
+        ordered.add(name);
+    }
+
+    /** Obtain the classifiers whose predictions a classifier takes as input.
+     *
+     * @param name the classifier's unique name
+     * @return the names declared by the classifier's descriptor (see {@link ClassifierDescriptor#getDependsOn})
+     * @throws java.util.NoSuchElementException if no such classifier with the given name was registered
+     */
+    public Collection<String> getDependencies(String name) {
+        return this.descriptorOf(name).getDependsOn();
+    }
+
+    /** Obtain a classification criterion through which a classifier's predictions are obtained, which is one of
+     * its own criteria. For a cascade target, this is a criterion of the cascade, which may not always escalate
+     * to it.
+     *
+     * @param name the classifier's unique name
+     * @return a criterion of the classifier, or empty if it declares none
+     * @throws java.util.NoSuchElementException if no such classifier with the given name was registered
+     */
+    public Optional<String> getCriterionOf(String name) {
+        Collection<String> criteria = this.descriptorOf(name).getCriteria();
+        for (String cr : criteria) {
+            if (name.equals(this.byCriterion.get(cr))) {
+                return Optional.of(cr);
+            }
+        }
+        return criteria.stream().findFirst();
     }
 
     /** Destroy a particular classifier instance.
@@ -69,47 +397,49 @@ public abstract class AbstractClassifierManager<C extends ClassifierInterface<B>
      */
     @Override
     public void reset(String name) {
-        if (!this.classifiers.containsKey(name)) {
-            throw new NoSuchElementException("No such classifier " + name);
-        }
-        this.classifiers.get(name).reset();
+        this.resetGeneration(this.generationOf(name));
     }
 
     /** Destroy all classifier instances.
      */
     @Override
     public void resetAll() {
-        this.classifiers.values().forEach(l -> l.reset());
+        this.generations.values().forEach(this::resetGeneration);
+    }
+
+    private void resetGeneration(Generation g) {
+        C classifier = g.loader.take();
+        if (classifier != null) {
+            this.evictClassifier(g.name, classifier);
+        }
+        if (g.pool != null) {
+            g.pool.clear();
+        }
     }
 
     @Override
     public void forceLoad(String name) {
-        if (!this.classifiers.containsKey(name)) {
-            throw new NoSuchElementException("No such classifier " + name);
-        }
-        this.classifiers.get(name).get();
+        this.generationOf(name).loader.get();
     }
 
     @Override
     public Stream<C> getClassifiers() {
-        return this.classifiers.values().stream()
+        return this.generations.values().stream()
+                .map(g -> g.loader)
                 .filter(LazyLoader::isLoaded)
                 .map(LazyLoader::get);
     }
 
     @Override
     public Optional<C> getClassifierByName(String name) {
-        if (!this.classifiers.containsKey(name)) {
-            throw new NoSuchElementException("No such classifier " + name);
-        }
-        return Optional.of(this.classifiers.get(name))
+        return Optional.of(this.generationOf(name).loader)
                 .filter(LazyLoader::isLoaded)
                 .map(LazyLoader::get);
     }
 
     @Override
     public Stream<String> getAllClassifierNames() {
-        return this.classifiers.keySet().stream();
+        return this.generations.keySet().stream();
     }
 
     public Optional<C> getClassifierByCriterion(String criterion) {
@@ -117,26 +447,295 @@ public abstract class AbstractClassifierManager<C extends ClassifierInterface<B>
         if (name == null) {
             return Optional.empty();
         }
-        return Optional.of(this.classifiers.get(name).get());
+        return Optional.of(this.generationOf(name).loader.get());
+    }
+
+    /** Obtain the input spec shared by the classifiers of the given criteria, as declared in their descriptors.
+     *
+     * @param criteria one or more comma-separated criteria
+     * @return the input spec, or null if the classifiers do not declare the same spec
+     */
+    @Override
+    protected InputSpec getInputSpec(String criteria) {
+        InputSpec spec = null;
+        for (String s : criteria.split(",")) {
+            String name = this.byCriterion.get(s.trim());
+            InputSpec other = name == null ? null : this.descriptorOf(name).getInputSpec();
+            if (other == null || (spec != null && !spec.equals(other))) {
+                return null;
+            }
+            spec = other;
+        }
+        return spec;
     }
 
     @Override
     public Map<String, Double> predict(String criteria, B datapoint, Object... parameters) {
         Map<String, Double> o = new HashMap<>();
+        List<ClassificationException> failures = new ArrayList<>(0);
 
         for (String s : criteria.split(",")) {
             s = s.trim();
             String name = this.byCriterion.get(s);
             if (name == null) {
-                throw new IllegalArgumentException("No such classification criterion " + name);
+                throw new IllegalArgumentException("No such classification criterion " + s);
+            }
+            Map<String, Double> prediction;
+            try {
+                prediction = this.predictWith(name, s, datapoint, parameters);
+            } catch (ClassificationException ex) {
+                // the other criteria are still served
+                logger.debug("Classifier {} failed on '{}': {}", name, s, ex.getMessage());
+                failures.add(new ClassificationException(name, ex.getMessage(), ex));
+                continue;
             }
-            C classifier = this.classifiers.get(name).get();
-            Map<String, Double> prediction = classifier.predict(s, classifier.adapt(datapoint), parameters);
-            mergePredictions(o, name, prediction);
+            // escalate through the cascade while the predictions are not confident enough
+            String head = name;
+            for (int depth = 0; depth < this.generations.size(); depth++) {
+                D descriptor = this.descriptorOf(name);
+                String target = descriptor.getCascadeTarget();
+                if (target == null || topScore(prediction) >= descriptor.getCascadeThreshold()) {
+                    break;
+                }
+                if (!this.generations.containsKey(target)) {
+                    logger.warn("Classifier {} cascades into unknown classifier {}", name, target);
+                    break;
+                }
+                this.metrics.count(name, s, Counter.ESCALATED, 1);
+                try {
+                    prediction = this.predictWith(target, s, datapoint, parameters);
+                } catch (ClassificationException ex) {
+                    logger.debug("Escalation from {} to {} failed, keeping the former: {}",
+                            name, target, ex.getMessage());
+                    break;
+                }
+                name = target;
+            }
+            // a cascade answers under the name of its head, whichever classifier made the predictions
+            mergePredictions(o, head, prediction);
+        }
+        if (!failures.isEmpty()) {
+            throw new PartialClassificationException(criteria, o, failures);
         }
         return o;
     }
 
+    /** Obtain the criterion part of the identifiers of the predictions for a classification criterion, which is
+     * the name of the classifier serving it.
+     */
+    @Override
+    protected String getOutputCriterion(String criterion) {
+        String name = this.byCriterion.get(criterion);
+        return name != null ? name : criterion;
+    }
+
+    private static double topScore(Map<String, Double> prediction) {
+        double top = Double.NEGATIVE_INFINITY;
+        for (Double p : prediction.values()) {
+            if (p != null && p > top) {
+                top = p;
+            }
+        }
+        return top;
+    }
+
+    private Map<String, Double> predictWith(String name, String criterion, B datapoint, Object... parameters) {
+        Generation g;
+        do {
+            g = this.generationOf(name);
+        } while (!g.enter());
+        try {
+            return this.predictGuarded(g, criterion, datapoint, parameters);
+        } catch (UncheckedIOException ex) {
+            // such as a failed worker process, already counted by the breaker
+            throw new ClassificationException(criterion, ex.getMessage(), ex);
+        } finally {
+            g.exit();
+        }
+    }
+
+    private Map<String, Double> predictGuarded(Generation g, String criterion, B datapoint, Object... parameters) {
+        CircuitBreaker breaker = g.breaker;
+        if (breaker == null) {
+            return this.predictAdmitted(g, criterion, datapoint, parameters);
+        }
+        if (!breaker.tryAcquire()) {
+            throw new ClassificationException(criterion,
+                    "Classifier " + g.name + " is unavailable after repeated failures");
+        }
+        try {
+            Map<String, Double> prediction = this.predictAdmitted(g, criterion, datapoint, parameters);
+            breaker.onSuccess();
+            return prediction;
+        } catch (ClassificationException ex) {
+            breaker.onIgnored();
+            throw ex;
+        } catch (RuntimeException | Error ex) {
+            breaker.onFailure();
+            throw ex;
+        }
+    }
+
+    private Map<String, Double> predictAdmitted(Generation g, String criterion, B datapoint, Object... parameters) {
+        ConcurrencyLimiter limiter = g.limiter;
+        boolean bulk = RequestClass.of(parameters) == RequestClass.BULK;
+        // the request class is meant for scheduling, not for the classifiers
+        Object[] options = RequestClass.strip(parameters);
+        if (limiter == null) {
+            return this.predictOnInstance(g, criterion, datapoint, options);
+        }
+        D descriptor = g.descriptor;
+        boolean acquired;
+        if (descriptor.getRejectionPolicy() == RejectionPolicy.FAIL_FAST) {
+            acquired = limiter.tryAcquire(bulk);
+        } else {
+            try {
+                acquired = limiter.acquire(descriptor.getMaxQueueWaitMillis(), bulk);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ClassificationException(criterion, "Interrupted while waiting for classifier", ex);
+            }
+        }
+        if (!acquired) {
+            logger.debug("Classifier {} is overloaded ({} in flight, {} waiting), rejecting request for '{}'",
+                    g.name, limiter.getInFlight(), limiter.getQueueLength(), criterion);
+            throw new ClassificationException(criterion, "Classifier " + g.name + " is overloaded");
+        }
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Map<String, Double> prediction = this.predictOnInstance(g, criterion, datapoint, options);
+            ok = true;
+            return prediction;
+        } finally {
+            limiter.release(ok ? System.nanoTime() - start : -1);
+        }
+    }
+
+    private Map<String, Double> predictOnInstance(Generation g, String criterion, B datapoint, Object... parameters) {
+        InstancePool<C> pool = g.pool;
+        if (pool == null) {
+            return this.predictOn(g.loader.get(), g.name, criterion, datapoint, parameters);
+        }
+        C classifier;
+        try {
+            classifier = pool.borrow();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ClassificationException(criterion, "Interrupted while waiting for classifier", ex);
+        }
+        try {
+            return this.predictOn(classifier, g.name, criterion, datapoint, parameters);
+        } finally {
+            pool.release(classifier);
+        }
+    }
+
+    private Map<String, Double> predictOn(C classifier, String name, String criterion, B datapoint,
+                                          Object... parameters) {
+        long start = System.nanoTime();
+        FlightEvent event = FlightEvents.stage(Stage.ADAPT, name, criterion);
+        String outcome = "failed";
+        B adapted;
+        try {
+            adapted = classifier.adapt(datapoint);
+            outcome = "ok";
+        } finally {
+            event.end(outcome);
+        }
+        long adaptedAt = System.nanoTime();
+        this.metrics.recordLatency(name, criterion, Stage.ADAPT, adaptedAt - start);
+        event = FlightEvents.stage(Stage.PREDICT, name, criterion);
+        outcome = "failed";
+        Map<String, Double> prediction;
+        try {
+            prediction = classifier.predict(criterion, adapted, parameters);
+            outcome = prediction.isEmpty() ? "empty" : "ok";
+        } finally {
+            event.end(outcome);
+        }
+        this.metrics.recordLatency(name, criterion, Stage.PREDICT, System.nanoTime() - adaptedAt);
+        return prediction;
+    }
+
+    /** Create and warm up an instance of a generation's classifier.
+     *
+     * @param core whether this is the generation's core instance, whose load status is recorded, rather than an
+     *             additional pooled instance
+     */
+    private C loadClassifier(D descriptor, Generation g, boolean core) {
+        long start = System.nanoTime();
+        FlightEvent event = FlightEvents.load(descriptor.getName(), descriptor.getVersion());
+        String outcome = "failed";
+        C classifier;
+        try {
+            classifier = this.createClassifier(descriptor);
+            outcome = "ok";
+        } finally {
+            event.end(outcome);
+        }
+        long loadNanos = System.nanoTime() - start;
+        this.metrics.modelLoaded(descriptor.getName(), loadNanos);
+        LoadStatus status = this.warmUp(descriptor, classifier, loadNanos);
+        if (core) {
+            g.status = status;
+        }
+        return classifier;
+    }
+
+    private LoadStatus warmUp(D descriptor, C classifier, long loadNanos) {
+        int iterations = descriptor.getWarmupIterations();
+        List<B> samples = iterations > 0 ? this.warmupSamples(descriptor) : Collections.emptyList();
+        if (samples.isEmpty() || descriptor.getCriteria().isEmpty()) {
+            if (iterations > 0) {
+                logger.debug("No warm-up samples for classifier {}", descriptor.getName());
+            }
+            return new LoadStatus(descriptor.getVersion(), loadNanos, 0, 0, -1);
+        }
+        String criterion = descriptor.getCriteria().iterator().next();
+        // the steady-state latency is taken from the last tenth of the iterations
+        int tail = Math.max(1, iterations / 10);
+        long tailNanos = 0;
+        int done = 0;
+        long start = System.nanoTime();
+        try {
+            for (; done < iterations; done++) {
+                long t = System.nanoTime();
+                classifier.predict(criterion, classifier.adapt(samples.get(done % samples.size())));
+                if (done >= iterations - tail) {
+                    tailNanos += System.nanoTime() - t;
+                }
+            }
+        } catch (RuntimeException | Error ex) {
+            // the instance is still usable, or its first prediction will tell otherwise
+            logger.warn("Warm-up of classifier {} failed after {} iterations", descriptor.getName(), done, ex);
+        }
+        long warmupNanos = System.nanoTime() - start;
+        int measured = Math.min(tail, Math.max(0, done - (iterations - tail)));
+        LoadStatus status = new LoadStatus(descriptor.getVersion(), loadNanos, done, warmupNanos,
+                measured > 0 ? tailNanos / measured : -1);
+        logger.info("Classifier {} warmed up: {}", descriptor.getName(), status);
+        return status;
+    }
+
+    /** Obtain the status of the last load of a classifier's current version, including its warm-up.
+     *
+     * @param name the classifier's unique name
+     * @return the load status, or empty if the current version was not loaded yet
+     * @throws java.util.NoSuchElementException if no such classifier with the given name was registered
+     */
+    public Optional<LoadStatus> getLoadStatus(String name) {
+        return Optional.ofNullable(this.generationOf(name).status);
+    }
+
+    private void evictClassifier(String name, C classifier) {
+        this.metrics.modelEvicted(name);
+        this.releaseClassifier(classifier);
+        if (classifier instanceof WorkerPool) {
+            ((WorkerPool<?>) classifier).close();
+        }
+    }
+
     private static void mergePredictions(Map<String, Double> o, String nOther, Map<String, Double> pOther) {
         for (Map.Entry<String, Double> e : pOther.entrySet()) {
             o.put(nOther + "#" + e.getKey(), e.getValue());
@@ -149,4 +748,55 @@ public abstract class AbstractClassifierManager<C extends ClassifierInterface<B>
      * @return a new instance of a classifier according to the given descriptor
      */
     protected abstract C createClassifier(D descriptor);
+
+    /** Create a classifier hosted in worker processes, as configured by
+     * {@link ClassifierDescriptor#getWorkerProcesses()} and {@link ClassifierDescriptor#getWorkerConcurrency()}.
+     * This is meant to be returned from {@link #createClassifier} by managers of {@code ClassifierInterface<B>},
+     * when the descriptor asks for worker processes. The pool is closed once its classifier version is released.
+     *
+     * @param descriptor the descriptor of the classifier
+     * @param factory the factory creating the classifier in each worker process
+     * @param args the arguments to the factory
+     * @return a new pool of worker processes, already started
+     * @throws java.io.UncheckedIOException if the worker processes could not be started
+     */
+    protected WorkerPool<B> createWorkerPool(D descriptor, Class<? extends WorkerFactory<B>> factory,
+            String... args) {
+        return new WorkerPool<>(factory, Arrays.asList(args), Math.max(1, descriptor.getWorkerProcesses()),
+                descriptor.getWorkerConcurrency());
+    }
+
+    /** Provide the sample data points for warming up new instances of a classifier, as requested by
+     * {@link ClassifierDescriptor#getWarmupIterations()}. Samples may be synthetic or recorded from real
+     * traffic, and are cycled through when there are fewer samples than iterations. Warm-up predictions use
+     * the first criterion of the descriptor. The default implementation provides no samples, which skips
+     * warm-up.
+     *
+     * @param descriptor the descriptor of the classifier being loaded
+     * @return a list of data points, possibly empty
+     */
+    protected List<B> warmupSamples(D descriptor) {
+        return Collections.emptyList();
+    }
+
+    /** Create the circuit breaker guarding the classifier with the given descriptor. The default implementation
+     * creates a breaker with the default parameters of {@link CircuitBreaker}. Subclasses may override this method
+     * to tune the breaker, or return null to disable it.
+     *
+     * @param descriptor the descriptor of the classifier
+     * @return a new circuit breaker, or null
+     */
+    protected CircuitBreaker createCircuitBreaker(D descriptor) {
+        return new CircuitBreaker();
+    }
+
+    /** Method for releasing a classifier instance which is no longer in use: a pooled instance evicted after
+     * being idle, an instance of a version replaced by {@link #swap}, or an instance discarded by {@link #reset}
+     * or {@link #resetAll}. The default implementation does nothing, leaving the instance to the garbage
+     * collector. Worker pools (see {@link #createWorkerPool}) are closed after this method returns.
+     *
+     * @param classifier the classifier instance to release
+     */
+    protected void releaseClassifier(C classifier) {
+    }
 }
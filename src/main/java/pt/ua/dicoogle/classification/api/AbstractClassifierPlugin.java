@@ -18,20 +18,68 @@
  */
 package pt.ua.dicoogle.classification.api;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
+import org.dcm4che2.data.BasicDicomObject;
+import org.dcm4che2.data.DicomElement;
 import org.dcm4che2.data.DicomObject;
-import org.dcm4che2.io.DicomCodingException;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.data.VR;
 import org.dcm4che2.io.DicomInputStream;
+import org.dcm4che2.io.StopTagInputHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pt.ua.dicoogle.classification.api.metrics.FlightEvent;
+import pt.ua.dicoogle.classification.api.metrics.FlightEvents;
+import pt.ua.dicoogle.classification.api.metrics.Counter;
+import pt.ua.dicoogle.classification.api.metrics.MetricsRegistry;
+import pt.ua.dicoogle.classification.api.metrics.Stage;
+import pt.ua.dicoogle.classification.api.metrics.TimedInputStream;
+import pt.ua.dicoogle.classification.api.util.ByteBufferInputStream;
+import pt.ua.dicoogle.classification.api.util.CircuitBreaker;
+import pt.ua.dicoogle.classification.api.util.ContentCache;
+import pt.ua.dicoogle.classification.api.util.ContentHash;
+import pt.ua.dicoogle.classification.api.util.Frame;
+import pt.ua.dicoogle.classification.api.util.FrameReader;
+import pt.ua.dicoogle.classification.api.util.ItemExecutors;
+import pt.ua.dicoogle.classification.api.util.PixelDataBuffer;
+import pt.ua.dicoogle.classification.api.util.ScalableBloomFilter;
+import pt.ua.dicoogle.classification.api.util.SeriesCache;
 import pt.ua.dicoogle.sdk.StorageInputStream;
 import pt.ua.dicoogle.sdk.StorageInterface;
 import pt.ua.dicoogle.sdk.core.DicooglePlatformInterface;
@@ -53,6 +101,32 @@ public abstract class AbstractClassifierPlugin<B> implements ClassifierInterface
     protected boolean enabled = true;
     protected ConfigurationHolder settings = null;
 
+    /** The registry receiving measurements of the classification pipeline, which discards them by default.
+     */
+    protected MetricsRegistry metrics = MetricsRegistry.NOOP;
+
+    private final ConcurrentMap<String, CircuitBreaker> storageBreakers = new ConcurrentHashMap<>();
+    private final SeriesCache<Map<String, Double>> seriesPredictions = new SeriesCache<>();
+    // direct buffers of items read in full, recycled across items
+    private final Queue<ByteBuffer> directBuffers = new ConcurrentLinkedQueue<>();
+    private volatile ScalableBloomFilter negativeCache = null;
+    private volatile PredictionIndex predictionIndex = null;
+    private volatile ContentCache<Map<String, Double>> contentCache = null;
+    private volatile ExecutorService itemExecutor = null;
+    private volatile Semaphore inferencePermits = null;
+    private volatile int inferencePermitCount = 0;
+    private volatile boolean inferencePermitsSet = false;
+
+    /** The size in bytes from which local files are read through a memory mapping. */
+    public static final long MIN_MAPPED_SIZE = 1024 * 1024;
+    private static final int MAX_SPARE_BUFFERS = Runtime.getRuntime().availableProcessors();
+    private static final int[] CONTENT_HASH_TAGS = {
+        Tag.Modality, Tag.SamplesPerPixel, Tag.PhotometricInterpretation, Tag.PlanarConfiguration,
+        Tag.NumberOfFrames, Tag.Rows, Tag.Columns, Tag.PixelSpacing, Tag.BitsAllocated, Tag.BitsStored,
+        Tag.HighBit, Tag.PixelRepresentation, Tag.WindowCenter, Tag.WindowWidth, Tag.RescaleIntercept,
+        Tag.RescaleSlope
+    };
+
     /** Perform a classification on the given item
      *
      * @param query the classification criterion. This is usually an identifier of the class family.
@@ -70,27 +144,143 @@ public abstract class AbstractClassifierPlugin<B> implements ClassifierInterface
      */
     @Override
     public Collection<SearchResult> query(String query, Object... parameters) {
+        MetricsRegistry metrics = this.metrics;
+        metrics.queryStarted(this.getName(), query, parameters);
+        FlightEvent event = FlightEvents.query(this.getName(), query);
+        if (event.isRecording() && parameters.length > 0) {
+            event.item(parameters[0]);
+        }
+        Collection<SearchResult> results = Collections.emptyList();
+        try {
+            results = this.queryItem(query, parameters);
+            return results;
+        } finally {
+            metrics.queryFinished(this.getName(), query, results);
+            if (event.isRecording()) {
+                event.end(outcomeOf(results));
+            }
+        }
+    }
+
+    /** Perform a classification on the given item, on this plugin's item executor (see {@link #setItemExecutor}).
+     * This suits large numbers of items in storage, whose reads may then overlap with the inference of others.
+     *
+     * @param query the classification criteria, as in {@link #query}
+     * @param parameters the item and additional parameters, as in {@link #query}
+     * @return a future of the predictions, which completes as {@link #query} would return
+     */
+    public CompletableFuture<Collection<SearchResult>> queryAsync(String query, Object... parameters) {
+        ExecutorService executor = this.itemExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.itemExecutor;
+                if (executor == null) {
+                    executor = ItemExecutors.newPerItemExecutor("classify-" + this.getName());
+                    this.itemExecutor = executor;
+                    if (!this.inferencePermitsSet) {
+                        // the default executor does not bound the number of items by itself
+                        this.setInferencePermits(Runtime.getRuntime().availableProcessors());
+                    }
+                }
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> this.query(query, parameters), executor);
+    }
+
+    private static String outcomeOf(Collection<SearchResult> results) {
+        if (results.isEmpty()) {
+            return "empty";
+        }
+        for (SearchResult r : results) {
+            if (Double.isNaN(r.getScore())) {
+                return "error";
+            }
+        }
+        return "ok";
+    }
+
+    private Collection<SearchResult> queryItem(String query, Object... parameters) {
         try {
             if (parameters.length < 1) {
                 throw new IllegalArgumentException("Missing item for classification in parameters[0]");
             }
             Object item = parameters[0];
             Object[] restArgs = Arrays.copyOfRange(parameters, 1, parameters.length);
-            if (item instanceof URI) {
-                return Classifiers.toResult(this.getName(), this.predict(query, (URI) item, restArgs));
-            } else if (item instanceof String) {
-                return Classifiers.toResult(this.getName(), this.predict(query, URI.create((String) item), restArgs));
-            } else if (item instanceof DicomObject) {
-                return Classifiers.toResult(this.getName(), this.predict(query, ((DicomObject) item), restArgs));
-            } else {
-                return Classifiers.toResult(this.getName(), this.predict(query, (B) item, restArgs));
+            URI uri = item instanceof URI ? (URI) item : item instanceof String ? URI.create((String) item) : null;
+            Map<String, Double> predictions;
+            List<ClassificationException> failures = Collections.emptyList();
+            try {
+                if (uri != null) {
+                    predictions = this.predict(query, uri, restArgs);
+                } else if (item instanceof DicomObject) {
+                    predictions = this.predict(query, ((DicomObject) item), restArgs);
+                } else {
+                    predictions = this.predict(query, (B) item, restArgs);
+                }
+            } catch (PartialClassificationException ex) {
+                predictions = ex.getPredictions();
+                failures = ex.getFailures();
+            }
+            // the criteria which were served, even if without predictions
+            Set<String> served = new HashSet<>();
+            for (String criterion : query.split(",")) {
+                served.add(this.getOutputCriterion(criterion.trim()));
+            }
+            for (ClassificationException f : failures) {
+                served.remove(f.getCriterion());
+            }
+            Map<String, String> versions = this.versionStamps(served, predictions);
+            PredictionIndex index = this.predictionIndex;
+            if (uri != null && index != null) {
+                index.update(uri, this.getName(), served, predictions, versions);
+            }
+            long start = System.nanoTime();
+            Collection<SearchResult> results = Classifiers.toResult(this.getName(), predictions, versions);
+            this.metrics.recordLatency(this.getName(), query, Stage.RESULT_CONVERSION, System.nanoTime() - start);
+            if (failures.isEmpty()) {
+                return results;
+            }
+            List<SearchResult> all = new ArrayList<>(results);
+            for (ClassificationException f : failures) {
+                logger.debug("Partial failure on '{}': {}", f.getCriterion(), f.getMessage());
+                this.metrics.count(this.getName(), query, Counter.FAILED, 1);
+                all.add(Classifiers.toErrorResult(this.getName(), f.getCriterion(), f.getMessage()));
+            }
+            return all;
+        } catch (ClassificationException ex) {
+            logger.debug("Partial failure on '{}': {}", ex.getCriterion(), ex.getMessage());
+            this.metrics.count(this.getName(), query, Counter.FAILED, 1);
+            // one error output per criterion, identified as its predictions would be
+            List<SearchResult> errors = new ArrayList<>(1);
+            for (String criterion : ex.getCriterion().split(",")) {
+                errors.add(Classifiers.toErrorResult(this.getName(), this.getOutputCriterion(criterion.trim()),
+                        ex.getMessage()));
             }
+            return errors;
         } catch (RuntimeException ex) {
             logger.warn("Unexpected failure", ex);
+            this.metrics.count(this.getName(), query, Counter.FAILED, 1);
             return Collections.emptyList();
         }
     }
 
+    /** Obtain the version stamps of the criteria served and of those in a set of predictions. */
+    private Map<String, String> versionStamps(Set<String> served, Map<String, Double> predictions) {
+        Map<String, String> versions = new HashMap<>(4);
+        for (String criterion : served) {
+            versions.put(criterion, this.getVersionStamp(criterion));
+        }
+        for (String key : predictions.keySet()) {
+            int sep = key.indexOf('#');
+            String criterion = sep >= 0 ? key.substring(0, sep) : key;
+            if (!versions.containsKey(criterion)) {
+                versions.put(criterion, this.getVersionStamp(criterion));
+            }
+        }
+        versions.values().removeIf(Objects::isNull);
+        return versions;
+    }
+
     /** Perform a classification on the given item.
      * 
      * @param criterion the classification criterion. This is an identifier of the class set.
@@ -98,21 +288,411 @@ public abstract class AbstractClassifierPlugin<B> implements ClassifierInterface
      * @param parameters additional var-arg parameters for miscellaneous options (1st element is reserved)
      * @return a dictionary of predicted values and respective scores
      * @throws java.util.NoSuchElementException if the item does not exist
+     * @throws ClassificationException if the item could not be read from storage
      */
     public Map<String, Double> predict(String criterion, URI item, Object... parameters) {
-        try (DicomInputStream dcmStream = new DicomInputStream(this.fromStorage(item).get().getInputStream())) {
-            DicomObject obj = dcmStream.readDicomObject();
-            if (this.canClassify(criterion, obj, parameters)) {
-                return this.predict(criterion, obj, parameters);
+        FlightEvent event = FlightEvents.item(this.getName(), criterion, item);
+        String outcome = "failed";
+        try {
+            Map<String, Double> predictions = this.predictItem(criterion, item, event, parameters);
+            outcome = predictions.isEmpty() ? "empty" : "ok";
+            return predictions;
+        } finally {
+            event.end(outcome);
+        }
+    }
+
+    private Map<String, Double> predictItem(String criterion, URI item, FlightEvent event, Object[] parameters) {
+        ScalableBloomFilter rejects = this.negativeCache;
+        String rejectKey = rejects != null ? this.negativeCacheKey(criterion, item, parameters) : null;
+        if (rejects != null && rejects.mightContain(rejectKey)) {
+            this.metrics.count(this.getName(), criterion, Counter.SKIPPED, 1);
+            return Collections.emptyMap();
+        }
+        CircuitBreaker breaker = this.getStorageBreaker(item);
+        if (breaker != null && !breaker.tryAcquire()) {
+            throw new ClassificationException(criterion, "Storage for " + item.getScheme() + " items is unavailable");
+        }
+        int[] seriesTags = this.getSeriesScopedTags(criterion);
+        boolean streaming = seriesTags == null && this.isFrameStreaming(criterion);
+        boolean direct = seriesTags == null && !streaming && this.isDirectPixelData(criterion);
+        DicomObject obj;
+        Map<String, Double> readResult = null;
+        boolean timed = this.metrics.isEnabled() || event.isRecording();
+        long start = System.nanoTime();
+        try (InputStream in = this.openItem(criterion, item)) {
+            long opened = System.nanoTime();
+            StorageStream storage = new StorageStream(in);
+            try {
+                TimedInputStream timedIn = timed ? new TimedInputStream(storage) : null;
+                DicomInputStream din = new DicomInputStream(timed ? timedIn : storage);
+                if (seriesTags != null || streaming || direct) {
+                    // header-only classification, or pixel data read later on
+                    din.setHandler(new StopTagInputHandler(Tag.PixelData));
+                }
+                obj = din.readDicomObject();
+                if (timed) {
+                    event.bytes(timedIn.getBytes());
+                    long parsed = System.nanoTime();
+                    this.metrics.recordLatency(this.getName(), criterion, Stage.STORAGE_OPEN, opened - start);
+                    this.metrics.recordLatency(this.getName(), criterion, Stage.STORAGE_READ, timedIn.getNanos());
+                    this.metrics.recordLatency(this.getName(), criterion, Stage.DICOM_PARSE,
+                            parsed - opened - timedIn.getNanos());
+                    this.metrics.count(this.getName(), criterion, Counter.BYTES_READ, timedIn.getBytes());
+                }
+                if (streaming) {
+                    readResult = this.classifyFrames(criterion, obj, din, rejects, rejectKey, parameters);
+                } else if (direct) {
+                    ByteBuffer mapped = in instanceof ByteBufferInputStream
+                            ? ((ByteBufferInputStream) in).getBuffer() : null;
+                    readResult = this.classifyDirect(criterion, obj, din, mapped, rejects, rejectKey, parameters);
+                }
+            } catch (IOException ex) {
+                if (storage.failed) {
+                    throw ex;
+                }
+                // the storage delivered what it has, the item cannot be parsed
+                throw new DamagedItem(ex);
+            }
+        } catch (HookFailure ex) {
+            onStorageOutcome(breaker, true);
+            throw (RuntimeException) ex.getCause();
+        } catch (DamagedItem ex) {
+            // the storage is fine, the file is not
+            onStorageOutcome(breaker, true);
+            logger.warn("Non-DICOM (or corrupted) file {}, ignoring: {}", item, ex.getCause().getMessage());
+            if (rejects != null) {
+                rejects.add(rejectKey);
             }
-            // silently leave
             return Collections.emptyMap();
-        } catch (DicomCodingException ex) {
-            logger.warn("Non-DICOM (or corrupted) file {}, ignoring");
+        } catch (IOException ex) {
+            onStorageOutcome(breaker, false);
+            // a failure rather than an empty outcome, so that the item's previous predictions are kept
+            throw new ClassificationException(criterion, "Failed to read " + item + ": " + ex.getMessage(), ex);
+        } catch (NoSuchElementException ex) {
+            onStorageOutcome(breaker, true);
+            throw ex;
+        } catch (RuntimeException | Error ex) {
+            // always resolve the outcome, or a half-open breaker would never admit another trial
+            onStorageOutcome(breaker, false);
+            throw ex;
+        }
+        onStorageOutcome(breaker, true);
+
+        if (streaming || direct) {
+            return readResult;
+        }
+        if (seriesTags != null) {
+            // rejections are memoized as empty predictions, failed conversions are not memoized at all
+            Map<String, Double> memo = this.seriesPredictions.computeIfAbsent(criterion, obj, seriesTags, o -> {
+                if (!this.accept(criterion, o, rejects, rejectKey, parameters)) {
+                    return Collections.emptyMap();
+                }
+                try {
+                    return Collections.unmodifiableMap(this.predictObject(criterion, o, parameters));
+                } catch (IOException ex) {
+                    logger.warn("Failed to classify DICOM object for {}", criterion, ex);
+                    return null;
+                }
+            });
+            return memo == null ? Collections.<String, Double>emptyMap() : memo;
+        }
+        if (!this.accept(criterion, obj, rejects, rejectKey, parameters)) {
             return Collections.emptyMap();
+        }
+        return this.deduplicate(criterion, obj, null, parameters, () -> this.predict(criterion, obj, parameters));
+    }
+
+    private boolean accept(String criterion, DicomObject obj, ScalableBloomFilter rejects, String rejectKey,
+            Object[] parameters) {
+        long checkStart = System.nanoTime();
+        FlightEvent event = FlightEvents.stage(Stage.CAN_CLASSIFY, this.getName(), criterion);
+        boolean accepted = false;
+        try {
+            accepted = this.canClassify(criterion, obj, RequestClass.strip(parameters));
+        } finally {
+            event.end(accepted ? "accepted" : "rejected");
+        }
+        this.metrics.recordLatency(this.getName(), criterion, Stage.CAN_CLASSIFY, System.nanoTime() - checkStart);
+        this.metrics.count(this.getName(), criterion, accepted ? Counter.ACCEPTED : Counter.REJECTED, 1);
+        if (!accepted && rejects != null) {
+            rejects.add(rejectKey);
+        }
+        return accepted;
+    }
+
+    private Map<String, Double> classifyFrames(String criterion, DicomObject header, DicomInputStream din,
+            ScalableBloomFilter rejects, String rejectKey, Object[] parameters) throws IOException {
+        boolean accepted;
+        try {
+            accepted = this.accept(criterion, header, rejects, rejectKey, parameters);
+        } catch (RuntimeException ex) {
+            throw new HookFailure(ex);
+        }
+        if (!accepted) {
+            return Collections.emptyMap();
+        }
+        if (din.tag() != Tag.PixelData) {
+            // no pixel data
+            return Collections.emptyMap();
+        }
+        FrameReader reader = new FrameReader(din, header);
+        FrameReducer.Accumulator acc = this.getFrameReducer(criterion).accumulator();
+        int batchSize = Math.max(1, this.getFrameBatchSize(criterion));
+        List<Frame> batch = new ArrayList<>(batchSize);
+        Deque<byte[]> spare = new ArrayDeque<>(batchSize);
+        long predictNanos = 0;
+        Frame frame;
+        do {
+            frame = reader.next(spare.poll());
+            if (frame != null) {
+                batch.add(frame);
+            }
+            if (batch.size() == batchSize || (frame == null && !batch.isEmpty())) {
+                long start = System.nanoTime();
+                try {
+                    Semaphore permits = this.acquireInference(criterion);
+                    try {
+                        for (Map<String, Double> p : this.predictFrames(criterion, header, batch, parameters)) {
+                            acc.add(p);
+                        }
+                    } finally {
+                        releaseInference(permits);
+                    }
+                } catch (RuntimeException ex) {
+                    throw new HookFailure(ex);
+                }
+                predictNanos += System.nanoTime() - start;
+                for (Frame f : batch) {
+                    spare.push(f.getData());
+                }
+                batch.clear();
+            }
+        } while (frame != null);
+        this.metrics.recordLatency(this.getName(), criterion, Stage.PREDICT, predictNanos);
+        return acc.result();
+    }
+
+    private Map<String, Double> classifyDirect(String criterion, DicomObject header, DicomInputStream din,
+            ByteBuffer mapped, ScalableBloomFilter rejects, String rejectKey, Object[] parameters)
+            throws IOException {
+        try {
+            if (!this.accept(criterion, header, rejects, rejectKey, parameters)) {
+                return Collections.emptyMap();
+            }
+        } catch (RuntimeException ex) {
+            throw new HookFailure(ex);
+        }
+        PixelDataBuffer pixels = null;
+        ByteBuffer owned = null;
+        if (din.tag() == Tag.PixelData) {
+            if (din.valueLength() == -1) {
+                logger.debug("Compressed pixel data cannot be classified from a raw buffer for {}", criterion);
+                return Collections.emptyMap();
+            }
+            pixels = mapped != null ? PixelDataBuffer.slice(din, mapped, header) : null;
+            if (pixels == null) {
+                pixels = PixelDataBuffer.read(din, header, this.directBuffers.poll());
+                owned = pixels.getBuffer();
+            }
+        }
+        PixelDataBuffer data = pixels;
+        try {
+            return this.deduplicate(criterion, header, data, parameters,
+                    () -> this.predictDirect(criterion, header, data, parameters));
+        } finally {
+            // the data point is no longer in use, keep the buffer for the next item
+            if (owned != null && this.directBuffers.size() < MAX_SPARE_BUFFERS) {
+                this.directBuffers.offer(owned);
+            }
+        }
+    }
+
+    /** Reuse the predictions of previously seen content, if the content cache is enabled. */
+    private Map<String, Double> deduplicate(String criterion, DicomObject header, PixelDataBuffer pixels,
+            Object[] parameters, Supplier<Map<String, Double>> prediction) {
+        ContentCache<Map<String, Double>> cache = this.contentCache;
+        String key = cache != null ? this.contentKey(criterion, header, pixels, parameters) : null;
+        if (key == null) {
+            return prediction.get();
+        }
+        Map<String, Double> known = cache.get(key);
+        if (known != null) {
+            this.metrics.count(this.getName(), criterion, Counter.DEDUPLICATED, 1);
+            return known;
+        }
+        Map<String, Double> predictions = prediction.get();
+        if (!predictions.isEmpty()) {
+            // empty predictions may stem from a transient failure, do not keep them
+            predictions = Collections.unmodifiableMap(predictions);
+            cache.put(key, predictions);
+        }
+        return predictions;
+    }
+
+    private String contentKey(String criterion, DicomObject header, PixelDataBuffer pixels, Object[] parameters) {
+        ContentHash hash = new ContentHash()
+                .update(this.getName())
+                .update(criterion)
+                .update(this.getConditionVersion(criterion));
+        Object[] options = RequestClass.strip(parameters);
+        if (options.length > 0 && !this.isPredictionParameterIndependent(criterion)) {
+            hash.update(Arrays.deepToString(options));
+        }
+        for (int tag : this.getContentHashTags(criterion)) {
+            hash.update(tag, header.get(tag));
+        }
+        if (pixels != null) {
+            hash.update(Tag.PixelData)
+                    .update(pixels.getByteOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0)
+                    .update(pixels.getBuffer());
+        } else {
+            DicomElement pixelData = header.get(Tag.PixelData);
+            if (pixelData == null || pixelData.isEmpty()) {
+                return null;
+            }
+            hash.update(pixelData.bigEndian() ? 1 : 0).update(Tag.PixelData, pixelData);
+        }
+        return hash.digest();
+    }
+
+    private Map<String, Double> predictDirect(String criterion, DicomObject header, PixelDataBuffer pixels,
+            Object[] parameters) {
+        Semaphore permits = null;
+        try {
+            permits = this.acquireInference(criterion);
+            long start = System.nanoTime();
+            FlightEvent event = FlightEvents.stage(Stage.TO_DATA_POINT, this.getName(), criterion);
+            String outcome = "failed";
+            B dataPoint;
+            try {
+                dataPoint = this.toDataPoint(header, pixels);
+                outcome = "ok";
+            } finally {
+                event.bytes(pixels != null ? pixels.getBuffer().remaining() : 0).end(outcome);
+            }
+            long converted = System.nanoTime();
+            this.metrics.recordLatency(this.getName(), criterion, Stage.TO_DATA_POINT, converted - start);
+            Map<String, Double> predictions = this.predict(criterion, dataPoint, parameters);
+            this.metrics.recordLatency(this.getName(), criterion, Stage.PREDICT, System.nanoTime() - converted);
+            return predictions;
         } catch (IOException ex) {
-            logger.warn("Failed to classify {} for {}", item, criterion, ex);
+            logger.warn("Failed to classify DICOM object for {}", criterion, ex);
             return Collections.emptyMap();
+        } catch (RuntimeException ex) {
+            throw new HookFailure(ex);
+        } finally {
+            releaseInference(permits);
+        }
+    }
+
+    /** Take an inference permit, if inference is bounded (see {@link #setInferencePermits}).
+     *
+     * @return the permits from which one was taken, or null if inference is not bounded
+     */
+    private Semaphore acquireInference(String criterion) {
+        Semaphore permits = this.inferencePermits;
+        if (permits == null) {
+            return null;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ClassificationException(criterion, "Interrupted while waiting for inference", ex);
+        }
+        return permits;
+    }
+
+    private static void releaseInference(Semaphore permits) {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    /** Wraps exceptions thrown by subclass hooks while the storage stream is open, so that they are not
+     * accounted as storage failures. */
+    private static final class HookFailure extends RuntimeException {
+        HookFailure(RuntimeException cause) {
+            super(cause);
+        }
+    }
+
+    /** The stream of an item from storage, which tells the failures of the storage apart from those of parsing
+     * the item, such as a truncated file. */
+    private static final class StorageStream extends FilterInputStream {
+        boolean failed = false;
+
+        StorageStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException ex) {
+                this.failed = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException ex) {
+                this.failed = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return super.skip(n);
+            } catch (IOException ex) {
+                this.failed = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            try {
+                return super.available();
+            } catch (IOException ex) {
+                this.failed = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            try {
+                super.reset();
+            } catch (IOException ex) {
+                this.failed = true;
+                throw ex;
+            }
+        }
+    }
+
+    /** Wraps a failure to parse an item which was read from storage without errors. */
+    private static final class DamagedItem extends IOException {
+        DamagedItem(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private static void onStorageOutcome(CircuitBreaker breaker, boolean ok) {
+        if (breaker == null) {
+            return;
+        }
+        if (ok) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
         }
     }
 
@@ -126,13 +706,38 @@ public abstract class AbstractClassifierPlugin<B> implements ClassifierInterface
      */
     public Map<String, Double> predict(String criterion, DicomObject obj, Object... parameters) {
         try {
-            return this.predict(criterion, this.toDataPoint(obj), parameters);
+            return this.predictObject(criterion, obj, parameters);
         } catch (IOException ex) {
             logger.warn("Failed to classify DICOM object for {}", criterion, ex);
             return Collections.emptyMap();
         }
     }
 
+    private Map<String, Double> predictObject(String criterion, DicomObject obj, Object[] parameters)
+            throws IOException {
+        Semaphore permits = this.acquireInference(criterion);
+        try {
+            long start = System.nanoTime();
+            InputSpec spec = this.getInputSpec(criterion);
+            FlightEvent event = FlightEvents.stage(Stage.TO_DATA_POINT, this.getName(), criterion);
+            String outcome = "failed";
+            B dataPoint;
+            try {
+                dataPoint = spec != null ? this.toDataPoint(obj, spec) : this.toDataPoint(obj);
+                outcome = "ok";
+            } finally {
+                event.end(outcome);
+            }
+            long converted = System.nanoTime();
+            this.metrics.recordLatency(this.getName(), criterion, Stage.TO_DATA_POINT, converted - start);
+            Map<String, Double> predictions = this.predict(criterion, dataPoint, parameters);
+            this.metrics.recordLatency(this.getName(), criterion, Stage.PREDICT, System.nanoTime() - converted);
+            return predictions;
+        } finally {
+            releaseInference(permits);
+        }
+    }
+
     /** Check whether this classifier can carry on with classifying the given DICOM object.
      *
      * @param criterion the classification criterion. This is an identifier of the class set.
@@ -151,6 +756,71 @@ public abstract class AbstractClassifierPlugin<B> implements ClassifierInterface
      */
     protected abstract B toDataPoint(DicomObject dicomObject) throws IOException;
 
+    /** Obtain a data point of the given DICOM object in the representation expected by the classifiers.
+     * Implementations should decode the pixel data straight into that representation, for instance with an
+     * {@link pt.ua.dicoogle.classification.api.util.InputDecoder}, and may reuse output buffers as long as
+     * data points are not retained after prediction. The default implementation ignores the spec and calls
+     * {@link #toDataPoint(DicomObject)}.
+     *
+     * @param dicomObject a DICOM object
+     * @param spec the input spec of the classifiers for the criterion
+     * @return a data point, ready to be tested on a predictor
+     */
+    protected B toDataPoint(DicomObject dicomObject, InputSpec spec) throws IOException {
+        return this.toDataPoint(dicomObject);
+    }
+
+    /** Obtain the input representation expected for the given criterion. The default implementation returns
+     * null, meaning that data points are obtained with {@link #toDataPoint(DicomObject)}.
+     *
+     * @param criterion the classification criterion
+     * @return the input spec, or null
+     */
+    protected InputSpec getInputSpec(String criterion) {
+        return null;
+    }
+
+    /** Declare whether items for the given criterion are converted into data points from off-heap pixel data.
+     * When this method returns true, items retrieved from storage are read up to the pixel data,
+     * {@link #canClassify} is evaluated on those attributes alone, and the native pixel data of accepted items is
+     * read into a direct buffer, which is passed to {@link #toDataPoint(DicomObject, PixelDataBuffer)} instead of
+     * being kept in the DICOM object. Items with compressed pixel data yield no predictions in this mode.
+     * The default implementation returns false.
+     *
+     * Series-scoped classification and frame streaming take precedence over this mode.
+     *
+     * @param criterion the classification criterion
+     * @return whether to read pixel data into a direct buffer for this criterion
+     */
+    protected boolean isDirectPixelData(String criterion) {
+        return false;
+    }
+
+    /** Obtain a data point from the object's attributes and its pixel data in an off-heap buffer. Classifiers
+     * backed by native code may wrap the buffer's memory directly. Plugins enabling
+     * {@link #isDirectPixelData} should override this method: the default implementation copies the pixel data
+     * back into a copy of the attributes and calls {@link #toDataPoint(DicomObject)}.
+     *
+     * The buffer is recycled for other items once the prediction is made, so the data point must not be
+     * kept any longer.
+     *
+     * @param header the object's attributes, excluding the pixel data
+     * @param pixels the pixel data, or null if the object has none
+     * @return a data point, ready to be tested on a predictor
+     */
+    protected B toDataPoint(DicomObject header, PixelDataBuffer pixels) throws IOException {
+        DicomObject obj = new BasicDicomObject();
+        header.copyTo(obj);
+        if (pixels != null) {
+            ByteBuffer buffer = pixels.getBuffer();
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            obj.putBytes(Tag.PixelData, pixels.getBitsAllocated() > 8 ? VR.OW : VR.OB, data,
+                    pixels.getByteOrder() == ByteOrder.BIG_ENDIAN);
+        }
+        return this.toDataPoint(obj);
+    }
+
     /** Perform a classification on the given item
      *
      * @param criterion the classification criterion. This is an identifier of the class set.
@@ -162,6 +832,381 @@ public abstract class AbstractClassifierPlugin<B> implements ClassifierInterface
     @Override
     public abstract Map<String, Double> predict(String criterion, B item, Object... parameters);
 
+    /** Declare that classification for the given criterion depends only on header attributes which are constant
+     * throughout a series. When this method returns a list of attributes, items retrieved from storage are read
+     * up to the pixel data, and both {@link #canClassify} and the predictions are evaluated once per series:
+     * subsequent items with the same SeriesInstanceUID and the same values for these attributes receive the
+     * memoized outcome, for a bounded amount of time. Rejections are memoized as well, unlike items whose data
+     * point could not be obtained. Parameters other than the item are not part of the memo key. The default
+     * implementation returns null, which disables this behavior.
+     *
+     * @param criterion the classification criterion
+     * @return the attributes on which classification depends besides the series, or null
+     */
+    protected int[] getSeriesScopedTags(String criterion) {
+        return null;
+    }
+
+    /** Declare whether items for the given criterion are classified frame by frame. When this method returns
+     * true, items retrieved from storage are read up to the pixel data, {@link #canClassify} is evaluated on
+     * those attributes alone, and the pixel data is then streamed in batches of
+     * {@link #getFrameBatchSize} frames to {@link #predictFrames}. The frame predictions are combined with
+     * {@link #getFrameReducer}. Only one batch of frames is kept in memory at a time, and
+     * {@link #toDataPoint} is not called. The default implementation returns false.
+     *
+     * Series-scoped classification (see {@link #getSeriesScopedTags}) takes precedence over frame streaming.
+     *
+     * @param criterion the classification criterion
+     * @return whether to stream frames for this criterion
+     */
+    protected boolean isFrameStreaming(String criterion) {
+        return false;
+    }
+
+    /** Obtain the strategy for combining frame predictions into the item's predictions.
+     * The default implementation returns {@link FrameReducer#MAX}.
+     *
+     * @param criterion the classification criterion
+     * @return the frame reducer
+     */
+    protected FrameReducer getFrameReducer(String criterion) {
+        return FrameReducer.MAX;
+    }
+
+    /** Obtain the number of frames passed to each call of {@link #predictFrames}. The default implementation
+     * returns 1.
+     *
+     * @param criterion the classification criterion
+     * @return the frame batch size
+     */
+    protected int getFrameBatchSize(String criterion) {
+        return 1;
+    }
+
+    /** Perform a classification on a batch of frames. The frames' byte arrays may be reused for subsequent
+     * frames, and so must not be retained after this call. The default implementation calls
+     * {@link #predictFrame} on each frame.
+     *
+     * @param criterion the classification criterion
+     * @param header the object's attributes, excluding the pixel data
+     * @param frames the frames, in order
+     * @param parameters additional var-arg parameters for miscellaneous options
+     * @return a dictionary of predicted values and respective scores for each frame, in the same order
+     */
+    protected List<Map<String, Double>> predictFrames(String criterion, DicomObject header, List<Frame> frames,
+            Object... parameters) {
+        List<Map<String, Double>> out = new ArrayList<>(frames.size());
+        for (Frame f : frames) {
+            out.add(this.predictFrame(criterion, header, f, parameters));
+        }
+        return out;
+    }
+
+    /** Perform a classification on a single frame. Plugins which stream frames should override either this
+     * method or {@link #predictFrames}: the default implementation puts the frame back as the pixel data of a
+     * single-frame copy of the header, and obtains its data point as {@link #predict(String, DicomObject, Object...)}
+     * would.
+     *
+     * @param criterion the classification criterion
+     * @param header the object's attributes, excluding the pixel data
+     * @param frame the frame
+     * @param parameters additional var-arg parameters for miscellaneous options
+     * @return a dictionary of predicted values and respective scores
+     */
+    protected Map<String, Double> predictFrame(String criterion, DicomObject header, Frame frame,
+            Object... parameters) {
+        DicomObject obj = new BasicDicomObject();
+        header.copyTo(obj);
+        obj.putInt(Tag.NumberOfFrames, VR.IS, 1);
+        DicomElement rows = header.get(Tag.Rows);
+        boolean bigEndian = rows != null && rows.bigEndian();
+        if (frame.isEncapsulated()) {
+            obj.putFragments(Tag.PixelData, VR.OB, bigEndian)
+                    .addFragment(new byte[0])
+                    .addFragment(frame.getData());
+        } else {
+            obj.putBytes(Tag.PixelData, obj.getInt(Tag.BitsAllocated, 8) > 8 ? VR.OW : VR.OB, frame.getData(),
+                    bigEndian);
+        }
+        // the batch of frames already holds an inference permit
+        B dataPoint;
+        try {
+            InputSpec spec = this.getInputSpec(criterion);
+            dataPoint = spec != null ? this.toDataPoint(obj, spec) : this.toDataPoint(obj);
+        } catch (IOException ex) {
+            logger.warn("Failed to classify frame {} for {}", frame.getIndex(), criterion, ex);
+            return Collections.emptyMap();
+        }
+        return this.predict(criterion, dataPoint, parameters);
+    }
+
+    /** Obtain the version of the conditions applied by {@link #canClassify} for the given criterion. Entries of the
+     * negative cache are bound to this version, so implementations should change it whenever the conditions
+     * change. The default implementation returns "0".
+     *
+     * @param criterion the classification criterion
+     * @return an identifier of the current conditions
+     */
+    protected String getConditionVersion(String criterion) {
+        return "0";
+    }
+
+    /** Obtain the criterion part of the identifiers of the predictions made for a classification criterion, which
+     * identifies the error outputs of the criterion. The default implementation returns the criterion itself.
+     *
+     * @param criterion a classification criterion, as given to {@link #query}
+     * @return the criterion part of the prediction identifiers
+     */
+    protected String getOutputCriterion(String criterion) {
+        return criterion;
+    }
+
+    /** Obtain the version stamp of the predictions of a criterion, which identifies the model (and its inputs)
+     * that produced them. Stamps are kept in the results' extra fields under {@code "version"}, and in the
+     * prediction index, so that a {@link ReclassificationJob} can find the items predicted by other versions.
+     * The default implementation returns null, meaning that predictions are not stamped.
+     *
+     * @param criterion the criterion part of the predictions' identifiers (before the '#')
+     * @return an identifier of the current version, or null
+     */
+    protected String getVersionStamp(String criterion) {
+        return null;
+    }
+
+    /** Declare whether the conditions applied by {@link #canClassify} for the given criterion depend on nothing
+     * but the DICOM object, and not on the additional query parameters. Rejections are then kept in the
+     * negative cache regardless of the parameters. Otherwise, the parameters are part of the cache key, by
+     * their string representation. The default implementation returns false.
+     *
+     * @param criterion the classification criterion
+     * @return whether the conditions ignore the additional parameters
+     */
+    protected boolean isConditionParameterIndependent(String criterion) {
+        return false;
+    }
+
+    /** Declare whether the predictions for the given criterion depend on nothing but the item, and not on the
+     * additional query parameters. Content deduplication then reuses predictions regardless of the parameters.
+     * Otherwise, the parameters are part of the content hash, by their string representation. The default
+     * implementation returns false.
+     *
+     * @param criterion the classification criterion
+     * @return whether the predictions ignore the additional parameters
+     */
+    protected boolean isPredictionParameterIndependent(String criterion) {
+        return false;
+    }
+
+    private String negativeCacheKey(String criterion, URI item, Object[] parameters) {
+        String key = this.getName() + '\u0000' + criterion + '\u0000' + this.getConditionVersion(criterion)
+                + '\u0000' + item;
+        Object[] options = RequestClass.strip(parameters);
+        if (options.length > 0 && !this.isConditionParameterIndependent(criterion)) {
+            key += '\u0000' + Arrays.deepToString(options);
+        }
+        return key;
+    }
+
+    /** Set the negative cache of this plugin. Items rejected by {@link #canClassify}, as well as items which
+     * are not valid DICOM files, are recorded in this cache, keyed by item URI, plugin name, criterion,
+     * condition version and additional parameters (see {@link #isConditionParameterIndependent}). Subsequent
+     * requests for these items return no predictions without reading from storage. Since the cache is
+     * probabilistic, a small fraction of other items (bounded by the filter's false positive rate) is skipped as
+     * well. The cache is disabled by default.
+     *
+     * The same filter may be saved with {@link ScalableBloomFilter#save} and loaded back with
+     * {@link ScalableBloomFilter#load} to persist it across restarts.
+     *
+     * @param negativeCache the filter of rejected items, or null to disable the negative cache
+     */
+    public void setNegativeCache(ScalableBloomFilter negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    public ScalableBloomFilter getNegativeCache() {
+        return this.negativeCache;
+    }
+
+    /** Set the inverted index of this plugin's predictions. Once set, the predictions made for items identified
+     * by URI in {@link #query} are recorded in the index as they are produced, so that items can be looked up
+     * by prediction class. The index is disabled by default.
+     *
+     * @param predictionIndex the prediction index, or null to disable indexing
+     */
+    public void setPredictionIndex(PredictionIndex predictionIndex) {
+        this.predictionIndex = predictionIndex;
+    }
+
+    public PredictionIndex getPredictionIndex() {
+        return this.predictionIndex;
+    }
+
+    /** Set the executor of {@link #queryAsync}. By default, an executor is created on first use with
+     * {@link ItemExecutors#newPerItemExecutor}, which runs each item on a virtual thread on Java 21 or later
+     * runtimes. Unless set before, inference is then bounded to the number of available processors (see
+     * {@link #setInferencePermits}). The executor is not shut down by this plugin.
+     *
+     * @param itemExecutor the executor running one classification per item, or null to use the default one
+     */
+    public void setItemExecutor(ExecutorService itemExecutor) {
+        this.itemExecutor = itemExecutor;
+    }
+
+    public ExecutorService getItemExecutor() {
+        return this.itemExecutor;
+    }
+
+    /** Bound the number of items of this plugin going through inference at once, that is, through data point
+     * conversion and prediction, regardless of how many are being read from storage. Storage reads are not
+     * bounded, except for frame streaming, which takes a permit per batch of frames. With many concurrent items,
+     * such as with {@link #queryAsync}, the number of available processors is a suitable bound. Inference is
+     * not bounded by default, unless the default item executor is created first.
+     *
+     * @param permits the maximum number of items in inference, or 0 for no limit
+     */
+    public void setInferencePermits(int permits) {
+        if (permits < 0) {
+            throw new IllegalArgumentException("Number of permits must not be negative");
+        }
+        this.inferencePermits = permits > 0 ? new Semaphore(permits, true) : null;
+        this.inferencePermitCount = permits;
+        this.inferencePermitsSet = true;
+    }
+
+    /**
+     * @return the maximum number of items in inference, or 0 if inference is not bounded
+     */
+    public int getInferencePermits() {
+        return this.inferencePermitCount;
+    }
+
+    /** Set the content cache of this plugin, which deduplicates identical content before inference. Once set,
+     * items read in full or as direct pixel data are hashed after being read, over their pixel data and the
+     * attributes given by {@link #getContentHashTags}, and items with the same hash as a previously classified
+     * item reuse its predictions instead of running the classifier. This covers re-sent instances, copies under
+     * other SOP Instance UIDs and anonymized duplicates. Unless {@link #isPredictionParameterIndependent} holds,
+     * the additional query parameters must be the same as well. Series-scoped and frame streaming classification
+     * are not deduplicated. The cache is disabled by default.
+     *
+     * The cache should be cleared when a classifier is replaced by another one giving different predictions
+     * (see {@link #clearPredictionCaches}).
+     *
+     * @param contentCache the store of predictions by content hash, or null to disable deduplication
+     */
+    public void setContentCache(ContentCache<Map<String, Double>> contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    public ContentCache<Map<String, Double>> getContentCache() {
+        return this.contentCache;
+    }
+
+    /** Discard all predictions memoized by this plugin, namely those of series-scoped criteria and those in the
+     * content cache. This should be called when a classifier is replaced by another one giving different
+     * predictions.
+     */
+    protected void clearPredictionCaches() {
+        this.seriesPredictions.clear();
+        ContentCache<Map<String, Double>> cache = this.contentCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /** Obtain the attributes which, besides the pixel data, influence the data point obtained from an item of
+     * the given criterion. These are hashed for content deduplication (see {@link #setContentCache}), and should
+     * be overridden if {@link #toDataPoint} reads other attributes. Attributes only read by
+     * {@link #canClassify} need not be included, since conditions are always checked.
+     *
+     * @param criterion the classification criterion
+     * @return the tags of the attributes influencing the data point
+     */
+    protected int[] getContentHashTags(String criterion) {
+        return CONTENT_HASH_TAGS;
+    }
+
+    /** Obtain the circuit breaker guarding the storage of the given item.
+     *
+     * @param item the URI of the item to retrieve
+     * @return the circuit breaker for the item's scheme, or null if storage calls are not guarded
+     */
+    protected CircuitBreaker getStorageBreaker(URI item) {
+        String scheme = item.getScheme() == null ? "" : item.getScheme().toLowerCase();
+        return this.storageBreakers.computeIfAbsent(scheme, this::createStorageBreaker);
+    }
+
+    /** Create the circuit breaker for a storage scheme. The default implementation creates a breaker with the
+     * default parameters of {@link CircuitBreaker}. Subclasses may override this method to tune the breaker, or
+     * return null to disable it.
+     *
+     * @param scheme the lower-cased URI scheme of the storage
+     * @return a new circuit breaker, or null
+     */
+    protected CircuitBreaker createStorageBreaker(String scheme) {
+        return new CircuitBreaker();
+    }
+
+    /** Open an item for reading, through a memory mapping of its local file when available, or through its
+     * storage otherwise. Local files smaller than {@link #MIN_MAPPED_SIZE} are read as a stream, since mapping
+     * them costs more than it saves.
+     */
+    private InputStream openItem(String criterion, URI item) throws IOException {
+        FlightEvent event = FlightEvents.stage(Stage.STORAGE_OPEN, this.getName(), criterion).item(item);
+        String outcome = "failed";
+        try {
+            Path path = this.toLocalPath(item).orElse(null);
+            if (path != null) {
+                try {
+                    long size = Files.size(path);
+                    if (size > 0 && size < MIN_MAPPED_SIZE) {
+                        InputStream in = new BufferedInputStream(Files.newInputStream(path));
+                        outcome = "local";
+                        return in;
+                    }
+                    if (size > 0 && size <= Integer.MAX_VALUE) {
+                        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                            // the mapping outlives the channel
+                            InputStream in = new ByteBufferInputStream(
+                                    channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                            outcome = "mapped";
+                            return in;
+                        }
+                    }
+                } catch (IOException | UnsupportedOperationException ex) {
+                    logger.debug("Could not open {} locally, reading from storage", item, ex);
+                }
+            }
+            InputStream in = this.fromStorage(item).get().getInputStream();
+            outcome = "storage";
+            return in;
+        } finally {
+            event.end(outcome);
+        }
+    }
+
+    /** Obtain the local file of an item, so that it can be read directly (through a memory mapping if it is
+     * large enough) rather than through its storage's input stream. The default implementation resolves "file"
+     * URIs, and delegates to the item's storage if it implements {@link LocalPathStorage}. Subclasses may return
+     * empty to always read from storage.
+     *
+     * @param item the URI of the item
+     * @return the path to the item's file, or empty if it should be read from storage
+     */
+    protected Optional<Path> toLocalPath(URI item) {
+        if ("file".equalsIgnoreCase(item.getScheme())) {
+            try {
+                return Optional.of(Paths.get(item));
+            } catch (IllegalArgumentException | FileSystemNotFoundException ex) {
+                return Optional.empty();
+            }
+        }
+        StorageInterface store = this.platform != null ? this.platform.getStorageForSchema(item) : null;
+        if (store instanceof LocalPathStorage) {
+            return ((LocalPathStorage) store).toLocalPath(item);
+        }
+        return Optional.empty();
+    }
+
     protected Optional<StorageInputStream> fromStorage(URI item) {
         StorageInterface store = this.platform.getStorageForSchema(item);
         if (store == null) {
@@ -173,6 +1218,18 @@ public abstract class AbstractClassifierPlugin<B> implements ClassifierInterface
         return Optional.empty();
     }
 
+    /** Set the registry receiving measurements of the classification pipeline.
+     *
+     * @param metrics the metrics registry, or null to disable metrics
+     */
+    public void setMetricsRegistry(MetricsRegistry metrics) {
+        this.metrics = metrics == null ? MetricsRegistry.NOOP : metrics;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return this.metrics;
+    }
+
     @Override
     public boolean enable() {
         this.enabled = true;
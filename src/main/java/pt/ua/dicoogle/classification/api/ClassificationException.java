@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+/** Unchecked exception for a partial failure of a classification criterion. Unlike other run-time exceptions,
+ * this one is converted into an error output by {@link AbstractClassifierPlugin#query} instead of an empty result.
+ */
+public class ClassificationException extends RuntimeException {
+    private final String criterion;
+
+    public ClassificationException(String criterion, String message) {
+        super(message);
+        this.criterion = criterion;
+    }
+
+    public ClassificationException(String criterion, String message, Throwable cause) {
+        super(message, cause);
+        this.criterion = criterion;
+    }
+
+    /**
+     * @return the classification criterion that could not be served
+     */
+    public String getCriterion() {
+        return criterion;
+    }
+}
@@ -20,6 +20,7 @@ package pt.ua.dicoogle.classification.api;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 
 /** Base type for classifier descriptors. These serializable instances allow plugins to lazily instantiate classifiers
  * by keeping all of the necessary parameters in a single object.
@@ -43,4 +44,121 @@ public interface ClassifierDescriptor extends Serializable {
      * @return whether to immediately instantiate a new classifier on registration
      */
     public boolean isPreload();
+
+    /**
+     * @return the maximum number of predictions that may run concurrently on this classifier,
+     *         or 0 for no limit
+     */
+    public default int getMaxConcurrency() {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of requests waiting for the classifier when its concurrency limit is reached
+     */
+    public default int getMaxQueueLength() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the maximum time in milliseconds that a request may wait for the classifier, or 0 to wait indefinitely
+     */
+    public default long getMaxQueueWaitMillis() {
+        return 0;
+    }
+
+    /**
+     * @return what to do with requests arriving when the classifier's concurrency limit is reached
+     */
+    public default RejectionPolicy getRejectionPolicy() {
+        return RejectionPolicy.WAIT;
+    }
+
+    /**
+     * @return whether the concurrency limit should be adjusted to the observed prediction latency, in which case
+     *         {@link #getMaxConcurrency()} is the upper bound of the limit
+     */
+    public default boolean isAdaptiveConcurrency() {
+        return false;
+    }
+
+    /**
+     * @return the maximum number of instances of this classifier to keep for concurrent predictions.
+     *         Classifiers which are not thread-safe should declare a size larger than 1 in order to
+     *         classify more than one item at a time.
+     */
+    public default int getPoolSize() {
+        return 1;
+    }
+
+    /**
+     * @return the time in milliseconds after which an idle pooled instance is released,
+     *         other than the first instance
+     */
+    public default long getPoolIdleTimeoutMillis() {
+        return 60_000;
+    }
+
+    /**
+     * @return the input representation expected by the classifier, so that data points can be decoded directly
+     *         into it, or null if the classifier adapts data points itself
+     */
+    public default InputSpec getInputSpec() {
+        return null;
+    }
+
+    /**
+     * @return the name of a more expensive classifier to consult when this classifier is not confident enough
+     *         about a prediction, or null if this classifier's predictions are final. Escalated predictions are
+     *         still identified by the name of this classifier.
+     */
+    public default String getCascadeTarget() {
+        return null;
+    }
+
+    /**
+     * @return the top class probability below which predictions are escalated to the cascade target
+     */
+    public default double getCascadeThreshold() {
+        return 0.9;
+    }
+
+    /**
+     * @return an identifier of this version of the classifier, such as a model checksum or release number.
+     *         Predictions and caches depending on the model should be keyed by it.
+     */
+    public default String getVersion() {
+        return "0";
+    }
+
+    /**
+     * @return the names of the classifiers whose predictions this classifier takes as input, so that its
+     *         predictions are also redone when one of them changes version
+     */
+    public default Collection<String> getDependsOn() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return the number of predictions to run on each new instance of the classifier before it receives
+     *         requests, using the samples provided by the manager. 0 disables warm-up.
+     */
+    public default int getWarmupIterations() {
+        return 0;
+    }
+
+    /**
+     * @return the number of local worker processes hosting the classifier, or 0 to host it in the Dicoogle process.
+     *         Managers create worker pools with {@link AbstractClassifierManager#createWorkerPool}.
+     */
+    public default int getWorkerProcesses() {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of concurrent predictions in each worker process
+     */
+    public default int getWorkerConcurrency() {
+        return 1;
+    }
 }
\ No newline at end of file
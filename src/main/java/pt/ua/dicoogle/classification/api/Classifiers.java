@@ -32,6 +32,9 @@ import pt.ua.dicoogle.sdk.datastructs.SearchResult;
  */
 public class Classifiers {
 
+    /** The class name used in the identifiers of error outputs. */
+    public static final String ERROR_CLASS = "error";
+
     private Classifiers() {}
 
     /** Convert a classifier's dictionary of predictions into a collection of results.
@@ -47,6 +50,47 @@ public class Classifiers {
                 .collect(Collectors.toList());
     }
 
+    /** Convert a classifier's dictionary of predictions into a collection of results, stamping each result with
+     * the version of the model that produced it in the extra field {@code "version"}.
+     *
+     * @param classifierName the unique name of the classifier
+     * @param predictions the predictions
+     * @param versions the version stamps, keyed by the criterion part of the predictions' keys (before the '#').
+     *                 Results of criteria without a stamp are not stamped.
+     * @return a Dicoogle classification compliant collection of results containing the predictions
+     */
+    public static Collection<SearchResult> toResult(String classifierName, Map<String, Double> predictions,
+            Map<String, String> versions) {
+        if (versions.isEmpty()) {
+            return toResult(classifierName, predictions);
+        }
+        return predictions.entrySet().stream()
+                .map(e -> {
+                    HashMap<String, Object> extra = new HashMap<>(2);
+                    int sep = e.getKey().indexOf('#');
+                    String version = versions.get(sep >= 0 ? e.getKey().substring(0, sep) : e.getKey());
+                    if (version != null) {
+                        extra.put("version", version);
+                    }
+                    return new SearchResult(PredictionIdentifier.toURI(classifierName, e.getKey()), e.getValue(),
+                            extra);
+                })
+                .collect(Collectors.toList());
+    }
+
+    /** Create an error output for a partial failure in classification.
+     *
+     * @param classifierName the unique name of the classifier
+     * @param criterion the classification criterion that failed
+     * @param message the error message
+     * @return a Dicoogle classification compliant error output
+     */
+    public static SearchResult toErrorResult(String classifierName, String criterion, String message) {
+        HashMap<String, Object> extra = new HashMap<>(2);
+        extra.put("error", message);
+        return new SearchResult(PredictionIdentifier.toURI(classifierName, criterion, ERROR_CLASS), Double.NaN, extra);
+    }
+
     /** Convert a collection of results back into a dictionary of predictions.
      *
      * @param predictions the predictions
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Strategy for combining the predictions of the frames of a multi-frame object into a single prediction.
+ */
+public enum FrameReducer {
+    /** The highest score of each class across frames. */
+    MAX {
+        @Override
+        double combine(double acc, double score) {
+            return Math.max(acc, score);
+        }
+    },
+    /** The lowest score of each class across the frames in which it was predicted. */
+    MIN {
+        @Override
+        double combine(double acc, double score) {
+            return Math.min(acc, score);
+        }
+    },
+    /** The average score of each class across frames, where a class missing from a frame counts as zero. */
+    MEAN {
+        @Override
+        double combine(double acc, double score) {
+            return acc + score;
+        }
+
+        @Override
+        double finish(double acc, int frames) {
+            return acc / frames;
+        }
+    };
+
+    abstract double combine(double acc, double score);
+
+    double finish(double acc, int frames) {
+        return acc;
+    }
+
+    /**
+     * @return a new accumulator of frame predictions with this reducer
+     */
+    public Accumulator accumulator() {
+        return new Accumulator(this);
+    }
+
+    /** Incremental reduction of frame predictions. This class is not thread-safe.
+     */
+    public static final class Accumulator {
+        private final FrameReducer reducer;
+        private final Map<String, Double> acc = new HashMap<>();
+        private int frames = 0;
+
+        private Accumulator(FrameReducer reducer) {
+            this.reducer = reducer;
+        }
+
+        /** Add the predictions of one frame.
+         *
+         * @param predictions the frame's predictions
+         */
+        public void add(Map<String, Double> predictions) {
+            this.frames++;
+            for (Map.Entry<String, Double> e : predictions.entrySet()) {
+                this.acc.merge(e.getKey(), e.getValue(), this.reducer::combine);
+            }
+        }
+
+        /**
+         * @return the number of frames added
+         */
+        public int getFrames() {
+            return this.frames;
+        }
+
+        /**
+         * @return the reduced predictions, empty if no frames were added
+         */
+        public Map<String, Double> result() {
+            Map<String, Double> out = new HashMap<>(this.acc.size() * 2);
+            for (Map.Entry<String, Double> e : this.acc.entrySet()) {
+                out.put(e.getKey(), this.reducer.finish(e.getValue(), this.frames));
+            }
+            return out;
+        }
+    }
+}
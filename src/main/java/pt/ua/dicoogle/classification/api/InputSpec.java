@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/** The input representation expected by a classifier. Declaring it allows the plugin to decode DICOM pixel data
+ * directly into the classifier's input, rather than decoding the full image and adapting it afterwards.
+ * Instances are immutable.
+ */
+public final class InputSpec implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The type of each output sample. */
+    public enum PixelType {
+        /** Unsigned bytes from 0 to 255. */
+        UINT8,
+        /** Single precision floating point values. */
+        FLOAT32
+    }
+
+    /** How source pixels are combined into each output pixel. */
+    public enum Resampling {
+        /** Take the source pixel nearest to the output pixel's center. Only the sampled pixels are read. */
+        NEAREST,
+        /** Average the source pixels covered by the output pixel. */
+        AREA
+    }
+
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final PixelType pixelType;
+    private final Resampling resampling;
+    private final boolean objectWindow;
+    private final double windowCenter;
+    private final double windowWidth;
+
+    /** Create an input spec without windowing and with nearest neighbor resampling.
+     *
+     * @param width the output width in pixels
+     * @param height the output height in pixels
+     * @param channels the number of channels, either 1 or 3
+     * @param pixelType the output sample type
+     */
+    public InputSpec(int width, int height, int channels, PixelType pixelType) {
+        this(width, height, channels, pixelType, Resampling.NEAREST, false, Double.NaN, Double.NaN);
+    }
+
+    private InputSpec(int width, int height, int channels, PixelType pixelType, Resampling resampling,
+            boolean objectWindow, double windowCenter, double windowWidth) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Output dimensions must be positive");
+        }
+        if (channels != 1 && channels != 3) {
+            throw new IllegalArgumentException("Number of channels must be 1 or 3");
+        }
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.pixelType = Objects.requireNonNull(pixelType);
+        this.resampling = Objects.requireNonNull(resampling);
+        this.objectWindow = objectWindow;
+        this.windowCenter = windowCenter;
+        this.windowWidth = windowWidth;
+    }
+
+    /** Obtain a copy of this spec with a fixed VOI window, applied after the modality rescale.
+     *
+     * @param center the window center
+     * @param width the window width, at least 1
+     * @return the new spec
+     */
+    public InputSpec withWindow(double center, double width) {
+        if (!(width >= 1)) {
+            throw new IllegalArgumentException("Window width must be at least 1");
+        }
+        return new InputSpec(this.width, this.height, channels, pixelType, resampling, false, center, width);
+    }
+
+    /** Obtain a copy of this spec which applies the first VOI window declared in each object (WindowCenter
+     * and WindowWidth), or no window if the object has none.
+     *
+     * @return the new spec
+     */
+    public InputSpec withObjectWindow() {
+        return new InputSpec(width, height, channels, pixelType, resampling, true, Double.NaN, Double.NaN);
+    }
+
+    /** Obtain a copy of this spec with the given resampling method.
+     *
+     * @param resampling the resampling method
+     * @return the new spec
+     */
+    public InputSpec withResampling(Resampling resampling) {
+        return new InputSpec(width, height, channels, pixelType, resampling, objectWindow, windowCenter,
+                windowWidth);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public PixelType getPixelType() {
+        return pixelType;
+    }
+
+    public Resampling getResampling() {
+        return resampling;
+    }
+
+    /**
+     * @return whether the window is taken from each object
+     */
+    public boolean isObjectWindow() {
+        return objectWindow;
+    }
+
+    /**
+     * @return whether a fixed window was set
+     */
+    public boolean hasFixedWindow() {
+        return !Double.isNaN(windowWidth);
+    }
+
+    public double getWindowCenter() {
+        return windowCenter;
+    }
+
+    public double getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * @return the number of samples in the output, which is width * height * channels
+     */
+    public int getLength() {
+        return width * height * channels;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InputSpec)) {
+            return false;
+        }
+        InputSpec that = (InputSpec) o;
+        return width == that.width && height == that.height && channels == that.channels
+                && pixelType == that.pixelType && resampling == that.resampling
+                && objectWindow == that.objectWindow
+                && Double.compare(windowCenter, that.windowCenter) == 0
+                && Double.compare(windowWidth, that.windowWidth) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(width, height, channels, pixelType, resampling, objectWindow, windowCenter,
+                windowWidth);
+    }
+
+    @Override
+    public String toString() {
+        return "InputSpec{" + width + "x" + height + "x" + channels + " " + pixelType + ", " + resampling
+                + (objectWindow ? ", object window" : "")
+                + (hasFixedWindow() ? ", window " + windowCenter + "/" + windowWidth : "") + "}";
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.util.concurrent.TimeUnit;
+
+/** The outcome of loading a classifier instance, including its warm-up phase. Instances are immutable.
+ */
+public final class LoadStatus {
+    private final String version;
+    private final long loadNanos;
+    private final int warmupIterations;
+    private final long warmupNanos;
+    private final long steadyStateNanos;
+
+    public LoadStatus(String version, long loadNanos, int warmupIterations, long warmupNanos,
+            long steadyStateNanos) {
+        this.version = version;
+        this.loadNanos = loadNanos;
+        this.warmupIterations = warmupIterations;
+        this.warmupNanos = warmupNanos;
+        this.steadyStateNanos = steadyStateNanos;
+    }
+
+    /**
+     * @return the version of the loaded classifier
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the time taken to create the instance, excluding warm-up, in nanoseconds
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * @return the number of warm-up predictions performed, 0 if the classifier was not warmed up
+     */
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    /**
+     * @return the time taken by the warm-up phase in nanoseconds
+     */
+    public long getWarmupNanos() {
+        return warmupNanos;
+    }
+
+    /**
+     * @return the mean latency of the last warm-up predictions in nanoseconds, or -1 if the classifier was not
+     *         warmed up
+     */
+    public long getSteadyStateNanos() {
+        return steadyStateNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadStatus{version=" + version
+                + ", load=" + TimeUnit.NANOSECONDS.toMillis(loadNanos) + "ms"
+                + ", warmup=" + warmupIterations + " in " + TimeUnit.NANOSECONDS.toMillis(warmupNanos) + "ms"
+                + ", steadyState="
+                + (steadyStateNanos < 0 ? "n/a" : TimeUnit.NANOSECONDS.toMicros(steadyStateNanos) + "us")
+                + "}";
+    }
+}
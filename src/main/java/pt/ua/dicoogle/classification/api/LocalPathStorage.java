@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/** Interface for storage plugins which keep their items in the local file system. Classifier plugins use it
+ * to read such items from their files, memory-mapped if large enough, instead of the storage's input streams.
+ */
+public interface LocalPathStorage {
+
+    /** Obtain the local file of a stored item.
+     *
+     * @param item the URI of the item in this storage
+     * @return the path to the item's file, or empty if the item is not available as a local file
+     */
+    public Optional<Path> toLocalPath(URI item);
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** Unchecked exception for a classification in which some of the criteria failed. It carries the predictions of
+ * the criteria which succeeded, which {@link AbstractClassifierPlugin#query} returns along with an error output per
+ * failed criterion.
+ */
+public class PartialClassificationException extends ClassificationException {
+    private final Map<String, Double> predictions;
+    private final List<ClassificationException> failures;
+
+    /** Create a partial failure.
+     *
+     * @param criteria the classification criteria of the request
+     * @param predictions the predictions of the criteria which succeeded
+     * @param failures the failures of the other criteria, each identified by the criterion part of the prediction
+     *                 identifiers it would have produced
+     */
+    public PartialClassificationException(String criteria, Map<String, Double> predictions,
+            List<ClassificationException> failures) {
+        super(criteria, failures.size() + " criteria failed", failures.isEmpty() ? null : failures.get(0));
+        this.predictions = Collections.unmodifiableMap(predictions);
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return the predictions of the criteria which succeeded
+     */
+    public Map<String, Double> getPredictions() {
+        return predictions;
+    }
+
+    /**
+     * @return the failures of the criteria which failed
+     */
+    public List<ClassificationException> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,832 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/** An inverted index of predictions, from each prediction identifier to the items predicted with that class.
+ * This answers queries such as "all items where {@code class://organ-net/organ#liver} is at least 0.8" without
+ * scanning or reclassifying the archive.
+ *
+ * Each prediction identifier keeps a posting list of items sorted by descending score, so that threshold and
+ * top-N queries only decode the entries they return. Posting lists are delta and variable-length encoded: item
+ * URIs are interned into integer identifiers, and scores are kept in single precision. Updates are buffered
+ * per posting list and merged into the encoded list once the buffer grows large enough. Only valid outputs
+ * (scores between 0 and 1) are indexed.
+ *
+ * Items may also be stamped with the version of the model which produced their predictions for each criterion,
+ * so that the items predicted by other versions can be found after a model update (see
+ * {@link ReclassificationJob}).
+ *
+ * This class is thread-safe. Indices can be saved to and loaded from a compact binary format.
+ */
+public class PredictionIndex {
+    private static final int MAGIC = 0x50494458; // "PIDX"
+    private static final int FORMAT_VERSION = 2;
+    private static final byte[] EMPTY = new byte[0];
+    private static final int[] NO_STAMPS = new int[0];
+    private static final int[] NO_CLASSES = new int[0];
+
+    /** The default minimum number of buffered updates of a posting list before they are merged. */
+    public static final int DEFAULT_MERGE_THRESHOLD = 64;
+
+    private final int mergeThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<String> items = new ArrayList<>();
+    private final Map<String, Integer> itemIds = new HashMap<>();
+    private final Map<PredictionIdentifier, Postings> postings = new HashMap<>();
+    // by item id, the ids of the classes listing the item, so that an update only touches those
+    private final List<int[]> itemClasses = new ArrayList<>();
+    private final List<PredictionIdentifier> classes = new ArrayList<>();
+    private final Map<PredictionIdentifier, Integer> classIds = new HashMap<>();
+    private final Map<String, Map<String, Stamps>> stamps = new HashMap<>();
+
+    /** An item found in the index, with its score for the queried class. */
+    public static final class Hit {
+        private final URI item;
+        private final double score;
+
+        public Hit(URI item, double score) {
+            this.item = item;
+            this.score = score;
+        }
+
+        public URI getItem() {
+            return item;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return item + "=" + score;
+        }
+    }
+
+    private static final class Postings {
+        // entries sorted by descending score, then ascending item id
+        byte[] block = EMPTY;
+        int blockLength = 0;
+        int count = 0;
+        // updates not yet merged into the block, by item id; NaN marks a removal
+        final Map<Integer, Float> pending = new HashMap<>();
+    }
+
+    /** The version stamps of the items of a criterion. */
+    private static final class Stamps {
+        final List<String> versions = new ArrayList<>();
+        // by item id, the index of the version plus one, or 0 if the item is not stamped
+        int[] byItem = NO_STAMPS;
+
+        void set(int item, String version) {
+            int v = this.versions.indexOf(version);
+            if (v < 0) {
+                v = this.versions.size();
+                this.versions.add(version);
+            }
+            if (item >= this.byItem.length) {
+                this.byItem = Arrays.copyOf(this.byItem, Math.max(item + 1, this.byItem.length * 3 / 2 + 16));
+            }
+            this.byItem[item] = v + 1;
+        }
+
+        String get(int item) {
+            int v = item < this.byItem.length ? this.byItem[item] : 0;
+            return v == 0 ? null : this.versions.get(v - 1);
+        }
+    }
+
+    /** Sequential decoder of an encoded posting list. */
+    private static final class Cursor {
+        private final byte[] block;
+        private final int end;
+        private int pos = 0;
+        private int bits = 0;
+        private boolean first = true;
+        int item;
+        float score;
+
+        Cursor(byte[] block, int end) {
+            this.block = block;
+            this.end = end;
+        }
+
+        boolean next() {
+            if (pos >= end) {
+                return false;
+            }
+            int v = this.readVarInt();
+            // non-negative floats sort like their bit patterns, so descending scores give non-negative deltas
+            bits = first ? v : bits - v;
+            first = false;
+            item = this.readVarInt();
+            score = Float.intBitsToFloat(bits);
+            return true;
+        }
+
+        private int readVarInt() {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = block[pos++];
+                v |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+    }
+
+    /** Create an empty index with the default merge threshold. */
+    public PredictionIndex() {
+        this(DEFAULT_MERGE_THRESHOLD);
+    }
+
+    /** Create an empty index.
+     *
+     * @param mergeThreshold the minimum number of buffered updates of a posting list before they are merged.
+     *                       A posting list also waits for updates amounting to an eighth of its size.
+     */
+    public PredictionIndex(int mergeThreshold) {
+        if (mergeThreshold < 1) {
+            throw new IllegalArgumentException("Merge threshold must be positive");
+        }
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    /** Set the score of an item for a prediction class, replacing any previous score.
+     *
+     * @param id the prediction identifier
+     * @param item the URI of the item
+     * @param score the probability of the prediction. Values outside the range 0 to 1 (and negative zero) remove
+     *              the item from the class' posting list, as they do not represent a valid output.
+     */
+    public void put(PredictionIdentifier id, URI item, double score) {
+        lock.writeLock().lock();
+        try {
+            this.putLocked(id, item.toString(), score);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Record the predictions of a classifier for an item, replacing the item's previous predictions for the
+     * criteria present in the new ones.
+     *
+     * @param item the URI of the item
+     * @param classifierName the unique name of the classifier
+     * @param predictions the predictions, keyed by {@code criterion#class} as produced by the classifier
+     */
+    public void update(URI item, String classifierName, Map<String, Double> predictions) {
+        this.update(item, classifierName, Collections.emptySet(), predictions, Collections.emptyMap());
+    }
+
+    /** Record the predictions of a classifier for an item, along with the versions which produced them. The
+     * item's previous predictions for the given criteria, and for those present in the new predictions, are
+     * replaced: classes absent from the new predictions no longer list the item. In particular, empty
+     * predictions remove the item from all classes of the given criteria.
+     *
+     * @param item the URI of the item
+     * @param classifierName the unique name of the classifier
+     * @param criteria the criteria whose predictions were made, even if none was produced
+     * @param predictions the predictions, keyed by {@code criterion#class} as produced by the classifier
+     * @param versions the version stamps of the predictions, keyed by criterion
+     */
+    public void update(URI item, String classifierName, Collection<String> criteria, Map<String, Double> predictions,
+            Map<String, String> versions) {
+        Set<String> covered = new HashSet<>(criteria);
+        for (String key : predictions.keySet()) {
+            int sep = key.indexOf('#');
+            covered.add(sep >= 0 ? key.substring(0, sep) : key);
+        }
+        if (covered.isEmpty() && versions.isEmpty()) {
+            return;
+        }
+        String itemKey = item.toString();
+        lock.writeLock().lock();
+        try {
+            Integer itemId = this.itemIds.get(itemKey);
+            if (itemId != null) {
+                // drop the classes which are no longer predicted, among those listing the item
+                for (int c : this.itemClasses.get(itemId)) {
+                    PredictionIdentifier id = this.classes.get(c);
+                    if (id.getClassifierName().equals(classifierName) && covered.contains(id.getCriterion())
+                            && !predictions.containsKey(id.getCriterion() + '#' + id.getPredictionClass())) {
+                        this.putLocked(id, itemKey, Double.NaN);
+                    }
+                }
+            }
+            for (Map.Entry<String, Double> e : predictions.entrySet()) {
+                PredictionIdentifier id =
+                        PredictionIdentifier.decompose(PredictionIdentifier.toURI(classifierName, e.getKey()));
+                this.putLocked(id, itemKey, e.getValue());
+            }
+            for (Map.Entry<String, String> e : versions.entrySet()) {
+                this.stampLocked(classifierName, e.getKey(), itemKey, e.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Stamp an item with the version of the model which produced its predictions for a criterion.
+     *
+     * @param item the URI of the item
+     * @param classifierName the unique name of the classifier
+     * @param criterion the classification criterion
+     * @param version the version stamp
+     */
+    public void stamp(URI item, String classifierName, String criterion, String version) {
+        lock.writeLock().lock();
+        try {
+            this.stampLocked(classifierName, criterion, item.toString(), version);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void stampLocked(String classifierName, String criterion, String item, String version) {
+        int itemId = this.itemIdLocked(item);
+        this.stamps.computeIfAbsent(classifierName, k -> new HashMap<>())
+                .computeIfAbsent(criterion, k -> new Stamps())
+                .set(itemId, version);
+    }
+
+    /** Obtain the version stamp of an item for a criterion.
+     *
+     * @param item the URI of the item
+     * @param classifierName the unique name of the classifier
+     * @param criterion the classification criterion
+     * @return the version which produced the item's predictions, or null if the item is not stamped
+     */
+    public String getStamp(URI item, String classifierName, String criterion) {
+        lock.readLock().lock();
+        try {
+            Integer itemId = this.itemIds.get(item.toString());
+            Stamps s = this.stamps.getOrDefault(classifierName, Collections.emptyMap()).get(criterion);
+            return itemId != null && s != null ? s.get(itemId) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Obtain the items whose predictions for a criterion were produced by a version other than the given one.
+     * Items which were never stamped for the criterion are not included.
+     *
+     * @param classifierName the unique name of the classifier
+     * @param criterion the classification criterion
+     * @param version the current version stamp
+     * @return the items stamped with other versions, in the order in which they were first indexed
+     */
+    public List<URI> getStale(String classifierName, String criterion, String version) {
+        lock.readLock().lock();
+        try {
+            Stamps s = this.stamps.getOrDefault(classifierName, Collections.emptyMap()).get(criterion);
+            if (s == null) {
+                return Collections.emptyList();
+            }
+            int current = s.versions.indexOf(version) + 1;
+            List<URI> out = new ArrayList<>();
+            for (int i = 0; i < s.byItem.length; i++) {
+                if (s.byItem[i] != 0 && s.byItem[i] != current) {
+                    out.add(URI.create(this.items.get(i)));
+                }
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Remove an item from a prediction class.
+     *
+     * @param id the prediction identifier
+     * @param item the URI of the item
+     */
+    public void remove(PredictionIdentifier id, URI item) {
+        this.put(id, item, Double.NaN);
+    }
+
+    private void putLocked(PredictionIdentifier id, String item, double score) {
+        // negative zero passes a comparison with zero, but its sign bit would break the order of the encoding
+        boolean valid = Double.compare(score, 0.0) >= 0 && score <= 1;
+        Postings p = this.postings.get(id);
+        if (p == null) {
+            if (!valid) {
+                return;
+            }
+            p = new Postings();
+            this.postings.put(id, p);
+        }
+        if (!valid && !this.itemIds.containsKey(item)) {
+            return;
+        }
+        int itemId = this.itemIdLocked(item);
+        p.pending.put(itemId, valid ? (float) score : Float.NaN);
+        this.listLocked(itemId, id, valid);
+        if (p.pending.size() >= Math.max(this.mergeThreshold, p.count >>> 3)) {
+            merge(p);
+            if (p.count == 0) {
+                this.postings.remove(id);
+            }
+        }
+    }
+
+    private int itemIdLocked(String item) {
+        Integer itemId = this.itemIds.get(item);
+        if (itemId == null) {
+            itemId = this.items.size();
+            this.items.add(item);
+            this.itemIds.put(item, itemId);
+            this.itemClasses.add(NO_CLASSES);
+        }
+        return itemId;
+    }
+
+    /** Record whether a class lists an item. */
+    private void listLocked(int itemId, PredictionIdentifier id, boolean listed) {
+        Integer classId = this.classIds.get(id);
+        if (classId == null) {
+            if (!listed) {
+                return;
+            }
+            classId = this.classes.size();
+            this.classes.add(id);
+            this.classIds.put(id, classId);
+        }
+        int[] current = this.itemClasses.get(itemId);
+        int at = -1;
+        for (int i = 0; i < current.length && at < 0; i++) {
+            if (current[i] == classId) {
+                at = i;
+            }
+        }
+        if (listed && at < 0) {
+            int[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = classId;
+            this.itemClasses.set(itemId, next);
+        } else if (!listed && at >= 0) {
+            int[] next = new int[current.length - 1];
+            System.arraycopy(current, 0, next, 0, at);
+            System.arraycopy(current, at + 1, next, at, next.length - at);
+            this.itemClasses.set(itemId, next);
+        }
+    }
+
+    /** Obtain the items with a score of at least the given threshold for a prediction class.
+     *
+     * @param id the prediction identifier
+     * @param minScore the minimum score, inclusive
+     * @return the matching items, sorted by descending score
+     */
+    public List<Hit> atLeast(PredictionIdentifier id, double minScore) {
+        return this.scan(id, minScore, Integer.MAX_VALUE);
+    }
+
+    /** Obtain the items with the highest scores for a prediction class.
+     *
+     * @param id the prediction identifier
+     * @param n the maximum number of items to obtain
+     * @return up to {@code n} items, sorted by descending score
+     */
+    public List<Hit> top(PredictionIdentifier id, int n) {
+        return this.scan(id, Double.NEGATIVE_INFINITY, n);
+    }
+
+    private List<Hit> scan(PredictionIdentifier id, double minScore, int limit) {
+        lock.readLock().lock();
+        try {
+            Postings p = this.postings.get(id);
+            if (p == null || limit <= 0) {
+                return Collections.emptyList();
+            }
+            // the buffered updates are few, sort them and merge them with the encoded list on the fly
+            long[] extra = sortedPending(p);
+            int e = 0;
+            Cursor c = new Cursor(p.block, p.blockLength);
+            boolean hasBlock = nextKept(c, p);
+            List<Hit> out = new ArrayList<>(Math.min(limit, 16));
+            while (out.size() < limit) {
+                float score;
+                int item;
+                if (e < extra.length && (!hasBlock || compare(extra[e], c.score, c.item) <= 0)) {
+                    score = scoreOf(extra[e]);
+                    item = itemOf(extra[e]);
+                    e++;
+                } else if (hasBlock) {
+                    score = c.score;
+                    item = c.item;
+                    hasBlock = nextKept(c, p);
+                } else {
+                    break;
+                }
+                if (score < minScore) {
+                    break;
+                }
+                out.add(new Hit(URI.create(this.items.get(item)), score));
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // pending entries packed as score bits (high) and complemented item id (low), so that sorting and reversing
+    // gives the posting list order without boxing
+    private static long[] sortedPending(Postings p) {
+        long[] entries = new long[p.pending.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Float> e : p.pending.entrySet()) {
+            if (!e.getValue().isNaN()) {
+                entries[n++] = ((long) Float.floatToIntBits(e.getValue()) << 32) | (~e.getKey() & 0xffffffffL);
+            }
+        }
+        Arrays.sort(entries, 0, n);
+        long[] sorted = new long[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = entries[n - 1 - i];
+        }
+        return sorted;
+    }
+
+    private static float scoreOf(long entry) {
+        return Float.intBitsToFloat((int) (entry >>> 32));
+    }
+
+    private static int itemOf(long entry) {
+        return ~(int) entry;
+    }
+
+    /** Compare a packed entry with another entry in posting list order. */
+    private static int compare(long entry, float score, int item) {
+        int c = Float.compare(score, scoreOf(entry));
+        return c != 0 ? c : Integer.compare(itemOf(entry), item);
+    }
+
+    private static void merge(Postings p) {
+        long[] extra = sortedPending(p);
+        byte[] out = new byte[p.blockLength + extra.length * 10];
+        int pos = 0;
+        int count = 0;
+        int prevBits = 0;
+        int e = 0;
+        Cursor c = new Cursor(p.block, p.blockLength);
+        boolean hasBlock = nextKept(c, p);
+        while (e < extra.length || hasBlock) {
+            float score;
+            int item;
+            if (e < extra.length && (!hasBlock || compare(extra[e], c.score, c.item) <= 0)) {
+                score = scoreOf(extra[e]);
+                item = itemOf(extra[e]);
+                e++;
+            } else {
+                score = c.score;
+                item = c.item;
+                hasBlock = nextKept(c, p);
+            }
+            int bits = Float.floatToIntBits(score);
+            pos = writeVarInt(out, pos, count == 0 ? bits : prevBits - bits);
+            pos = writeVarInt(out, pos, item);
+            prevBits = bits;
+            count++;
+        }
+        p.block = Arrays.copyOf(out, pos);
+        p.blockLength = pos;
+        p.count = count;
+        p.pending.clear();
+    }
+
+    /** Move the cursor to the next entry which was not superseded by a buffered update. */
+    private static boolean nextKept(Cursor c, Postings p) {
+        while (c.next()) {
+            if (!p.pending.containsKey(c.item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int writeVarInt(byte[] out, int pos, int v) {
+        while ((v & ~0x7f) != 0) {
+            out[pos++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out[pos++] = (byte) v;
+        return pos;
+    }
+
+    /**
+     * @return the prediction identifiers in the index. Classes whose items were all removed may remain
+     *         until their posting lists are merged.
+     */
+    public Set<PredictionIdentifier> getPredictions() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(this.postings.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of distinct items ever indexed
+     */
+    public int getItemCount() {
+        lock.readLock().lock();
+        try {
+            return this.items.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the size of the encoded posting lists in bytes, excluding buffered updates
+     */
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long n = 0;
+            for (Postings p : this.postings.values()) {
+                n += p.blockLength;
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Remove all entries from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            this.items.clear();
+            this.itemIds.clear();
+            this.itemClasses.clear();
+            this.classes.clear();
+            this.classIds.clear();
+            this.postings.clear();
+            this.stamps.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Write this index to an output stream. Buffered updates are merged beforehand.
+     *
+     * @param out the output stream, which is not closed
+     * @throws IOException on a write failure
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        lock.writeLock().lock();
+        try {
+            dout.writeInt(MAGIC);
+            dout.writeInt(FORMAT_VERSION);
+            dout.writeInt(this.items.size());
+            for (String item : this.items) {
+                writeString(dout, item);
+            }
+            for (Iterator<Postings> it = this.postings.values().iterator(); it.hasNext();) {
+                Postings p = it.next();
+                if (!p.pending.isEmpty()) {
+                    merge(p);
+                }
+                if (p.count == 0) {
+                    it.remove();
+                }
+            }
+            dout.writeInt(this.postings.size());
+            for (Map.Entry<PredictionIdentifier, Postings> e : this.postings.entrySet()) {
+                Postings p = e.getValue();
+                writeString(dout, e.getKey().getClassifierName());
+                writeString(dout, e.getKey().getCriterion());
+                writeString(dout, e.getKey().getPredictionClass());
+                dout.writeInt(p.count);
+                dout.writeInt(p.blockLength);
+                dout.write(p.block, 0, p.blockLength);
+            }
+            int numStamps = 0;
+            for (Map<String, Stamps> m : this.stamps.values()) {
+                numStamps += m.size();
+            }
+            dout.writeInt(numStamps);
+            for (Map.Entry<String, Map<String, Stamps>> e : this.stamps.entrySet()) {
+                for (Map.Entry<String, Stamps> c : e.getValue().entrySet()) {
+                    writeString(dout, e.getKey());
+                    writeString(dout, c.getKey());
+                    writeStamps(dout, c.getValue(), this.items.size());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dout.flush();
+    }
+
+    /** Read an index previously written with {@link #writeTo}.
+     *
+     * @param in the input stream, which is not closed
+     * @return the index, with the default merge threshold
+     * @throws IOException on a read failure or if the data is not a valid index
+     */
+    public static PredictionIndex readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != MAGIC) {
+            throw new IOException("Not a prediction index");
+        }
+        int version = din.readInt();
+        if (version != FORMAT_VERSION && version != 1) {
+            throw new IOException("Unsupported prediction index format version " + version);
+        }
+        PredictionIndex index = new PredictionIndex();
+        int numItems = din.readInt();
+        if (numItems < 0) {
+            throw new IOException("Corrupted prediction index");
+        }
+        for (int i = 0; i < numItems; i++) {
+            String item = readString(din);
+            index.items.add(item);
+            index.itemIds.put(item, i);
+            index.itemClasses.add(NO_CLASSES);
+        }
+        int numPostings = din.readInt();
+        if (numPostings < 0) {
+            throw new IOException("Corrupted prediction index");
+        }
+        for (int i = 0; i < numPostings; i++) {
+            PredictionIdentifier id = new PredictionIdentifier(readString(din), readString(din), readString(din));
+            Postings p = new Postings();
+            p.count = din.readInt();
+            p.blockLength = din.readInt();
+            if (p.count < 0 || p.blockLength < 0) {
+                throw new IOException("Corrupted prediction index");
+            }
+            p.block = new byte[p.blockLength];
+            din.readFully(p.block);
+            index.postings.put(id, p);
+            Cursor c = new Cursor(p.block, p.blockLength);
+            try {
+                while (c.next()) {
+                    if (c.item < 0 || c.item >= numItems) {
+                        throw new IOException("Corrupted prediction index");
+                    }
+                    index.listLocked(c.item, id, true);
+                }
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                throw new IOException("Corrupted prediction index", ex);
+            }
+        }
+        if (version == 1) {
+            // no version stamps
+            return index;
+        }
+        int numStamps = din.readInt();
+        if (numStamps < 0) {
+            throw new IOException("Corrupted prediction index");
+        }
+        for (int i = 0; i < numStamps; i++) {
+            String classifierName = readString(din);
+            String criterion = readString(din);
+            index.stamps.computeIfAbsent(classifierName, k -> new HashMap<>())
+                    .put(criterion, readStamps(din, numItems));
+        }
+        return index;
+    }
+
+    /** Save this index to a file, replacing it atomically where the file system allows it.
+     *
+     * @param file the path to the file
+     * @throws IOException on a write failure
+     */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            this.writeTo(out);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Load an index from a file.
+     *
+     * @param file the path to the file
+     * @return the index
+     * @throws IOException on a read failure or if the file is not a valid index
+     */
+    public static PredictionIndex load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readFrom(in);
+        }
+    }
+
+    /** Write the stamps of a criterion, with the stamps of consecutive items run-length encoded. */
+    private static void writeStamps(DataOutputStream out, Stamps s, int numItems) throws IOException {
+        out.writeInt(s.versions.size());
+        for (String v : s.versions) {
+            writeString(out, v);
+        }
+        int n = Math.min(s.byItem.length, numItems);
+        int runs = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || s.byItem[i] != s.byItem[i - 1]) {
+                runs++;
+            }
+        }
+        out.writeInt(runs);
+        for (int i = 0; i < n;) {
+            int j = i;
+            while (j < n && s.byItem[j] == s.byItem[i]) {
+                j++;
+            }
+            out.writeInt(j - i);
+            out.writeInt(s.byItem[i]);
+            i = j;
+        }
+    }
+
+    private static Stamps readStamps(DataInputStream in, int numItems) throws IOException {
+        Stamps s = new Stamps();
+        int numVersions = in.readInt();
+        if (numVersions < 0) {
+            throw new IOException("Corrupted prediction index");
+        }
+        for (int i = 0; i < numVersions; i++) {
+            s.versions.add(readString(in));
+        }
+        int runs = in.readInt();
+        if (runs < 0) {
+            throw new IOException("Corrupted prediction index");
+        }
+        s.byItem = new int[numItems];
+        int pos = 0;
+        for (int i = 0; i < runs; i++) {
+            int length = in.readInt();
+            int v = in.readInt();
+            if (length < 0 || length > numItems - pos || v < 0 || v > numVersions) {
+                throw new IOException("Corrupted prediction index");
+            }
+            Arrays.fill(s.byItem, pos, pos + length, v);
+            pos += length;
+        }
+        return s;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            throw new IOException("Corrupted prediction index");
+        }
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+/** A background task redoing the predictions made by previous versions of some classifiers. Only the items whose
+ * predictions in the prediction index are stamped with another version (see
+ * {@link AbstractClassifierPlugin#getVersionStamp}) are reclassified, for the changed classifiers and all the
+ * classifiers depending on them. Each item is reclassified by the upstream classifiers first. The results of the
+ * classifiers a classifier depends on are passed to it as the second parameter of {@code query}, as a
+ * {@code Map<URI, SearchResult>} keyed by prediction identifier; dependencies whose predictions did not change
+ * are run again for this purpose.
+ *
+ * Requests are marked as {@link RequestClass#BULK}, and are issued at a bounded rate. With a checkpoint file, the
+ * last reclassified item is saved regularly, so that a job stopped by {@link #cancel} or by a restart resumes
+ * after it. Since items are only selected while their stamps differ, a job may also be resumed without one,
+ * at the expense of revisiting the items which failed.
+ */
+public class ReclassificationJob implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(ReclassificationJob.class);
+
+    /** The number of items reclassified between checkpoint saves. */
+    public static final int CHECKPOINT_INTERVAL = 100;
+
+    private final AbstractClassifierManager<?, ?, ?> manager;
+    private final PredictionIndex index;
+    private final Collection<String> changed;
+    private final double itemsPerSecond;
+    private final Path checkpoint;
+
+    private volatile boolean cancelled = false;
+    private volatile int total = -1;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /** A classifier to run again, and the criterion through which it is reached. */
+    private static final class Target {
+        final String name;
+        final String criterion;
+        final String stamp;
+
+        Target(String name, String criterion, String stamp) {
+            this.name = name;
+            this.criterion = criterion;
+            this.stamp = stamp;
+        }
+    }
+
+    /** Create a reclassification job.
+     *
+     * @param manager the classifier manager, with the new versions of the classifiers already in place
+     * @param index the prediction index kept by the manager (see {@link AbstractClassifierPlugin#setPredictionIndex})
+     * @param changed the names of the classifiers replaced by new versions
+     * @param itemsPerSecond the maximum number of items to reclassify per second, or 0 for no limit
+     * @param checkpoint the file in which to keep the progress of the job, or null to not keep it
+     */
+    public ReclassificationJob(AbstractClassifierManager<?, ?, ?> manager, PredictionIndex index,
+            Collection<String> changed, double itemsPerSecond, Path checkpoint) {
+        Objects.requireNonNull(manager);
+        Objects.requireNonNull(index);
+        Objects.requireNonNull(changed);
+        if (itemsPerSecond < 0 || Double.isNaN(itemsPerSecond)) {
+            throw new IllegalArgumentException("Rate must not be negative");
+        }
+        this.manager = manager;
+        this.index = index;
+        this.changed = new ArrayList<>(changed);
+        this.itemsPerSecond = itemsPerSecond;
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void run() {
+        String classifierName = this.manager.getName();
+        List<Target> targets = new ArrayList<>();
+        for (String name : this.manager.getAffectedClassifiers(this.changed)) {
+            String stamp = this.manager.getVersionStamp(name);
+            String criterion = this.manager.getCriterionOf(name).orElse(null);
+            if (stamp == null || criterion == null) {
+                logger.warn("Classifier {} cannot be reclassified, skipping it", name);
+                continue;
+            }
+            targets.add(new Target(name, criterion, stamp));
+        }
+        // a stable order, so that the job can be resumed after an item
+        TreeSet<String> items = new TreeSet<>();
+        for (Target t : targets) {
+            for (URI item : this.index.getStale(classifierName, t.name, t.stamp)) {
+                items.add(item.toString());
+            }
+        }
+        String resumeAfter = this.readCheckpoint();
+        Collection<String> pending = resumeAfter != null ? items.tailSet(resumeAfter, false) : items;
+        this.total = pending.size();
+        logger.info("Reclassifying {} items for classifiers {}", pending.size(), this.changed);
+
+        long intervalNanos = this.itemsPerSecond > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / this.itemsPerSecond) : 0;
+        long next = System.nanoTime();
+        String last = null;
+        boolean completed = true;
+        for (String item : pending) {
+            if (this.cancelled || Thread.currentThread().isInterrupted()) {
+                completed = false;
+                break;
+            }
+            if (intervalNanos > 0) {
+                long wait;
+                while ((wait = next - System.nanoTime()) > 0 && !this.cancelled) {
+                    LockSupport.parkNanos(this, wait);
+                }
+                next += intervalNanos;
+            }
+            if (!this.reclassify(classifierName, URI.create(item), targets)) {
+                this.failed.incrementAndGet();
+            }
+            last = item;
+            if (this.processed.incrementAndGet() % CHECKPOINT_INTERVAL == 0) {
+                this.writeCheckpoint(last);
+            }
+        }
+        if (completed) {
+            this.deleteCheckpoint();
+            logger.info("Reclassification of classifiers {} finished, {} items failed", this.changed,
+                    this.failed.get());
+        } else {
+            if (last != null) {
+                this.writeCheckpoint(last);
+            }
+            logger.info("Reclassification of classifiers {} stopped after {} of {} items", this.changed,
+                    this.processed.get(), this.total);
+        }
+    }
+
+    private boolean reclassify(String classifierName, URI item, List<Target> targets) {
+        // the results of each classifier on this item, obtained at most once
+        Map<String, Collection<SearchResult>> done = new HashMap<>();
+        boolean ok = true;
+        for (Target t : targets) {
+            String stamp = this.index.getStamp(item, classifierName, t.name);
+            if (stamp == null || stamp.equals(t.stamp)) {
+                continue;
+            }
+            try {
+                Map<URI, SearchResult> upstream = this.upstreamOf(t.name, item, done, new HashSet<>());
+                done.put(t.name, this.manager.query(t.criterion, item, upstream, RequestClass.BULK));
+            } catch (RuntimeException ex) {
+                logger.warn("Failed to reclassify {} for {}", item, t.criterion, ex);
+            }
+            ok &= t.stamp.equals(this.index.getStamp(item, classifierName, t.name));
+        }
+        return ok;
+    }
+
+    /** Obtain the predictions of the classifiers a classifier depends on, as passed to it by the classification
+     * database: a dictionary from prediction identifier to result. The classifiers which were not run on the item
+     * by this job, because their predictions did not change, are run as well.
+     */
+    private Map<URI, SearchResult> upstreamOf(String name, URI item, Map<String, Collection<SearchResult>> done,
+            Set<String> visiting) {
+        Map<URI, SearchResult> upstream = new HashMap<>();
+        if (!visiting.add(name)) {
+            // a dependency cycle
+            return upstream;
+        }
+        for (String dep : this.manager.getDependencies(name)) {
+            Collection<SearchResult> results = done.get(dep);
+            if (results == null) {
+                String criterion = this.manager.getCriterionOf(dep).orElse(null);
+                if (criterion == null) {
+                    continue;
+                }
+                results = this.manager.query(criterion, item, this.upstreamOf(dep, item, done, visiting),
+                        RequestClass.BULK);
+                done.put(dep, results);
+            }
+            for (SearchResult r : results) {
+                upstream.put(r.getURI(), r);
+            }
+        }
+        visiting.remove(name);
+        return Collections.unmodifiableMap(upstream);
+    }
+
+    private String readCheckpoint() {
+        if (this.checkpoint == null) {
+            return null;
+        }
+        try {
+            String s = new String(Files.readAllBytes(this.checkpoint), StandardCharsets.UTF_8).trim();
+            return s.isEmpty() ? null : s;
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException ex) {
+            logger.warn("Could not read checkpoint {}, starting over", this.checkpoint, ex);
+            return null;
+        }
+    }
+
+    private void writeCheckpoint(String item) {
+        if (this.checkpoint == null) {
+            return;
+        }
+        Path tmp = this.checkpoint.resolveSibling(this.checkpoint.getFileName() + ".tmp");
+        try {
+            Files.write(tmp, item.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, this.checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                Files.move(tmp, this.checkpoint, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            logger.warn("Could not write checkpoint {}", this.checkpoint, ex);
+        }
+    }
+
+    private void deleteCheckpoint() {
+        if (this.checkpoint == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(this.checkpoint);
+        } catch (IOException ex) {
+            logger.warn("Could not delete checkpoint {}", this.checkpoint, ex);
+        }
+    }
+
+    /** Stop the job after the item being reclassified. Its progress is saved to the checkpoint file.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return whether the job was cancelled
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @return the number of items to reclassify, or -1 if the job has not selected them yet
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * @return the number of items reclassified so far
+     */
+    public int getProcessed() {
+        return this.processed.get();
+    }
+
+    /**
+     * @return the number of items left with predictions of other versions, after a failure
+     */
+    public int getFailed() {
+        return this.failed.get();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+/** The class of a classification request, used to prioritize requests in front of a classifier with a
+ * concurrency limit. A caller marks a request by passing one of these constants in the variably-lengthed
+ * parameters of {@code query}, after the item to classify. Requests without one are interactive.
+ *
+ * The request class is only used for scheduling: it is not passed on to {@code canClassify} nor to the
+ * classifiers, and it is not part of the keys of cached outcomes.
+ */
+public enum RequestClass {
+    /** A request with someone waiting on the outcome, such as a multimodal search. These are served first. */
+    INTERACTIVE,
+    /** Background work such as (re)indexing, which yields to interactive requests while they are waiting. */
+    BULK;
+
+    /** Find the request class among a request's parameters.
+     *
+     * @param parameters the var-arg parameters of the request
+     * @return the first request class in the parameters, or {@link #INTERACTIVE} if there is none
+     */
+    public static RequestClass of(Object... parameters) {
+        if (parameters != null) {
+            for (Object p : parameters) {
+                if (p instanceof RequestClass) {
+                    return (RequestClass) p;
+                }
+            }
+        }
+        return INTERACTIVE;
+    }
+
+    /** Remove the request classes from a request's parameters, leaving the options meant for classifiers.
+     *
+     * @param parameters the var-arg parameters of the request
+     * @return the parameters without request classes, or the same array if there is none
+     */
+    public static Object[] strip(Object... parameters) {
+        if (parameters == null) {
+            return null;
+        }
+        int count = 0;
+        for (Object p : parameters) {
+            if (p instanceof RequestClass) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return parameters;
+        }
+        Object[] options = new Object[parameters.length - count];
+        int i = 0;
+        for (Object p : parameters) {
+            if (!(p instanceof RequestClass)) {
+                options[i++] = p;
+            }
+        }
+        return options;
+    }
+}
@@ -18,6 +18,7 @@
  */
 package pt.ua.dicoogle.classification.api.condition;
 
+import org.dcm4che2.data.Tag;
 import pt.ua.dicoogle.classification.api.util.AxialType;
 
 import java.util.Objects;
@@ -35,4 +36,23 @@ public class CustomDicomConditions {
         AxialType t = AxialType.valueOf(axialType.toUpperCase());
         return obj -> AxialType.getCTAxialType(obj).orElse(null) == t;
     }
+
+    /** Same as {@link #axialTypeEquals}, but evaluated once per series.
+     *
+     * @param axialType the name of the axial type
+     * @return a series-memoized condition
+     */
+    public static DicomCondition axialTypeEqualsPerSeries(String axialType) {
+        return perSeries(axialTypeEquals(axialType), Tag.ImageType, Tag.ImageOrientationPatient);
+    }
+
+    /** Memoize a condition per series, with the default cache limits.
+     *
+     * @param condition the condition
+     * @param tags the attributes on which the condition depends
+     * @return a series-memoized condition
+     */
+    public static DicomCondition perSeries(DicomCondition condition, int... tags) {
+        return new SeriesMemoCondition(condition, tags);
+    }
 }
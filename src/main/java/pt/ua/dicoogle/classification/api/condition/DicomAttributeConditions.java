@@ -73,6 +73,15 @@ public class DicomAttributeConditions implements DicomCondition {
         });
     }
 
+    /** Memoize this condition per series, since it only depends on a single attribute.
+     *
+     * @return a series-memoized condition
+     */
+    public DicomCondition perSeries() {
+        TagsStruct tags = TagsStruct.getInstance(); // global instance
+        return new SeriesMemoCondition(this, tags.getTagValue(tag).getTagNumber());
+    }
+
     @Override
     public boolean test(DicomObject obj) {
         TagsStruct tags = TagsStruct.getInstance(); // global instance
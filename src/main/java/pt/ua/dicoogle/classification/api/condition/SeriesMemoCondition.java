@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.condition;
+
+import java.util.Objects;
+
+import org.dcm4che2.data.DicomObject;
+
+import pt.ua.dicoogle.classification.api.util.SeriesCache;
+
+/** A DICOM condition evaluated once per series. The outcome of the inner condition is memoized by
+ * SeriesInstanceUID and the values of the attributes that the condition depends on.
+ */
+public class SeriesMemoCondition implements DicomCondition {
+    private final DicomCondition condition;
+    private final int[] tags;
+    private final SeriesCache<Boolean> cache;
+
+    /** Create a series-memoized condition.
+     *
+     * @param condition the condition to memoize
+     * @param maxSeries the maximum number of series to remember
+     * @param ttlMillis the time in milliseconds for which an outcome is remembered
+     * @param tags the attributes on which the condition depends
+     */
+    public SeriesMemoCondition(DicomCondition condition, int maxSeries, long ttlMillis, int... tags) {
+        Objects.requireNonNull(condition);
+        Objects.requireNonNull(tags);
+        this.condition = condition;
+        this.tags = tags.clone();
+        this.cache = new SeriesCache<>(maxSeries, ttlMillis);
+    }
+
+    /** Create a series-memoized condition with the default cache limits.
+     *
+     * @param condition the condition to memoize
+     * @param tags the attributes on which the condition depends
+     */
+    public SeriesMemoCondition(DicomCondition condition, int... tags) {
+        this(condition, SeriesCache.DEFAULT_MAX_ENTRIES, SeriesCache.DEFAULT_TTL_MILLIS, tags);
+    }
+
+    @Override
+    public boolean test(DicomObject obj) {
+        return this.cache.computeIfAbsent("", obj, this.tags, this.condition::test);
+    }
+}
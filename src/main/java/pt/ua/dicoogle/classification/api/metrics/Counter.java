@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+/** The counted events of the classification pipeline.
+ */
+public enum Counter {
+    /** Items accepted by {@code canClassify}. */
+    ACCEPTED,
+    /** Items rejected by {@code canClassify}. */
+    REJECTED,
+    /** Items skipped without being read, because they were rejected before. */
+    SKIPPED,
+    /** Predictions reused from another item with the same content. */
+    DEDUPLICATED,
+    /** Predictions escalated to the next classifier of a cascade. */
+    ESCALATED,
+    /** Classification requests which ended in a failure. */
+    FAILED,
+    /** Bytes read from storage. */
+    BYTES_READ
+}
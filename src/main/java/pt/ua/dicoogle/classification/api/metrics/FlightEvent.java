@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+/** An event of the classification pipeline being timed for the Java Flight Recorder (see {@link FlightEvents}).
+ * Events are started when obtained, and must be ended on the same thread. They are not thread-safe.
+ */
+public interface FlightEvent {
+
+    /** An event which is not recorded. */
+    public static final FlightEvent NONE = new FlightEvent() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public FlightEvent item(Object item) {
+            return this;
+        }
+
+        @Override
+        public FlightEvent bytes(long bytes) {
+            return this;
+        }
+
+        @Override
+        public void end(String outcome) {
+        }
+    };
+
+    /**
+     * @return whether this event is being recorded. If not, callers may skip gathering its details.
+     */
+    public boolean isRecording();
+
+    /** Set the item of the event.
+     *
+     * @param item the URI of the item (or a string of it), ignored if it is something else
+     * @return this event
+     */
+    public FlightEvent item(Object item);
+
+    /** Set the number of bytes handled in the event, such as those read from storage.
+     *
+     * @param bytes the number of bytes
+     * @return this event
+     */
+    public FlightEvent bytes(long bytes);
+
+    /** End the event, committing it to the flight recorder if it is recorded.
+     *
+     * @param outcome a short description of the outcome, such as "ok", "rejected" or "failed"
+     */
+    public void end(String outcome);
+}
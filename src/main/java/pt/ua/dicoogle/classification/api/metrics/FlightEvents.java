@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.net.URI;
+
+/** Factory of Java Flight Recorder events for the classification pipeline, so that classification stalls can be
+ * correlated with garbage collection and I/O in a flight recording. Events carry the classifier name, the
+ * criterion, the item URI, byte counts and the outcome, and are grouped under "Dicoogle / Classification".
+ *
+ * This is the implementation for Java 8 runtimes, where no events are emitted. The library is packaged as a
+ * multi-release jar, which replaces this class on Java 11 or later runtimes with one emitting JFR events. Events
+ * are only created while a recording has them enabled.
+ */
+public final class FlightEvents {
+
+    private FlightEvents() {}
+
+    /**
+     * @return whether this runtime can emit flight recorder events
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /** Start the event of a {@code query} call.
+     *
+     * @param classifier the name of the plugin
+     * @param criterion the classification criteria
+     * @return the started event
+     */
+    public static FlightEvent query(String classifier, String criterion) {
+        return FlightEvent.NONE;
+    }
+
+    /** Start the event of the classification of an item in storage.
+     *
+     * @param classifier the name of the plugin
+     * @param criterion the classification criteria
+     * @param item the URI of the item
+     * @return the started event
+     */
+    public static FlightEvent item(String classifier, String criterion, URI item) {
+        return FlightEvent.NONE;
+    }
+
+    /** Start the event of a stage of the pipeline.
+     *
+     * @param stage the stage
+     * @param classifier the name of the plugin or classifier, as in {@link MetricsRegistry}
+     * @param criterion the classification criterion
+     * @return the started event
+     */
+    public static FlightEvent stage(Stage stage, String classifier, String criterion) {
+        return FlightEvent.NONE;
+    }
+
+    /** Start the event of loading a classifier instance.
+     *
+     * @param classifier the name of the classifier
+     * @param version the version of the classifier
+     * @return the started event
+     */
+    public static FlightEvent load(String classifier, String version) {
+        return FlightEvent.NONE;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A metrics registry keeping all measurements in memory, with a latency histogram per classifier,
+ * criterion and stage, and a counter per classifier, criterion and counted event.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentMap<Key<Stage>, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key<Counter>, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ModelState> models = new ConcurrentHashMap<>();
+
+    private static final class Key<E extends Enum<E>> implements Comparable<Key<E>> {
+        final String classifier;
+        final String criterion;
+        final E kind;
+
+        Key(String classifier, String criterion, E kind) {
+            this.classifier = String.valueOf(classifier);
+            this.criterion = String.valueOf(criterion);
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key<?> that = (Key<?>) o;
+            return classifier.equals(that.classifier) && criterion.equals(that.criterion) && kind == that.kind;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(classifier, criterion, kind);
+        }
+
+        @Override
+        public int compareTo(Key<E> o) {
+            int c = classifier.compareTo(o.classifier);
+            if (c != 0) return c;
+            c = criterion.compareTo(o.criterion);
+            if (c != 0) return c;
+            return kind.compareTo(o.kind);
+        }
+
+        @Override
+        public String toString() {
+            return classifier + "/" + criterion + " " + kind;
+        }
+    }
+
+    /** The load state of a classifier. */
+    public static final class ModelState {
+        private final LatencyHistogram loadTime = new LatencyHistogram();
+        private final LongAdder evictions = new LongAdder();
+
+        /**
+         * @return the histogram of classifier instance creation times, in nanoseconds
+         */
+        public LatencyHistogram getLoadTime() {
+            return loadTime;
+        }
+
+        /**
+         * @return the number of times an instance was loaded
+         */
+        public long getLoads() {
+            return loadTime.getCount();
+        }
+
+        /**
+         * @return the number of times an instance was released
+         */
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        /**
+         * @return the number of instances currently loaded
+         */
+        public long getLoadedInstances() {
+            return Math.max(0, this.getLoads() - this.getEvictions());
+        }
+    }
+
+    @Override
+    public void recordLatency(String classifier, String criterion, Stage stage, long nanos) {
+        latencies.computeIfAbsent(new Key<>(classifier, criterion, stage), k -> new LatencyHistogram())
+                .record(nanos);
+    }
+
+    @Override
+    public void count(String classifier, String criterion, Counter counter, long amount) {
+        counters.computeIfAbsent(new Key<>(classifier, criterion, counter), k -> new LongAdder())
+                .add(amount);
+    }
+
+    @Override
+    public void modelLoaded(String classifier, long nanos) {
+        models.computeIfAbsent(classifier, k -> new ModelState()).loadTime.record(nanos);
+    }
+
+    @Override
+    public void modelEvicted(String classifier) {
+        models.computeIfAbsent(classifier, k -> new ModelState()).evictions.increment();
+    }
+
+    /** Retrieve the latency histogram of a stage.
+     *
+     * @param classifier the name of the classifier
+     * @param criterion the classification criterion
+     * @param stage the stage
+     * @return the histogram, or an empty optional if nothing was recorded
+     */
+    public Optional<LatencyHistogram> getLatency(String classifier, String criterion, Stage stage) {
+        return Optional.ofNullable(latencies.get(new Key<>(classifier, criterion, stage)));
+    }
+
+    /** Retrieve the value of a counter.
+     *
+     * @param classifier the name of the classifier
+     * @param criterion the classification criterion
+     * @param counter the counter
+     * @return the counter's value
+     */
+    public long getCount(String classifier, String criterion, Counter counter) {
+        LongAdder a = counters.get(new Key<>(classifier, criterion, counter));
+        return a == null ? 0 : a.sum();
+    }
+
+    /** Retrieve the load state of a classifier.
+     *
+     * @param classifier the name of the classifier
+     * @return the load state, or an empty optional if the classifier was never loaded
+     */
+    public Optional<ModelState> getModelState(String classifier) {
+        return Optional.ofNullable(models.get(classifier));
+    }
+
+    /** Discard all measurements. */
+    public void clear() {
+        latencies.clear();
+        counters.clear();
+        models.clear();
+    }
+
+    /** Produce a human readable report of all measurements, with latencies in microseconds.
+     *
+     * @return a multi-line report
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Key<Stage>, LatencyHistogram> e : new TreeMap<>(latencies).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            sb.append(String.format("%s: n=%d mean=%.1f p50=%.1f p99=%.1f max=%.1f%n", e.getKey(), h.getCount(),
+                    h.getMean() / 1e3, h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+                    h.getMax() / 1e3));
+        }
+        for (Map.Entry<Key<Counter>, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue().sum()).append(System.lineSeparator());
+        }
+        for (Map.Entry<String, ModelState> e : new TreeMap<>(models).entrySet()) {
+            ModelState m = e.getValue();
+            sb.append(String.format("%s: loaded=%d loads=%d evictions=%d load-mean=%.1fms%n", e.getKey(),
+                    m.getLoadedInstances(), m.getLoads(), m.getEvictions(), m.getLoadTime().getMean() / 1e6));
+        }
+        return sb.toString();
+    }
+}
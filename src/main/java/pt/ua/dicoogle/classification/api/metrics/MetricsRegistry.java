@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.util.Collection;
+
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+/** Receiver of the measurements taken in the classification pipeline. Implementations must be thread-safe,
+ * and should be cheap enough to be called on every item.
+ *
+ * The classifier name is the name of the plugin for the stages before a classifier is selected (storage,
+ * parsing, conditions, data point conversion), and the name of the selected classifier otherwise.
+ */
+public interface MetricsRegistry {
+
+    /** A registry which discards all measurements. */
+    public static final MetricsRegistry NOOP = new MetricsRegistry() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordLatency(String classifier, String criterion, Stage stage, long nanos) {
+        }
+
+        @Override
+        public void count(String classifier, String criterion, Counter counter, long amount) {
+        }
+
+        @Override
+        public void modelLoaded(String classifier, long nanos) {
+        }
+
+        @Override
+        public void modelEvicted(String classifier) {
+        }
+    };
+
+    /**
+     * @return whether this registry keeps measurements. If not, callers may skip taking them at all.
+     */
+    public default boolean isEnabled() {
+        return true;
+    }
+
+    /** Record the time taken by a stage of the pipeline.
+     *
+     * @param classifier the name of the classifier
+     * @param criterion the classification criterion
+     * @param stage the stage
+     * @param nanos the elapsed time in nanoseconds
+     */
+    public void recordLatency(String classifier, String criterion, Stage stage, long nanos);
+
+    /** Increment a counter.
+     *
+     * @param classifier the name of the classifier
+     * @param criterion the classification criterion
+     * @param counter the counter
+     * @param amount the amount to add
+     */
+    public void count(String classifier, String criterion, Counter counter, long amount);
+
+    /** Record that a classifier instance was loaded.
+     *
+     * @param classifier the name of the classifier
+     * @param nanos the time taken to create the instance in nanoseconds
+     */
+    public void modelLoaded(String classifier, long nanos);
+
+    /** Record that a classifier instance was released.
+     *
+     * @param classifier the name of the classifier
+     */
+    public void modelEvicted(String classifier);
+
+    /** Record the start of a classification call, on the thread running it.
+     *
+     * @param classifier the name of the plugin
+     * @param criterion the classification criteria of the call
+     * @param parameters the parameters of the call, starting with the item
+     */
+    public default void queryStarted(String classifier, String criterion, Object[] parameters) {
+    }
+
+    /** Record the end of a classification call started with {@link #queryStarted}, on the same thread.
+     *
+     * @param classifier the name of the plugin
+     * @param criterion the classification criteria of the call
+     * @param results the results of the call
+     */
+    public default void queryFinished(String classifier, String criterion, Collection<SearchResult> results) {
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+/** The timed stages of the classification pipeline.
+ */
+public enum Stage {
+    /** Locating the item in storage and opening its input stream. */
+    STORAGE_OPEN,
+    /** Time spent waiting on reads from the storage stream. */
+    STORAGE_READ,
+    /** Decoding the DICOM object, excluding the time spent on storage reads. */
+    DICOM_PARSE,
+    /** Checking whether the DICOM object can be classified. */
+    CAN_CLASSIFY,
+    /** Converting the DICOM object into a data point. */
+    TO_DATA_POINT,
+    /** Adapting the data point to a classifier's specifications. */
+    ADAPT,
+    /** Running the classifier on the data point. */
+    PREDICT,
+    /** Converting the predictions into search results. */
+    RESULT_CONVERSION
+}
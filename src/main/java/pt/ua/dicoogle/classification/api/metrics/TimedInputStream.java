@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** An input stream which accounts for the number of bytes read and the time spent reading them.
+ * Bytes read again after a {@link #reset} are counted once.
+ * This class is not thread-safe.
+ */
+public class TimedInputStream extends FilterInputStream {
+    // the furthest position reached, so that bytes read again after a reset are not counted twice
+    private long bytes = 0;
+    private long position = 0;
+    private long markPosition = 0;
+    private long nanos = 0;
+
+    public TimedInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = super.read();
+        nanos += System.nanoTime() - start;
+        if (b >= 0) {
+            this.advance(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int n = super.read(b, off, len);
+        nanos += System.nanoTime() - start;
+        if (n > 0) {
+            this.advance(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long start = System.nanoTime();
+        long skipped = super.skip(n);
+        nanos += System.nanoTime() - start;
+        if (skipped > 0) {
+            this.advance(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        super.mark(readlimit);
+        markPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        super.reset();
+        position = markPosition;
+    }
+
+    private void advance(long n) {
+        position += n;
+        bytes = Math.max(bytes, position);
+    }
+
+    /**
+     * @return the number of distinct bytes read or skipped so far
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the time spent in read and skip operations so far, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+import org.dcm4che2.data.DicomObject;
+
+import pt.ua.dicoogle.classification.api.RequestClass;
+
+/** A record of one classification call, as written by a {@link WorkloadRecorder}: when it happened, what was
+ * asked for, the time spent in each stage and the size of the result.
+ *
+ * Records are written one per line as tab-separated fields: timestamp in milliseconds since the epoch, classifier,
+ * criterion, item URI ({@code -} if the item was not a URI), parameters shape, number of results, number of error
+ * results, total time in microseconds, and the comma-separated {@code STAGE=microseconds} pairs of the stages
+ * which were measured.
+ */
+public final class WorkloadRecord {
+    private static final Stage[] STAGES = Stage.values();
+
+    private final long timestamp;
+    private final String classifier;
+    private final String criterion;
+    private final String item;
+    private final String shape;
+    private final int results;
+    private final int errors;
+    private final long totalMicros;
+    private final long[] stageMicros;
+
+    public WorkloadRecord(long timestamp, String classifier, String criterion, String item, String shape,
+            int results, int errors, long totalMicros, long[] stageMicros) {
+        if (stageMicros.length != STAGES.length) {
+            throw new IllegalArgumentException("Expected one time per stage");
+        }
+        this.timestamp = timestamp;
+        this.classifier = Objects.requireNonNull(classifier);
+        this.criterion = Objects.requireNonNull(criterion);
+        this.item = item;
+        this.shape = Objects.requireNonNull(shape);
+        this.results = results;
+        this.errors = errors;
+        this.totalMicros = totalMicros;
+        this.stageMicros = stageMicros.clone();
+    }
+
+    /**
+     * @return the time of the call in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getClassifier() {
+        return classifier;
+    }
+
+    public String getCriterion() {
+        return criterion;
+    }
+
+    /**
+     * @return the URI of the classified item, or null if the item was given in another form
+     */
+    public String getItem() {
+        return item;
+    }
+
+    /**
+     * @return a description of the types of the call's parameters (see {@link #shapeOf})
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    public int getResults() {
+        return results;
+    }
+
+    /**
+     * @return the number of error outputs in the results
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    /**
+     * @param stage the stage
+     * @return the time spent in the stage in microseconds, 0 if not measured
+     */
+    public long getStageMicros(Stage stage) {
+        return stageMicros[stage.ordinal()];
+    }
+
+    /** Describe the types of a call's parameters compactly, without their contents: {@code uri}, {@code str},
+     * {@code dicom}, {@code map:<size>}, the name of a request class, {@code null}, or the simple class name
+     * otherwise, separated by commas.
+     *
+     * @param parameters the parameters of the call, starting with the item
+     * @return the shape of the parameters
+     */
+    public static String shapeOf(Object... parameters) {
+        StringBuilder sb = new StringBuilder();
+        for (Object p : parameters) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            if (p == null) {
+                sb.append("null");
+            } else if (p instanceof URI) {
+                sb.append("uri");
+            } else if (p instanceof String) {
+                sb.append("str");
+            } else if (p instanceof DicomObject) {
+                sb.append("dicom");
+            } else if (p instanceof Map) {
+                sb.append("map:").append(((Map<?, ?>) p).size());
+            } else if (p instanceof Collection) {
+                sb.append("list:").append(((Collection<?>) p).size());
+            } else if (p instanceof RequestClass) {
+                sb.append(p);
+            } else {
+                sb.append(p.getClass().getSimpleName());
+            }
+        }
+        return sb.length() == 0 ? "-" : sb.toString();
+    }
+
+    /** Format this record as a line, without the line terminator.
+     *
+     * @return the formatted record
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder(128)
+                .append(timestamp).append('\t')
+                .append(classifier).append('\t')
+                .append(criterion).append('\t')
+                .append(item == null ? "-" : item).append('\t')
+                .append(shape).append('\t')
+                .append(results).append('\t')
+                .append(errors).append('\t')
+                .append(totalMicros).append('\t');
+        boolean first = true;
+        for (Stage s : STAGES) {
+            if (stageMicros[s.ordinal()] != 0) {
+                if (!first) {
+                    sb.append(',');
+                }
+                sb.append(s.name()).append('=').append(stageMicros[s.ordinal()]);
+                first = false;
+            }
+        }
+        if (first) {
+            sb.append('-');
+        }
+        return sb.toString();
+    }
+
+    /** Parse a record formatted with {@link #format}.
+     *
+     * @param line the line
+     * @return the record
+     * @throws IllegalArgumentException if the line is not a valid record
+     */
+    public static WorkloadRecord parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 9) {
+            throw new IllegalArgumentException("Invalid workload record: expected 9 fields");
+        }
+        try {
+            long[] stages = new long[STAGES.length];
+            if (!fields[8].equals("-")) {
+                for (String pair : fields[8].split(",")) {
+                    int eq = pair.indexOf('=');
+                    stages[Stage.valueOf(pair.substring(0, eq)).ordinal()] = Long.parseLong(pair.substring(eq + 1));
+                }
+            }
+            return new WorkloadRecord(Long.parseLong(fields[0]), fields[1], fields[2],
+                    fields[3].equals("-") ? null : fields[3], fields[4], Integer.parseInt(fields[5]),
+                    Integer.parseInt(fields[6]), Long.parseLong(fields[7]), stages);
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid workload record: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.format();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WorkloadRecord that = (WorkloadRecord) o;
+        return timestamp == that.timestamp && results == that.results && errors == that.errors
+                && totalMicros == that.totalMicros && classifier.equals(that.classifier)
+                && criterion.equals(that.criterion) && Objects.equals(item, that.item) && shape.equals(that.shape)
+                && Arrays.equals(stageMicros, that.stageMicros);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, classifier, criterion, item, shape, totalMicros);
+    }
+}
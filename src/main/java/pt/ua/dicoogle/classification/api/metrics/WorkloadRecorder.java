@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+/** A metrics registry which records every classification call to a log of {@link WorkloadRecord}s, so that
+ * production workloads can be replayed later on. All measurements are also passed on to another registry.
+ * Recording is opt-in: set a recorder as the metrics registry of a classifier plugin to enable it.
+ *
+ * Stage times are attributed to the call running on the same thread, so stages run on other threads are not
+ * recorded. Records are buffered, and written out on {@link #flush} and {@link #close}.
+ * This class is thread-safe.
+ */
+public class WorkloadRecorder implements MetricsRegistry, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadRecorder.class);
+
+    private final Writer out;
+    private final MetricsRegistry delegate;
+    private final ThreadLocal<Call> current = new ThreadLocal<>();
+    private volatile boolean failed = false;
+
+    private static final class Call {
+        final long timestamp = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        final String item;
+        final String shape;
+        final long[] stageNanos = new long[Stage.values().length];
+        int depth = 1;
+
+        Call(Object[] parameters) {
+            Object item = parameters.length > 0 ? parameters[0] : null;
+            this.item = item instanceof URI || item instanceof String ? item.toString() : null;
+            this.shape = WorkloadRecord.shapeOf(parameters);
+        }
+    }
+
+    /** Create a recorder writing to the given writer.
+     *
+     * @param out the writer of the records, which is closed along with the recorder
+     * @param delegate the registry to pass measurements on to
+     */
+    public WorkloadRecorder(Writer out, MetricsRegistry delegate) {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+        this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    /** Create a recorder appending to a file.
+     *
+     * @param file the file of the records, created if it does not exist
+     * @param delegate the registry to pass measurements on to
+     * @return the recorder
+     * @throws IOException if the file could not be opened
+     */
+    public static WorkloadRecorder open(Path file, MetricsRegistry delegate) throws IOException {
+        return new WorkloadRecorder(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND), delegate);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordLatency(String classifier, String criterion, Stage stage, long nanos) {
+        this.delegate.recordLatency(classifier, criterion, stage, nanos);
+        Call c = this.current.get();
+        if (c != null) {
+            c.stageNanos[stage.ordinal()] += nanos;
+        }
+    }
+
+    @Override
+    public void count(String classifier, String criterion, Counter counter, long amount) {
+        this.delegate.count(classifier, criterion, counter, amount);
+    }
+
+    @Override
+    public void modelLoaded(String classifier, long nanos) {
+        this.delegate.modelLoaded(classifier, nanos);
+    }
+
+    @Override
+    public void modelEvicted(String classifier) {
+        this.delegate.modelEvicted(classifier);
+    }
+
+    @Override
+    public void queryStarted(String classifier, String criterion, Object[] parameters) {
+        this.delegate.queryStarted(classifier, criterion, parameters);
+        Call c = this.current.get();
+        if (c != null) {
+            // a nested call is part of the outer one
+            c.depth++;
+            return;
+        }
+        this.current.set(new Call(parameters));
+    }
+
+    @Override
+    public void queryFinished(String classifier, String criterion, Collection<SearchResult> results) {
+        this.delegate.queryFinished(classifier, criterion, results);
+        Call c = this.current.get();
+        if (c == null || --c.depth > 0) {
+            return;
+        }
+        this.current.remove();
+        int errors = 0;
+        for (SearchResult r : results) {
+            if (!(r.getScore() >= 0 && r.getScore() <= 1)) {
+                errors++;
+            }
+        }
+        long[] stageMicros = new long[c.stageNanos.length];
+        for (int i = 0; i < stageMicros.length; i++) {
+            stageMicros[i] = TimeUnit.NANOSECONDS.toMicros(c.stageNanos[i]);
+        }
+        WorkloadRecord record = new WorkloadRecord(c.timestamp, classifier, criterion, c.item, c.shape,
+                results.size(), errors, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - c.start), stageMicros);
+        this.write(record);
+    }
+
+    /** Write a record to the log.
+     *
+     * @param record the record
+     */
+    public void write(WorkloadRecord record) {
+        if (this.failed) {
+            return;
+        }
+        try {
+            synchronized (this.out) {
+                this.out.write(record.format());
+                this.out.write('\n');
+            }
+        } catch (IOException ex) {
+            // do not let recording get in the way of classification
+            this.failed = true;
+            logger.warn("Failed to record workload, recording stopped", ex);
+        }
+    }
+
+    /** Write out the buffered records.
+     *
+     * @throws IOException on a write failure
+     */
+    public void flush() throws IOException {
+        synchronized (this.out) {
+            this.out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this.out) {
+            this.out.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** An input stream over the contents of a byte buffer, such as a memory-mapped file. Reads consume the
+ * buffer's bytes without intermediate copies, and marking is supported at no cost.
+ * This class is not thread-safe.
+ */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer source;
+    private final ByteBuffer buffer;
+    private int mark = 0;
+
+    /** Create an input stream over the remaining bytes of a buffer. The buffer itself is not modified.
+     *
+     * @param source the byte buffer
+     */
+    public ByteBufferInputStream(ByteBuffer source) {
+        this.source = source;
+        this.buffer = source.duplicate();
+        this.mark = this.buffer.position();
+    }
+
+    /**
+     * @return the buffer given to this stream, of which the position is the stream's starting point
+     */
+    public ByteBuffer getBuffer() {
+        return source;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        mark = buffer.position();
+    }
+
+    @Override
+    public synchronized void reset() {
+        buffer.position(mark);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.util.concurrent.TimeUnit;
+
+/** A circuit breaker for short-circuiting calls to a repeatedly failing dependency.
+ *
+ * While closed, the outcomes of the last calls are kept in a sliding window. Once the window holds enough
+ * calls and the failure rate reaches the threshold, the breaker opens and rejects all calls for a while.
+ * Afterwards, it becomes half-open and lets a few trial calls through: the breaker closes again if all of
+ * them succeed, and opens again on the first failure.
+ * This class is thread-safe.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] window;
+    private int windowPos = 0;
+    private int windowCount = 0;
+    private int windowFailures = 0;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsInFlight;
+    private int trialSuccesses;
+
+    /** Create a circuit breaker with the default parameters: opens at a 50% failure rate over the last 20 calls
+     * (with at least 10 calls), stays open for 30 seconds, and makes 3 trial calls when half-open.
+     */
+    public CircuitBreaker() {
+        this(0.5, 20, 10, 30_000, 3);
+    }
+
+    /** Create a circuit breaker.
+     *
+     * @param failureRateThreshold the failure rate at which the breaker opens, between 0 (exclusive) and 1
+     * @param windowSize the number of recent calls to consider
+     * @param minimumCalls the minimum number of calls in the window before the failure rate is evaluated
+     * @param openDurationMillis how long the breaker stays open before letting trial calls through
+     * @param halfOpenCalls the number of successful trial calls required to close the breaker again
+     */
+    public CircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls, long openDurationMillis,
+                          int halfOpenCalls) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Failure rate threshold must be in ]0, 1]");
+        }
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid window size or minimum number of calls");
+        }
+        if (halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Number of half-open calls must be positive");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new boolean[windowSize];
+    }
+
+    /** Ask for permission to make a call. If permitted, the outcome of the call must be reported with
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+     *
+     * @return whether the call may proceed
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openDurationNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialsInFlight = 0;
+                trialSuccesses = 0;
+                // fall through
+            case HALF_OPEN:
+            default:
+                if (trialsInFlight + trialSuccesses >= halfOpenCalls) {
+                    return false;
+                }
+                trialsInFlight++;
+                return true;
+        }
+    }
+
+    /** Report a successful call. */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight > 0) {
+                trialsInFlight--;
+            }
+            trialSuccesses++;
+            if (trialSuccesses >= halfOpenCalls) {
+                this.close();
+            }
+        } else if (state == State.CLOSED) {
+            this.record(false);
+        }
+    }
+
+    /** Report a failed call. */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            this.open();
+        } else if (state == State.CLOSED) {
+            this.record(true);
+            if (windowCount >= minimumCalls && windowFailures >= failureRateThreshold * windowCount) {
+                this.open();
+            }
+        }
+    }
+
+    /** Report a permitted call which did not happen or whose outcome says nothing about the dependency. */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && trialsInFlight > 0) {
+            trialsInFlight--;
+        }
+    }
+
+    /**
+     * @return the current state of the breaker
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowPos]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPos] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPos = (windowPos + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowPos = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Concurrency limiter with a bounded wait queue. Callers acquire a slot before doing the limited work and
+ * release it afterwards, reporting the observed latency.
+ *
+ * Callers are either regular or bulk. Bulk callers yield to waiting regular callers (strict priority), except
+ * that a waiting bulk caller is granted a slot after a number of consecutive grants to regular callers, so that
+ * bulk work is never starved.
+ *
+ * When adaptive, the limit is adjusted between 1 and the configured maximum in the fashion of gradient-based
+ * limiters: it shrinks while the recent latency is well above the long-term baseline, and grows back otherwise.
+ * This class is thread-safe.
+ */
+public class ConcurrencyLimiter {
+    private static final double SHORT_SMOOTHING = 0.2;
+    private static final double LONG_SMOOTHING = 0.01;
+    private static final double LIMIT_SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    /** The default number of consecutive grants to regular callers after which a waiting bulk caller is served. */
+    public static final int DEFAULT_BULK_SHARE = 8;
+
+    private final int maxLimit;
+    private final int maxQueueLength;
+    private final boolean adaptive;
+    private final int bulkShare;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Condition bulkAvailable = lock.newCondition();
+    private int limit;
+    private int inFlight = 0;
+    private int waiting = 0;
+    private int waitingBulk = 0;
+    // consecutive grants to regular callers while bulk callers were waiting
+    private int streak = 0;
+
+    // adaptive state, in nanoseconds
+    private double shortLatency = 0;
+    private double longLatency = 0;
+    private double estimatedLimit;
+
+    /** Create a new limiter.
+     *
+     * @param maxLimit the maximum number of concurrent slots
+     * @param maxQueueLength the maximum number of callers waiting for a slot
+     * @param adaptive whether to adapt the actual limit based on observed latency
+     */
+    public ConcurrencyLimiter(int maxLimit, int maxQueueLength, boolean adaptive) {
+        this(maxLimit, maxQueueLength, adaptive, DEFAULT_BULK_SHARE);
+    }
+
+    /** Create a new limiter.
+     *
+     * @param maxLimit the maximum number of concurrent slots
+     * @param maxQueueLength the maximum number of callers waiting for a slot
+     * @param adaptive whether to adapt the actual limit based on observed latency
+     * @param bulkShare the number of consecutive grants to regular callers after which a waiting bulk caller
+     *                  is served
+     */
+    public ConcurrencyLimiter(int maxLimit, int maxQueueLength, boolean adaptive, int bulkShare) {
+        if (bulkShare < 1) {
+            throw new IllegalArgumentException("Bulk share must be positive");
+        }
+        if (maxLimit < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be positive");
+        }
+        if (maxQueueLength < 0) {
+            throw new IllegalArgumentException("Queue length must not be negative");
+        }
+        this.maxLimit = maxLimit;
+        this.maxQueueLength = maxQueueLength;
+        this.adaptive = adaptive;
+        this.bulkShare = bulkShare;
+        this.limit = maxLimit;
+        this.estimatedLimit = maxLimit;
+    }
+
+    /** Acquire a slot as a regular caller, only if one is immediately available.
+     *
+     * @return whether a slot was acquired
+     */
+    public boolean tryAcquire() {
+        return this.tryAcquire(false);
+    }
+
+    /** Acquire a slot only if one is immediately available.
+     *
+     * @param bulk whether the caller is a bulk caller
+     * @return whether a slot was acquired
+     */
+    public boolean tryAcquire(boolean bulk) {
+        lock.lock();
+        try {
+            if (waiting == 0 && waitingBulk == 0 && inFlight < limit) {
+                this.grant(bulk);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Acquire a slot as a regular caller, waiting in the queue if none is available.
+     *
+     * @param timeoutMillis the maximum time to wait in milliseconds, or 0 to wait indefinitely
+     * @return true if a slot was acquired, false if the queue was full or the wait timed out
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public boolean acquire(long timeoutMillis) throws InterruptedException {
+        return this.acquire(timeoutMillis, false);
+    }
+
+    /** Acquire a slot, waiting in the queue if none is available.
+     *
+     * @param timeoutMillis the maximum time to wait in milliseconds, or 0 to wait indefinitely
+     * @param bulk whether the caller is a bulk caller
+     * @return true if a slot was acquired, false if the queue was full or the wait timed out
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public boolean acquire(long timeoutMillis, boolean bulk) throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiting == 0 && waitingBulk == 0 && inFlight < limit) {
+                this.grant(bulk);
+                return true;
+            }
+            if (waiting + waitingBulk >= maxQueueLength) {
+                return false;
+            }
+            Condition cond = bulk ? bulkAvailable : available;
+            if (bulk) {
+                waitingBulk++;
+            } else {
+                waiting++;
+            }
+            boolean granted = false;
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (!this.canGrantWaiting(bulk)) {
+                    if (timeoutMillis <= 0) {
+                        cond.await();
+                    } else if (nanos <= 0) {
+                        return false;
+                    } else {
+                        nanos = cond.awaitNanos(nanos);
+                    }
+                }
+                granted = true;
+            } finally {
+                if (bulk) {
+                    waitingBulk--;
+                } else {
+                    waiting--;
+                }
+                if (granted) {
+                    this.grant(bulk);
+                }
+                // pass on the signal if this thread gave up on a free slot, or if more slots remain
+                this.signalNext();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Check whether a waiting caller of the given kind may take a slot now. Must hold the lock. */
+    private boolean canGrantWaiting(boolean bulk) {
+        if (inFlight >= limit) {
+            return false;
+        }
+        boolean bulkDue = waitingBulk > 0 && (waiting == 0 || streak >= bulkShare);
+        return bulk == bulkDue;
+    }
+
+    private void grant(boolean bulk) {
+        inFlight++;
+        if (bulk) {
+            streak = 0;
+        } else if (waitingBulk > 0) {
+            streak++;
+        }
+    }
+
+    /** Wake up the caller who should take the next free slot, if any. Must hold the lock. */
+    private void signalNext() {
+        if (inFlight >= limit) {
+            return;
+        }
+        if (waitingBulk > 0 && (waiting == 0 || streak >= bulkShare)) {
+            bulkAvailable.signal();
+        } else if (waiting > 0) {
+            available.signal();
+        }
+    }
+
+    /** Release a slot without a latency sample (e.g. on failure).
+     */
+    public void release() {
+        this.release(-1);
+    }
+
+    /** Release a slot.
+     *
+     * @param latencyNanos the time taken by the limited work in nanoseconds, negative if unknown
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            int oldLimit = limit;
+            if (adaptive && latencyNanos >= 0) {
+                this.updateLimit(latencyNanos);
+            }
+            if (limit > oldLimit) {
+                available.signalAll();
+                bulkAvailable.signalAll();
+            } else {
+                this.signalNext();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateLimit(long latency) {
+        if (longLatency == 0) {
+            shortLatency = latency;
+            longLatency = latency;
+            return;
+        }
+        shortLatency = shortLatency * (1 - SHORT_SMOOTHING) + latency * SHORT_SMOOTHING;
+        longLatency = longLatency * (1 - LONG_SMOOTHING) + latency * LONG_SMOOTHING;
+        // let the baseline catch up quickly once latency drops again
+        if (longLatency / shortLatency > 2) {
+            longLatency *= 0.95;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+        estimatedLimit = Math.max(1, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of slots currently acquired
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of callers currently waiting for a slot
+     */
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return waiting + waitingBulk;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded store of values keyed by content hash, keeping the most recently used entries up to a maximum
+ * number. Since keys identify content rather than items, entries do not expire.
+ * This class is thread-safe.
+ *
+ * @param <V> the type of stored values
+ */
+public class ContentCache<V> {
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 16384;
+
+    private final int maxEntries;
+    private final Map<String, V> entries;
+
+    /** Create a new content cache.
+     *
+     * @param maxEntries the maximum number of entries to keep
+     */
+    public ContentCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > ContentCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Create a new content cache with the default maximum number of entries.
+     */
+    public ContentCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /** Obtain the value stored for the given content.
+     *
+     * @param hash the content hash
+     * @return the value, or null if none is stored
+     */
+    public V get(String hash) {
+        synchronized (entries) {
+            return entries.get(hash);
+        }
+    }
+
+    /** Store a value for the given content.
+     *
+     * @param hash the content hash
+     * @param value the value
+     */
+    public void put(String hash, V value) {
+        synchronized (entries) {
+            entries.put(hash, value);
+        }
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Remove all entries. */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+}
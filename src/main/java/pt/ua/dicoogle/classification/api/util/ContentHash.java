@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.dcm4che2.data.DicomElement;
+
+/** A streaming 128-bit content hash (MurmurHash3, x64 variant, seed 0). Data can be fed in pieces of any size,
+ * and the result is the same as hashing the concatenation of all pieces. The hash is fast but not
+ * cryptographic, so it is meant for deduplicating trusted content rather than for integrity checks.
+ * This class is not thread-safe.
+ */
+public final class ContentHash {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1 = 0;
+    private long h2 = 0;
+    private long length = 0;
+    private final byte[] tail = new byte[16];
+    private int tailLength = 0;
+
+    /** Feed a range of bytes.
+     *
+     * @param b the byte array
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @return this hash
+     */
+    public ContentHash update(byte[] b, int off, int len) {
+        length += len;
+        if (tailLength > 0) {
+            int n = Math.min(len, 16 - tailLength);
+            System.arraycopy(b, off, tail, tailLength, n);
+            tailLength += n;
+            off += n;
+            len -= n;
+            if (tailLength < 16) {
+                return this;
+            }
+            this.block(getLong(tail, 0), getLong(tail, 8));
+            tailLength = 0;
+        }
+        while (len >= 16) {
+            this.block(getLong(b, off), getLong(b, off + 8));
+            off += 16;
+            len -= 16;
+        }
+        System.arraycopy(b, off, tail, 0, len);
+        tailLength = len;
+        return this;
+    }
+
+    /** Feed all bytes.
+     *
+     * @param b the byte array
+     * @return this hash
+     */
+    public ContentHash update(byte[] b) {
+        return this.update(b, 0, b.length);
+    }
+
+    /** Feed the remaining bytes of a buffer, without changing the buffer's position.
+     *
+     * @param buffer the buffer, which may be direct or memory-mapped
+     * @return this hash
+     */
+    public ContentHash update(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        while (tailLength > 0 && in.hasRemaining()) {
+            byte[] one = {in.get()};
+            this.update(one, 0, 1);
+        }
+        if (!in.hasRemaining()) {
+            return this;
+        }
+        length += in.remaining() & ~15;
+        while (in.remaining() >= 16) {
+            this.block(in.getLong(), in.getLong());
+        }
+        int n = in.remaining();
+        length += n;
+        in.get(tail, 0, n);
+        tailLength = n;
+        return this;
+    }
+
+    /** Feed an integer, in little endian byte order.
+     *
+     * @param v the value
+     * @return this hash
+     */
+    public ContentHash update(int v) {
+        return this.update(new byte[]{(byte) v, (byte) (v >>> 8), (byte) (v >>> 16), (byte) (v >>> 24)});
+    }
+
+    /** Feed a string, prefixed by its length so that consecutive strings cannot be confused.
+     *
+     * @param s the string
+     * @return this hash
+     */
+    public ContentHash update(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        return this.update(b.length).update(b);
+    }
+
+    /** Feed a DICOM attribute: its tag, followed by its value or by a marker of its absence. Fragments of
+     * encapsulated values are fed one after the other.
+     *
+     * @param tag the attribute's tag
+     * @param e the attribute, or null if absent
+     * @return this hash
+     */
+    public ContentHash update(int tag, DicomElement e) {
+        this.update(tag);
+        if (e == null) {
+            return this.update(-1);
+        }
+        if (e.hasFragments()) {
+            int n = e.countItems();
+            this.update(n);
+            for (int i = 0; i < n; i++) {
+                byte[] fragment = e.getFragment(i);
+                this.update(fragment.length).update(fragment);
+            }
+            return this;
+        }
+        byte[] value = e.getBytes();
+        return this.update(value.length).update(value);
+    }
+
+    /** Obtain the hash of everything fed so far. The hash should not be fed afterwards.
+     *
+     * @return the hash as 32 hexadecimal digits
+     */
+    public String digest() {
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = tailLength - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (tail[i] & 0xff);
+        }
+        for (int i = Math.min(tailLength, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (tail[i] & 0xff);
+        }
+        if (tailLength > 8) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+        if (tailLength > 0) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        StringBuilder sb = new StringBuilder(32);
+        appendHex(sb, h1);
+        appendHex(sb, h2);
+        return sb.toString();
+    }
+
+    private void block(long k1, long k2) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] b, int off) {
+        long v = 0;
+        for (int i = 7; i >= 0; i--) {
+            v = (v << 8) | (b[off + i] & 0xff);
+        }
+        return v;
+    }
+
+    private static void appendHex(StringBuilder sb, long v) {
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(Character.forDigit((int) (v >>> shift) & 0xf, 16));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+/** A single frame of pixel data, as read by a {@link FrameReader}.
+ */
+public final class Frame {
+    private final int index;
+    private final byte[] data;
+    private final boolean encapsulated;
+
+    public Frame(int index, byte[] data, boolean encapsulated) {
+        this.index = index;
+        this.data = data;
+        this.encapsulated = encapsulated;
+    }
+
+    /**
+     * @return the zero-based index of this frame in the object
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /** Obtain the frame's bytes. For native transfer syntaxes, these are the raw pixel samples in the byte order
+     * of the transfer syntax. For encapsulated transfer syntaxes, these are the compressed bitstream of the frame.
+     *
+     * @return the frame's bytes
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return whether the frame's data is compressed
+     */
+    public boolean isEncapsulated() {
+        return encapsulated;
+    }
+}
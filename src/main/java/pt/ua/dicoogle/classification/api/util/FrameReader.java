@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.io.DicomInputStream;
+
+/** Sequential reader of the frames in a DICOM object's pixel data, which keeps at most one frame in memory.
+ * The DICOM input stream must be positioned right after the header of the top-level PixelData element, as
+ * left by reading the object with a {@code StopTagInputHandler} on {@link Tag#PixelData}.
+ *
+ * For native transfer syntaxes, each frame is a contiguous slice of the pixel data. For encapsulated transfer
+ * syntaxes, fragments are grouped into frames with the basic offset table. Without an offset table, each
+ * fragment is taken as a frame, unless the object has a single frame, in which case all fragments are joined.
+ *
+ * This class is not thread-safe.
+ */
+public class FrameReader {
+    private final DicomInputStream in;
+    private final int numFrames;
+    private final boolean encapsulated;
+    private final int frameLength;
+    private long[] offsets = null;
+    private int index = 0;
+    private long fragmentPos = 0;
+    private byte[] pendingFragment = null;
+    private boolean ended = false;
+
+    /** Create a frame reader.
+     *
+     * @param in the DICOM input stream, positioned at the pixel data's value
+     * @param header the object's attributes preceding the pixel data
+     * @throws IOException if the basic offset table cannot be read
+     * @throws IllegalStateException if the stream is not positioned at the pixel data
+     */
+    public FrameReader(DicomInputStream in, DicomObject header) throws IOException {
+        if (in.tag() != Tag.PixelData) {
+            throw new IllegalStateException("Stream is not positioned at the pixel data");
+        }
+        this.in = in;
+        this.numFrames = Math.max(1, header.getInt(Tag.NumberOfFrames, 1));
+        this.encapsulated = in.valueLength() == -1;
+        if (this.encapsulated) {
+            this.frameLength = -1;
+            this.readOffsetTable();
+        } else {
+            this.frameLength = nativeFrameLength(header, in.valueLength(), this.numFrames);
+        }
+    }
+
+    private static int nativeFrameLength(DicomObject header, int valueLength, int numFrames) {
+        long samples = (long) header.getInt(Tag.Rows) * header.getInt(Tag.Columns)
+                * header.getInt(Tag.SamplesPerPixel, 1);
+        int bitsAllocated = header.getInt(Tag.BitsAllocated, 8);
+        long length = samples * bitsAllocated / 8;
+        if (bitsAllocated % 8 != 0 || length <= 0 || length * numFrames > (valueLength & 0xffffffffL)) {
+            // fall back to an even split of the value
+            length = (valueLength & 0xffffffffL) / numFrames;
+        }
+        return (int) length;
+    }
+
+    private void readOffsetTable() throws IOException {
+        int tag = in.readHeader();
+        if (tag != Tag.Item) {
+            throw new IOException("Missing basic offset table in encapsulated pixel data");
+        }
+        int len = in.valueLength();
+        if (len == 0) {
+            return;
+        }
+        byte[] table = new byte[len];
+        in.readFully(table);
+        long[] offsets = new long[len / 4];
+        for (int i = 0; i < offsets.length; i++) {
+            // always little endian
+            offsets[i] = (table[i * 4] & 0xffL) | (table[i * 4 + 1] & 0xffL) << 8
+                    | (table[i * 4 + 2] & 0xffL) << 16 | (table[i * 4 + 3] & 0xffL) << 24;
+        }
+        this.offsets = offsets;
+    }
+
+    /**
+     * @return the number of frames declared in the object
+     */
+    public int getNumberOfFrames() {
+        return numFrames;
+    }
+
+    /**
+     * @return whether the pixel data is encapsulated (compressed)
+     */
+    public boolean isEncapsulated() {
+        return encapsulated;
+    }
+
+    /** Read the next frame.
+     *
+     * @param reuse a byte array from a previously read frame which is no longer in use, or null. It is
+     *              reused when its length fits the next frame.
+     * @return the next frame, or null if there are no more frames
+     * @throws IOException on a read failure
+     */
+    public Frame next(byte[] reuse) throws IOException {
+        return encapsulated ? nextEncapsulated() : nextNative(reuse);
+    }
+
+    private Frame nextNative(byte[] reuse) throws IOException {
+        if (index >= numFrames) {
+            return null;
+        }
+        byte[] data = reuse != null && reuse.length == frameLength ? reuse : new byte[frameLength];
+        in.readFully(data);
+        return new Frame(index++, data, false);
+    }
+
+    private Frame nextEncapsulated() throws IOException {
+        List<byte[]> parts = new ArrayList<>(1);
+        if (pendingFragment != null) {
+            parts.add(pendingFragment);
+            pendingFragment = null;
+        }
+        while (!ended) {
+            long pos = fragmentPos;
+            byte[] fragment = readFragment();
+            if (fragment == null) {
+                break;
+            }
+            if (!parts.isEmpty() && startsNextFrame(pos)) {
+                pendingFragment = fragment;
+                break;
+            }
+            parts.add(fragment);
+            if (offsets == null && numFrames > 1) {
+                // no offset table, one fragment per frame
+                break;
+            }
+        }
+        if (parts.isEmpty()) {
+            return null;
+        }
+        return new Frame(index++, concat(parts), true);
+    }
+
+    private boolean startsNextFrame(long fragmentOffset) {
+        if (offsets == null) {
+            return numFrames > 1;
+        }
+        return index + 1 < offsets.length && fragmentOffset >= offsets[index + 1];
+    }
+
+    private byte[] readFragment() throws IOException {
+        int tag = in.readHeader();
+        if (tag == Tag.SequenceDelimitationItem) {
+            ended = true;
+            return null;
+        }
+        if (tag != Tag.Item) {
+            throw new IOException("Unexpected element in encapsulated pixel data");
+        }
+        int len = in.valueLength();
+        byte[] fragment = new byte[len];
+        in.readFully(fragment);
+        fragmentPos += 8 + (len & 0xffffffffL);
+        return fragment;
+    }
+
+    private static byte[] concat(List<byte[]> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        int length = 0;
+        for (byte[] p : parts) {
+            length += p.length;
+        }
+        byte[] out = new byte[length];
+        int pos = 0;
+        for (byte[] p : parts) {
+            System.arraycopy(p, 0, out, pos, p.length);
+            pos += p.length;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,328 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+import org.dcm4che2.data.DicomElement;
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+
+import pt.ua.dicoogle.classification.api.InputSpec;
+
+/** Decoder of native DICOM pixel data straight into a classifier's input representation. Resampling to the
+ * output size, channel conversion, the modality rescale, VOI windowing and MONOCHROME1 inversion are fused into a
+ * single pass over the output samples, without an intermediate full resolution image.
+ *
+ * Output samples are interleaved by channel, row-major (height * width * channels). Windowed samples and all
+ * {@link InputSpec.PixelType#UINT8} samples are normalized to [0, 1] (or [0, 255] for bytes). Otherwise,
+ * floating point samples hold the rescaled values, such as Hounsfield units in CT.
+ *
+ * Instances are immutable and thread-safe. The decode methods take an optional output array, which is reused
+ * if it has the right length, so that callers may recycle buffers across items.
+ */
+public class InputDecoder {
+    private final InputSpec spec;
+
+    public InputDecoder(InputSpec spec) {
+        this.spec = Objects.requireNonNull(spec);
+    }
+
+    public InputSpec getSpec() {
+        return spec;
+    }
+
+    /** Decode a frame of a DICOM object into floating point samples.
+     *
+     * @param obj the DICOM object, with native pixel data
+     * @param frame the zero-based frame index
+     * @param out an array to reuse, or null
+     * @return the decoded samples, which may be {@code out}
+     * @throws IOException if the object has no native pixel data of a supported layout
+     */
+    public float[] decodeFloat(DicomObject obj, int frame, float[] out) throws IOException {
+        float[] o = out != null && out.length == spec.getLength() ? out : new float[spec.getLength()];
+        this.decode(new Source(obj, frame), o, null);
+        return o;
+    }
+
+    /** Decode a frame of a DICOM object into bytes.
+     *
+     * @param obj the DICOM object, with native pixel data
+     * @param frame the zero-based frame index
+     * @param out an array to reuse, or null
+     * @return the decoded samples, which may be {@code out}
+     * @throws IOException if the object has no native pixel data of a supported layout
+     */
+    public byte[] decodeBytes(DicomObject obj, int frame, byte[] out) throws IOException {
+        byte[] o = out != null && out.length == spec.getLength() ? out : new byte[spec.getLength()];
+        this.decode(new Source(obj, frame), null, o);
+        return o;
+    }
+
+    /** Decode a frame of off-heap pixel data into floating point samples.
+     *
+     * @param pixels the pixel data
+     * @param header the object's attributes
+     * @param frame the zero-based frame index
+     * @param out an array to reuse, or null
+     * @return the decoded samples, which may be {@code out}
+     * @throws IOException if the pixel data layout is not supported
+     */
+    public float[] decodeFloat(PixelDataBuffer pixels, DicomObject header, int frame, float[] out)
+            throws IOException {
+        float[] o = out != null && out.length == spec.getLength() ? out : new float[spec.getLength()];
+        this.decode(new Source(pixels, header, frame), o, null);
+        return o;
+    }
+
+    /** Decode a frame of off-heap pixel data into bytes.
+     *
+     * @param pixels the pixel data
+     * @param header the object's attributes
+     * @param frame the zero-based frame index
+     * @param out an array to reuse, or null
+     * @return the decoded samples, which may be {@code out}
+     * @throws IOException if the pixel data layout is not supported
+     */
+    public byte[] decodeBytes(PixelDataBuffer pixels, DicomObject header, int frame, byte[] out)
+            throws IOException {
+        byte[] o = out != null && out.length == spec.getLength() ? out : new byte[spec.getLength()];
+        this.decode(new Source(pixels, header, frame), null, o);
+        return o;
+    }
+
+    /** The pixel data of a single frame and the attributes needed to read it. */
+    private static final class Source {
+        final ByteBuffer data;
+        final int offset;
+        final int rows;
+        final int columns;
+        final int samplesPerPixel;
+        final boolean planar;
+        final int bitsAllocated;
+        final int bitsStored;
+        final boolean signed;
+        final boolean monochrome1;
+        final double slope;
+        final double intercept;
+        final double windowCenter;
+        final double windowWidth;
+
+        Source(DicomObject obj, int frame) throws IOException {
+            DicomElement e = obj.get(Tag.PixelData);
+            if (e == null || e.isEmpty()) {
+                throw new IOException("No pixel data");
+            }
+            if (e.hasFragments()) {
+                throw new IOException("Compressed pixel data is not supported");
+            }
+            this.data = ByteBuffer.wrap(e.getBytes())
+                    .order(e.bigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            this.rows = obj.getInt(Tag.Rows);
+            this.columns = obj.getInt(Tag.Columns);
+            this.samplesPerPixel = obj.getInt(Tag.SamplesPerPixel, 1);
+            this.planar = obj.getInt(Tag.PlanarConfiguration, 0) == 1;
+            this.bitsAllocated = obj.getInt(Tag.BitsAllocated, 8);
+            this.bitsStored = obj.getInt(Tag.BitsStored, this.bitsAllocated);
+            this.signed = obj.getInt(Tag.PixelRepresentation, 0) == 1;
+            this.monochrome1 = "MONOCHROME1".equals(obj.getString(Tag.PhotometricInterpretation));
+            int frames = Math.max(1, obj.getInt(Tag.NumberOfFrames, 1));
+            if (frame < 0 || frame >= frames) {
+                throw new IndexOutOfBoundsException("Frame " + frame + " of " + frames);
+            }
+            double[] window = windowOf(obj);
+            this.slope = obj.getDouble(Tag.RescaleSlope, 1);
+            this.intercept = obj.getDouble(Tag.RescaleIntercept, 0);
+            this.windowCenter = window[0];
+            this.windowWidth = window[1];
+            // computed in long, so that an overflow is reported as a mismatch
+            long start = frame * this.frameLength();
+            this.validate(start);
+            this.offset = (int) start;
+        }
+
+        Source(PixelDataBuffer pixels, DicomObject header, int frame) throws IOException {
+            this.data = pixels.getFrame(frame);
+            this.rows = pixels.getRows();
+            this.columns = pixels.getColumns();
+            this.samplesPerPixel = pixels.getSamplesPerPixel();
+            this.planar = header.getInt(Tag.PlanarConfiguration, 0) == 1;
+            this.bitsAllocated = pixels.getBitsAllocated();
+            this.bitsStored = pixels.getBitsStored();
+            this.signed = pixels.isSigned();
+            this.monochrome1 = "MONOCHROME1".equals(pixels.getPhotometricInterpretation());
+            double[] window = windowOf(header);
+            this.slope = header.getDouble(Tag.RescaleSlope, 1);
+            this.intercept = header.getDouble(Tag.RescaleIntercept, 0);
+            this.windowCenter = window[0];
+            this.windowWidth = window[1];
+            this.validate(0);
+            this.offset = 0;
+        }
+
+        private static double[] windowOf(DicomObject obj) {
+            double[] centers = obj.getDoubles(Tag.WindowCenter);
+            double[] widths = obj.getDoubles(Tag.WindowWidth);
+            if (centers == null || widths == null || centers.length == 0 || widths.length == 0) {
+                return new double[]{Double.NaN, Double.NaN};
+            }
+            return new double[]{centers[0], widths[0]};
+        }
+
+        private long frameLength() {
+            return (long) rows * columns * samplesPerPixel * (bitsAllocated / 8);
+        }
+
+        private void validate(long start) throws IOException {
+            if (bitsAllocated != 8 && bitsAllocated != 16 && bitsAllocated != 32) {
+                throw new IOException("Unsupported number of bits allocated: " + bitsAllocated);
+            }
+            if (samplesPerPixel != 1 && samplesPerPixel != 3) {
+                throw new IOException("Unsupported number of samples per pixel: " + samplesPerPixel);
+            }
+            if (rows < 1 || columns < 1 || start + frameLength() > data.limit()) {
+                throw new IOException("Pixel data does not match the image dimensions");
+            }
+        }
+
+        /** Read a stored value. */
+        long raw(int sample, int y, int x) {
+            int index = planar
+                    ? (sample * rows + y) * columns + x
+                    : (y * columns + x) * samplesPerPixel + sample;
+            long v;
+            switch (bitsAllocated) {
+                case 8:
+                    v = data.get(offset + index) & 0xffL;
+                    break;
+                case 16:
+                    v = data.getShort(offset + index * 2) & 0xffffL;
+                    break;
+                default:
+                    v = data.getInt(offset + index * 4) & 0xffffffffL;
+                    break;
+            }
+            if (bitsStored < bitsAllocated) {
+                v &= (1L << bitsStored) - 1;
+            }
+            if (signed && v >= 1L << (bitsStored - 1)) {
+                v -= 1L << bitsStored;
+            }
+            return v;
+        }
+    }
+
+    private void decode(Source src, float[] outFloat, byte[] outBytes) {
+        int width = spec.getWidth();
+        int height = spec.getHeight();
+        int channels = spec.getChannels();
+
+        // fuse the rescale, window and inversion into a single affine transformation of the stored value,
+        // followed by clamping to [0, 1] when normalizing
+        double center = spec.hasFixedWindow() ? spec.getWindowCenter() : spec.isObjectWindow() ? src.windowCenter
+                : Double.NaN;
+        double windowWidth = spec.hasFixedWindow() ? spec.getWindowWidth() : spec.isObjectWindow()
+                ? src.windowWidth : Double.NaN;
+        boolean windowed = !Double.isNaN(center) && windowWidth >= 1;
+        boolean normalize = windowed || outBytes != null;
+        double scale;
+        double shift;
+        if (windowed) {
+            // linear VOI function (PS3.3 C.11.2.1.2)
+            scale = src.slope / (windowWidth - 1);
+            shift = (src.intercept - (center - 0.5)) / (windowWidth - 1) + 0.5;
+        } else if (normalize) {
+            // map the range of stored values to [0, 1]
+            double min = src.signed ? -(1L << (src.bitsStored - 1)) : 0;
+            double max = src.signed ? (1L << (src.bitsStored - 1)) - 1 : (1L << src.bitsStored) - 1;
+            scale = 1 / (max - min);
+            shift = -min / (max - min);
+        } else {
+            scale = src.slope;
+            shift = src.intercept;
+        }
+        if (normalize && src.monochrome1) {
+            scale = -scale;
+            shift = 1 - shift;
+        }
+
+        int[] x0 = new int[width];
+        int[] x1 = new int[width];
+        boolean area = spec.getResampling() == InputSpec.Resampling.AREA;
+        for (int ox = 0; ox < width; ox++) {
+            if (area) {
+                x0[ox] = (int) ((long) ox * src.columns / width);
+                x1[ox] = Math.max(x0[ox] + 1, (int) ((long) (ox + 1) * src.columns / width));
+            } else {
+                x0[ox] = (int) ((ox + 0.5) * src.columns / width);
+                x1[ox] = x0[ox] + 1;
+            }
+        }
+
+        int o = 0;
+        for (int oy = 0; oy < height; oy++) {
+            int y0;
+            int y1;
+            if (area) {
+                y0 = (int) ((long) oy * src.rows / height);
+                y1 = Math.max(y0 + 1, (int) ((long) (oy + 1) * src.rows / height));
+            } else {
+                y0 = (int) ((oy + 0.5) * src.rows / height);
+                y1 = y0 + 1;
+            }
+            for (int ox = 0; ox < width; ox++) {
+                for (int c = 0; c < channels; c++) {
+                    double raw = sampleMean(src, c, channels, y0, y1, x0[ox], x1[ox]);
+                    double v = raw * scale + shift;
+                    if (normalize) {
+                        v = v < 0 ? 0 : v > 1 ? 1 : v;
+                    }
+                    if (outBytes != null) {
+                        outBytes[o++] = (byte) Math.round(v * 255);
+                    } else {
+                        outFloat[o++] = (float) v;
+                    }
+                }
+            }
+        }
+    }
+
+    /** The mean stored value over a source rectangle, converting between channel counts. */
+    private static double sampleMean(Source src, int channel, int channels, int y0, int y1, int x0, int x1) {
+        double sum = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (src.samplesPerPixel == channels) {
+                    sum += src.raw(channel, y, x);
+                } else if (src.samplesPerPixel == 1) {
+                    // replicate gray levels
+                    sum += src.raw(0, y, x);
+                } else {
+                    // average color channels
+                    sum += (src.raw(0, y, x) + src.raw(1, y, x) + src.raw(2, y, x)) / 3.0;
+                }
+            }
+        }
+        return sum / ((y1 - y0) * (x1 - x0));
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/** A bounded pool of lazily created instances, for objects which cannot be used by more than one thread at a time.
+ *
+ * The first instance of the pool is the core instance, obtained from a separate supplier and never evicted.
+ * Other instances are created on demand up to the pool's maximum size, and are evicted once they have been idle
+ * for longer than the configured timeout. Eviction is checked whenever an instance is borrowed or returned,
+ * as well as in {@link #evictIdle()}.
+ * This class is thread-safe.
+ *
+ * @param <T> the type of pooled instances
+ */
+public class InstancePool<T> {
+    private final Supplier<T> core;
+    private final Supplier<T> factory;
+    private final Consumer<T> disposer;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    // most recently returned instances first
+    private final Deque<Entry<T>> idle = new ArrayDeque<>();
+    private final Map<T, Entry<T>> borrowed = new IdentityHashMap<>();
+    private int size = 0;
+    private boolean coreCreated = false;
+    private int epoch = 0;
+
+    private static class Entry<T> {
+        final T instance;
+        final boolean core;
+        final int epoch;
+        long lastUsed;
+
+        Entry(T instance, boolean core, int epoch) {
+            this.instance = instance;
+            this.core = core;
+            this.epoch = epoch;
+        }
+    }
+
+    /** Create a new instance pool.
+     *
+     * @param core the supplier of the core instance
+     * @param factory the supplier of additional instances
+     * @param disposer the action to take on instances leaving the pool, except for the core instance
+     * @param maxSize the maximum number of instances, including the core instance
+     * @param idleTimeoutMillis the time in milliseconds after which an idle non-core instance is evicted
+     */
+    public InstancePool(Supplier<T> core, Supplier<T> factory, Consumer<T> disposer, int maxSize,
+            long idleTimeoutMillis) {
+        Objects.requireNonNull(core);
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(disposer);
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.core = core;
+        this.factory = factory;
+        this.disposer = disposer;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    /** Borrow an instance from the pool, creating a new one if none is idle and the pool is not full.
+     * Otherwise, wait until an instance is returned. Every borrowed instance must be returned with
+     * {@link #release}.
+     *
+     * @return an instance for exclusive use by the caller
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public T borrow() throws InterruptedException {
+        List<T> evicted;
+        T found = null;
+        boolean createCore = false;
+        int createEpoch = 0;
+        lock.lock();
+        try {
+            evicted = this.takeExpired(System.nanoTime());
+            while (true) {
+                Entry<T> e = idle.pollFirst();
+                if (e != null) {
+                    borrowed.put(e.instance, e);
+                    found = e.instance;
+                    break;
+                }
+                if (size < maxSize) {
+                    size++;
+                    createCore = !coreCreated;
+                    coreCreated = true;
+                    createEpoch = epoch;
+                    break;
+                }
+                returned.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispose(evicted);
+        if (found != null) {
+            return found;
+        }
+
+        T instance;
+        try {
+            instance = createCore ? core.get() : factory.get();
+        } catch (RuntimeException | Error ex) {
+            lock.lock();
+            try {
+                if (createEpoch == epoch) {
+                    size--;
+                    if (createCore) {
+                        coreCreated = false;
+                    }
+                }
+                returned.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw ex;
+        }
+        lock.lock();
+        try {
+            borrowed.put(instance, new Entry<>(instance, createCore, createEpoch));
+        } finally {
+            lock.unlock();
+        }
+        return instance;
+    }
+
+    /** Return an instance to the pool.
+     *
+     * @param instance an instance previously obtained with {@link #borrow}
+     */
+    public void release(T instance) {
+        List<T> evicted;
+        T stale = null;
+        lock.lock();
+        try {
+            Entry<T> e = borrowed.remove(instance);
+            if (e == null) {
+                throw new IllegalArgumentException("Instance does not belong to this pool");
+            }
+            long now = System.nanoTime();
+            if (e.epoch == epoch) {
+                e.lastUsed = now;
+                idle.addFirst(e);
+            } else if (!e.core) {
+                stale = e.instance;
+            }
+            evicted = this.takeExpired(now);
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (stale != null) {
+            disposer.accept(stale);
+        }
+        dispose(evicted);
+    }
+
+    /** Evict all non-core instances which have been idle for too long.
+     */
+    public void evictIdle() {
+        List<T> evicted;
+        lock.lock();
+        try {
+            evicted = this.takeExpired(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+        dispose(evicted);
+    }
+
+    /** Remove all instances from the pool. Instances currently borrowed are discarded once returned.
+     */
+    public void clear() {
+        List<T> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Entry<T> e : idle) {
+                if (!e.core) {
+                    evicted.add(e.instance);
+                }
+            }
+            idle.clear();
+            epoch++;
+            size = 0;
+            coreCreated = false;
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        dispose(evicted);
+    }
+
+    /**
+     * @return the number of instances created by the pool and not yet evicted, including borrowed ones
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of idle instances in the pool
+     */
+    public int idleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<T> takeExpired(long now) {
+        List<T> evicted = null;
+        Iterator<Entry<T>> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            Entry<T> e = it.next();
+            if (now - e.lastUsed < idleTimeoutNanos) {
+                break;
+            }
+            if (!e.core) {
+                it.remove();
+                size--;
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(e.instance);
+            }
+        }
+        return evicted;
+    }
+
+    private void dispose(List<T> instances) {
+        if (instances != null) {
+            instances.forEach(disposer);
+        }
+    }
+}
@@ -19,17 +19,20 @@
 package pt.ua.dicoogle.classification.api.util;
 
 import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 /** Simple utility class for a lazy-initialized object that can be cleared on-demand.
- * This implementation is not thread-safe. Concurrent access might result in the supplier function being called
- * more than once.
+ * This class is thread-safe: concurrent calls to {@link #get} on an unloaded object call the supplier function
+ * only once, and wait for it to finish.
  *
  * @author Eduardo Pinho
  */
 public class LazyLoader<T> {
     private volatile T instance;
     private final Supplier<T> init;
+    // not a monitor, so that virtual threads waiting on a load do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
 
     public LazyLoader(Supplier<T> init) {
         Objects.requireNonNull(init);
@@ -37,14 +40,45 @@ public class LazyLoader<T> {
     }
 
     public T get() {
-        if (this.instance == null) {
-            this.instance = this.init.get();
+        T o = this.instance;
+        if (o != null) {
+            return o;
+        }
+        this.lock.lock();
+        try {
+            o = this.instance;
+            if (o == null) {
+                o = this.init.get();
+                this.instance = o;
+            }
+            return o;
+        } finally {
+            this.lock.unlock();
         }
-        return this.instance;
     }
 
     public void reset() {
-        this.instance = null;
+        this.lock.lock();
+        try {
+            this.instance = null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /** Clear the object, handing it over to the caller.
+     *
+     * @return the object which was loaded, or null if none was
+     */
+    public T take() {
+        this.lock.lock();
+        try {
+            T o = this.instance;
+            this.instance = null;
+            return o;
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     public boolean isLoaded() {
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.io.DicomInputStream;
+
+/** Native (uncompressed) pixel data held outside of the Java heap, along with the attributes needed to interpret
+ * it. The buffer is either a direct buffer or a slice of a read-only mapping of a local file, so that native code
+ * can wrap its address without copying the pixels again.
+ */
+public final class PixelDataBuffer {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final int columns;
+    private final int frames;
+    private final int samplesPerPixel;
+    private final int bitsAllocated;
+    private final int bitsStored;
+    private final boolean signed;
+    private final String photometricInterpretation;
+
+    /** Create a pixel data buffer.
+     *
+     * @param buffer the pixel data, of which the byte order must be set to the transfer syntax's byte order
+     * @param header the object's attributes describing the pixel data
+     */
+    public PixelDataBuffer(ByteBuffer buffer, DicomObject header) {
+        this.buffer = buffer;
+        this.rows = header.getInt(Tag.Rows);
+        this.columns = header.getInt(Tag.Columns);
+        this.frames = Math.max(1, header.getInt(Tag.NumberOfFrames, 1));
+        this.samplesPerPixel = header.getInt(Tag.SamplesPerPixel, 1);
+        this.bitsAllocated = header.getInt(Tag.BitsAllocated, 8);
+        this.bitsStored = header.getInt(Tag.BitsStored, this.bitsAllocated);
+        this.signed = header.getInt(Tag.PixelRepresentation, 0) == 1;
+        this.photometricInterpretation = header.getString(Tag.PhotometricInterpretation);
+    }
+
+    /** Read the pixel data from a DICOM input stream into a new direct buffer. The stream must be positioned
+     * right after the header of the PixelData element, and the transfer syntax must be native.
+     *
+     * @param in the DICOM input stream
+     * @param header the object's attributes preceding the pixel data
+     * @return the pixel data buffer
+     * @throws IOException on a read failure
+     * @throws IllegalStateException if the stream is not positioned at native pixel data
+     */
+    public static PixelDataBuffer read(DicomInputStream in, DicomObject header) throws IOException {
+        return read(in, header, null);
+    }
+
+    /** Read the pixel data from a DICOM input stream into a direct buffer, reusing the given one if it is large
+     * enough. The stream must be positioned right after the header of the PixelData element, and the transfer
+     * syntax must be native. The buffer may be recycled again once the returned pixel data is no longer in use,
+     * by passing {@link #getBuffer()} (which keeps the whole capacity).
+     *
+     * @param in the DICOM input stream
+     * @param header the object's attributes preceding the pixel data
+     * @param reuse a direct buffer to overwrite, or null
+     * @return the pixel data buffer
+     * @throws IOException on a read failure
+     * @throws IllegalStateException if the stream is not positioned at native pixel data
+     */
+    public static PixelDataBuffer read(DicomInputStream in, DicomObject header, ByteBuffer reuse)
+            throws IOException {
+        if (in.tag() != Tag.PixelData || in.valueLength() == -1) {
+            throw new IllegalStateException("Stream is not positioned at native pixel data");
+        }
+        int length = in.valueLength();
+        ByteBuffer buffer;
+        if (reuse != null && reuse.isDirect() && reuse.capacity() >= length) {
+            buffer = reuse;
+            buffer.clear().limit(length);
+        } else {
+            buffer = ByteBuffer.allocateDirect(length);
+        }
+        buffer.order(byteOrder(in));
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, length)];
+        while (buffer.hasRemaining()) {
+            int n = Math.min(chunk.length, buffer.remaining());
+            in.readFully(chunk, 0, n);
+            buffer.put(chunk, 0, n);
+        }
+        buffer.flip();
+        return new PixelDataBuffer(buffer, header);
+    }
+
+    /** Take the pixel data of a DICOM file mapped into memory, without copying it. The stream must be reading
+     * the mapped file from the mapping's position, and be positioned right after the header of the PixelData
+     * element. Since the stream position is only trusted if the element header is found right before it in the
+     * mapping, this method may decline to slice the mapping.
+     *
+     * @param in the DICOM input stream reading the mapped file
+     * @param mapped the mapping of the file, positioned at the start of the stream
+     * @param header the object's attributes preceding the pixel data
+     * @return the pixel data buffer, or null if the pixel data could not be located in the mapping
+     * @throws IllegalStateException if the stream is not positioned at native pixel data
+     */
+    public static PixelDataBuffer slice(DicomInputStream in, ByteBuffer mapped, DicomObject header) {
+        if (in.tag() != Tag.PixelData || in.valueLength() == -1) {
+            throw new IllegalStateException("Stream is not positioned at native pixel data");
+        }
+        long pos = in.getStreamPosition();
+        long length = in.valueLength() & 0xffffffffL;
+        boolean bigEndian = in.getTransferSyntax().bigEndian();
+        int headerLength = in.getTransferSyntax().explicitVR() ? 12 : 8;
+        int start = mapped.position();
+        if (pos < headerLength || start + pos + length > mapped.limit()) {
+            return null;
+        }
+        // check that the element header is where it should be
+        int tagAt = start + (int) pos - headerLength;
+        byte[] expected = bigEndian
+                ? new byte[]{(byte) 0x7f, (byte) 0xe0, (byte) 0x00, (byte) 0x10}
+                : new byte[]{(byte) 0xe0, (byte) 0x7f, (byte) 0x10, (byte) 0x00};
+        for (int i = 0; i < expected.length; i++) {
+            if (mapped.get(tagAt + i) != expected[i]) {
+                return null;
+            }
+        }
+        ByteBuffer view = mapped.duplicate();
+        view.position(start + (int) pos).limit(start + (int) (pos + length));
+        return new PixelDataBuffer(view.slice().order(byteOrder(in)), header);
+    }
+
+    private static ByteOrder byteOrder(DicomInputStream in) {
+        return in.getTransferSyntax().bigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * @return a view of the whole pixel data, positioned at the start and with the transfer syntax's byte order
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate().order(buffer.order());
+    }
+
+    /** Obtain a view of a single frame.
+     *
+     * @param index the zero-based frame index
+     * @return a view of the frame's pixel data, with the transfer syntax's byte order
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public ByteBuffer getFrame(int index) {
+        if (index < 0 || index >= frames) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + frames);
+        }
+        int length = this.getFrameLength();
+        ByteBuffer view = buffer.duplicate();
+        view.position(index * length).limit(index * length + length);
+        return view.slice().order(buffer.order());
+    }
+
+    /**
+     * @return the number of bytes in each frame
+     */
+    public int getFrameLength() {
+        return (int) ((long) rows * columns * samplesPerPixel * bitsAllocated / 8);
+    }
+
+    /**
+     * @return whether the underlying buffer is direct (which includes mapped buffers)
+     */
+    public boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getSamplesPerPixel() {
+        return samplesPerPixel;
+    }
+
+    public int getBitsAllocated() {
+        return bitsAllocated;
+    }
+
+    public int getBitsStored() {
+        return bitsStored;
+    }
+
+    /**
+     * @return whether the samples are signed (PixelRepresentation is 1)
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    public String getPhotometricInterpretation() {
+        return photometricInterpretation;
+    }
+
+    public ByteOrder getByteOrder() {
+        return buffer.order();
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A Bloom filter of strings which grows as elements are added. Each time the current filter reaches its capacity,
+ * a new filter with twice the capacity and half the false positive rate is appended, so that the overall false
+ * positive rate stays below twice the initial one. Membership tests never give false negatives.
+ *
+ * This class is thread-safe. Filters can be saved to and loaded from a compact binary format.
+ */
+public class ScalableBloomFilter {
+    private static final int MAGIC = 0x53424c46; // "SBLF"
+    private static final int FORMAT_VERSION = 1;
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final int initialCapacity;
+    private final double falsePositiveRate;
+    private volatile Layer[] layers;
+
+    private static final class Layer {
+        final int capacity;
+        final int numHashes;
+        final long numBits;
+        final AtomicLongArray words;
+        final AtomicInteger count;
+
+        Layer(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int numWords = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+            this.numBits = (long) numWords << 6;
+            this.numHashes = Math.max(1, (int) Math.round((double) this.numBits / capacity * Math.log(2)));
+            this.words = new AtomicLongArray(numWords);
+            this.count = new AtomicInteger();
+        }
+
+        Layer(int capacity, int numHashes, long[] words, int count) {
+            this.capacity = capacity;
+            this.numHashes = numHashes;
+            this.numBits = (long) words.length << 6;
+            this.words = new AtomicLongArray(words);
+            this.count = new AtomicInteger(count);
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < numHashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, numBits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long h1, long h2) {
+            for (int i = 0; i < numHashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, numBits);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long w;
+                do {
+                    w = words.get(index);
+                } while ((w & mask) == 0 && !words.compareAndSet(index, w, w | mask));
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    /** Create an empty filter.
+     *
+     * @param initialCapacity the number of elements expected before the filter needs to grow
+     * @param falsePositiveRate the false positive rate of the first filter, between 0 and 1 (exclusive)
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.layers = new Layer[]{new Layer(initialCapacity, falsePositiveRate)};
+    }
+
+    private ScalableBloomFilter(int initialCapacity, double falsePositiveRate, Layer[] layers) {
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.layers = layers;
+    }
+
+    /** Check whether an element may have been added to this filter.
+     *
+     * @param key the element
+     * @return false if the element was definitely not added, true if it probably was
+     */
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (Layer l : this.layers) {
+            if (l.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Add an element to this filter.
+     *
+     * @param key the element
+     * @return true if the filter changed, false if the element was probably already present
+     */
+    public boolean add(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        Layer[] ls = this.layers;
+        for (Layer l : ls) {
+            if (l.mightContain(h1, h2)) {
+                return false;
+            }
+        }
+        Layer last = ls[ls.length - 1];
+        if (last.count.get() >= last.capacity) {
+            last = this.grow(last);
+        }
+        last.put(h1, h2);
+        return true;
+    }
+
+    private synchronized Layer grow(Layer full) {
+        Layer[] ls = this.layers;
+        Layer last = ls[ls.length - 1];
+        if (last != full) {
+            // grown by another thread
+            return last;
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE, (long) full.capacity * GROWTH);
+        double rate = this.falsePositiveRate * Math.pow(TIGHTENING, ls.length);
+        Layer[] grown = Arrays.copyOf(ls, ls.length + 1);
+        grown[ls.length] = new Layer(capacity, rate);
+        this.layers = grown;
+        return grown[ls.length];
+    }
+
+    /**
+     * @return the approximate number of elements added
+     */
+    public long size() {
+        long n = 0;
+        for (Layer l : this.layers) {
+            n += l.count.get();
+        }
+        return n;
+    }
+
+    /**
+     * @return the size of the bit sets in bytes
+     */
+    public long sizeInBytes() {
+        long n = 0;
+        for (Layer l : this.layers) {
+            n += l.numBits >>> 3;
+        }
+        return n;
+    }
+
+    /** Remove all elements, shrinking back to the initial capacity.
+     */
+    public synchronized void clear() {
+        this.layers = new Layer[]{new Layer(this.initialCapacity, this.falsePositiveRate)};
+    }
+
+    /** Write this filter to an output stream. Elements added concurrently may or may not be written.
+     *
+     * @param out the output stream, which is not closed
+     * @throws IOException on a write failure
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        Layer[] ls = this.layers;
+        dout.writeInt(MAGIC);
+        dout.writeInt(FORMAT_VERSION);
+        dout.writeInt(this.initialCapacity);
+        dout.writeDouble(this.falsePositiveRate);
+        dout.writeInt(ls.length);
+        for (Layer l : ls) {
+            dout.writeInt(l.capacity);
+            dout.writeInt(l.numHashes);
+            dout.writeInt(l.count.get());
+            dout.writeInt(l.words.length());
+            for (int i = 0; i < l.words.length(); i++) {
+                dout.writeLong(l.words.get(i));
+            }
+        }
+        dout.flush();
+    }
+
+    /** Read a filter previously written with {@link #writeTo}.
+     *
+     * @param in the input stream, which is not closed
+     * @return the filter
+     * @throws IOException on a read failure or if the data is not a valid filter
+     */
+    public static ScalableBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != MAGIC) {
+            throw new IOException("Not a Bloom filter");
+        }
+        int version = din.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported Bloom filter format version " + version);
+        }
+        int initialCapacity = din.readInt();
+        double falsePositiveRate = din.readDouble();
+        int numLayers = din.readInt();
+        if (initialCapacity < 1 || !(falsePositiveRate > 0 && falsePositiveRate < 1) || numLayers < 1) {
+            throw new IOException("Corrupted Bloom filter");
+        }
+        Layer[] layers = new Layer[numLayers];
+        for (int i = 0; i < numLayers; i++) {
+            int capacity = din.readInt();
+            int numHashes = din.readInt();
+            int count = din.readInt();
+            int numWords = din.readInt();
+            if (capacity < 1 || numHashes < 1 || count < 0 || numWords < 1) {
+                throw new IOException("Corrupted Bloom filter");
+            }
+            long[] words = new long[numWords];
+            for (int j = 0; j < numWords; j++) {
+                words[j] = din.readLong();
+            }
+            layers[i] = new Layer(capacity, numHashes, words, count);
+        }
+        return new ScalableBloomFilter(initialCapacity, falsePositiveRate, layers);
+    }
+
+    /** Save this filter to a file, replacing it atomically where the file system allows it.
+     *
+     * @param file the path to the file
+     * @throws IOException on a write failure
+     */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            this.writeTo(out);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Load a filter from a file.
+     *
+     * @param file the path to the file
+     * @return the filter
+     * @throws IOException on a read failure or if the file is not a valid filter
+     */
+    public static ScalableBloomFilter load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readFrom(in);
+        }
+    }
+
+    private static long hash(String key) {
+        // FNV-1a over the UTF-8 bytes, then a finalizer for better bit dispersion
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.dcm4che2.data.DicomElement;
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+
+/** A bounded memo of values computed from DICOM objects, shared by all objects of the same series. Entries are
+ * keyed by a scope (such as a classification criterion), the object's SeriesInstanceUID and the values of a
+ * given set of attributes. Computations should therefore depend on nothing else than those attributes.
+ *
+ * The memo keeps the most recently used entries up to a maximum number, and entries expire after a fixed time.
+ * Objects without a SeriesInstanceUID are never memoized, and neither are null values.
+ * This class is thread-safe, although the same value may be computed more than once under concurrent access.
+ *
+ * @param <V> the type of memoized values
+ */
+public class SeriesCache<V> {
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    /** The default time in milliseconds after which an entry expires. */
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Memo<V>> entries;
+
+    private static final class Memo<V> {
+        final V value;
+        final long expiresAt;
+
+        Memo(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** Create a new series cache.
+     *
+     * @param maxEntries the maximum number of entries to keep
+     * @param ttlMillis the time in milliseconds after which an entry expires
+     */
+    public SeriesCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<String, Memo<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Memo<V>> eldest) {
+                return size() > SeriesCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Create a new series cache with the default limits.
+     */
+    public SeriesCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    /** Obtain the memoized value for the object's series, or compute and memoize it.
+     *
+     * @param scope an identifier of what is being computed, so that a cache can be shared by computations
+     * @param obj the DICOM object
+     * @param tags the attributes on which the computation depends, besides the series
+     * @param fn the computation, which may return null for a value that should not be memoized
+     * @return the memoized or computed value
+     */
+    public V computeIfAbsent(String scope, DicomObject obj, int[] tags, Function<DicomObject, V> fn) {
+        String key = keyOf(scope, obj, tags);
+        if (key == null) {
+            return fn.apply(obj);
+        }
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Memo<V> e = entries.get(key);
+            if (e != null) {
+                if (now - e.expiresAt < 0) {
+                    return e.value;
+                }
+                entries.remove(key);
+            }
+        }
+        V value = fn.apply(obj);
+        if (value == null) {
+            return null;
+        }
+        synchronized (entries) {
+            entries.put(key, new Memo<>(value, now + ttlNanos));
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of entries in the cache, including expired ones not yet removed
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Remove all entries. */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static String keyOf(String scope, DicomObject obj, int[] tags) {
+        DicomElement series = obj.get(Tag.SeriesInstanceUID);
+        if (series == null || series.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(64).append(scope).append('\u0000');
+        appendValue(sb, series);
+        for (int tag : tags) {
+            sb.append('\u0000');
+            appendValue(sb, obj.get(tag));
+        }
+        return sb.toString();
+    }
+
+    private static void appendValue(StringBuilder sb, DicomElement e) {
+        if (e == null) {
+            sb.append('\u0001');
+        } else {
+            sb.append(new String(e.getBytes(), StandardCharsets.ISO_8859_1));
+        }
+    }
+}
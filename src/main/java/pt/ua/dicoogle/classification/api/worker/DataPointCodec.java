@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.worker;
+
+import java.nio.ByteBuffer;
+
+/** Binary encoding of data points, for passing them to classifier worker processes. Data points are encoded into
+ * memory shared with the worker whenever they fit, so encoding should write straight into the given buffer.
+ * Implementations must be thread-safe.
+ *
+ * @param <B> the type of data points
+ */
+public interface DataPointCodec<B> {
+
+    /** A codec of float arrays, such as those decoded with an {@link pt.ua.dicoogle.classification.api.InputSpec}
+     * of 32-bit floating point samples.
+     */
+    public static final DataPointCodec<float[]> FLOAT_ARRAY = new DataPointCodec<float[]>() {
+        @Override
+        public int encodedLength(float[] item) {
+            return item.length * 4;
+        }
+
+        @Override
+        public void encode(float[] item, ByteBuffer out) {
+            out.asFloatBuffer().put(item);
+        }
+
+        @Override
+        public float[] decode(ByteBuffer in) {
+            float[] item = new float[in.remaining() / 4];
+            in.asFloatBuffer().get(item);
+            return item;
+        }
+    };
+
+    /** A codec of byte arrays, such as those decoded with an {@link pt.ua.dicoogle.classification.api.InputSpec}
+     * of 8-bit samples.
+     */
+    public static final DataPointCodec<byte[]> BYTE_ARRAY = new DataPointCodec<byte[]>() {
+        @Override
+        public int encodedLength(byte[] item) {
+            return item.length;
+        }
+
+        @Override
+        public void encode(byte[] item, ByteBuffer out) {
+            out.put(item);
+        }
+
+        @Override
+        public byte[] decode(ByteBuffer in) {
+            byte[] item = new byte[in.remaining()];
+            in.get(item);
+            return item;
+        }
+    };
+
+    /**
+     * @param item the data point
+     * @return the exact number of bytes which {@link #encode} writes for the data point
+     */
+    public int encodedLength(B item);
+
+    /** Encode a data point.
+     *
+     * @param item the data point
+     * @param out the buffer to write to, starting at its position, with at least {@link #encodedLength} bytes
+     *            remaining
+     */
+    public void encode(B item, ByteBuffer out);
+
+    /** Decode a data point.
+     *
+     * @param in the buffer holding exactly one encoded data point between its position and limit
+     * @return the data point
+     */
+    public B decode(ByteBuffer in);
+}
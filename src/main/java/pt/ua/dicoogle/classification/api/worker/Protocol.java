@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.worker;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The messages exchanged between a worker pool and its worker processes over a local socket.
+ *
+ * After connecting, the worker sends the token it was given, followed by {@link #READY} once its classifier
+ * is created. Requests and replies carry an identifier, and replies may arrive in any order.
+ * Data points are passed in slots of a shared file, or inline when they do not fit in a slot.
+ */
+final class Protocol {
+    /** Environment variable with the token authenticating the worker's connection. */
+    static final String TOKEN_ENV = "DICOOGLE_CLASSIFIER_WORKER_TOKEN";
+
+    // host to worker
+    static final byte PREDICT = 1;
+    static final byte PING = 2;
+    // worker to host
+    static final byte READY = 16;
+    static final byte RESULT = 17;
+    static final byte ERROR = 18;
+    static final byte PONG = 19;
+
+    /** Slot number of a data point passed inline. */
+    static final int INLINE = -1;
+
+    private static final int MAX_MESSAGE_LENGTH = 8192;
+
+    private Protocol() {}
+
+    /** Obtain the region of a slot in the shared file, in native byte order. */
+    static ByteBuffer slot(ByteBuffer shared, int slot, int slotBytes, int length) {
+        ByteBuffer b = shared.duplicate();
+        b.position(slot * slotBytes);
+        b.limit(slot * slotBytes + length);
+        return b.slice().order(ByteOrder.nativeOrder());
+    }
+
+    static void writePredictions(DataOutputStream out, Map<String, Double> predictions) throws IOException {
+        out.writeInt(predictions.size());
+        for (Map.Entry<String, Double> e : predictions.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeDouble(e.getValue());
+        }
+    }
+
+    static Map<String, Double> readPredictions(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            throw new IOException("Corrupted reply from worker");
+        }
+        Map<String, Double> predictions = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            String key = in.readUTF();
+            predictions.put(key, in.readDouble());
+        }
+        return predictions;
+    }
+
+    static String truncate(String message) {
+        if (message == null) {
+            return "";
+        }
+        return message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+    }
+}
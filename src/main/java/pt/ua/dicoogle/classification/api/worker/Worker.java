@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.worker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import pt.ua.dicoogle.classification.api.ClassifierInterface;
+
+/** The entry point of a classifier worker process, launched by a {@link WorkerPool}. The worker creates its
+ * classifier with the given factory, then serves prediction requests from the pool until the connection is closed,
+ * running up to the given number of predictions concurrently. It is not meant to be launched by hand.
+ *
+ * Arguments: port, shared file, number of slots, slot size in bytes, concurrency, factory class, factory
+ * arguments...
+ */
+public final class Worker {
+    /** The exit status of a worker whose classifier threw an error. */
+    static final int EXIT_ERROR = 3;
+
+    private final ClassifierInterface<Object> classifier;
+    private final DataPointCodec<Object> codec;
+    private final ByteBuffer shared;
+    private final int slotBytes;
+    private final DataOutputStream out;
+
+    private Worker(ClassifierInterface<Object> classifier, DataPointCodec<Object> codec, ByteBuffer shared,
+            int slotBytes, DataOutputStream out) {
+        this.classifier = classifier;
+        this.codec = codec;
+        this.shared = shared;
+        this.slotBytes = slotBytes;
+        this.out = out;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        if (args.length < 6) {
+            System.err.println("Usage: Worker <port> <shared file> <slots> <slot bytes> <concurrency> <factory> "
+                    + "[args...]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        int slots = Integer.parseInt(args[2]);
+        int slotBytes = Integer.parseInt(args[3]);
+        int concurrency = Integer.parseInt(args[4]);
+        String[] factoryArgs = Arrays.copyOfRange(args, 6, args.length);
+        String token = System.getenv(Protocol.TOKEN_ENV);
+
+        MappedByteBuffer shared;
+        try (FileChannel ch = FileChannel.open(Paths.get(args[1]), StandardOpenOption.READ)) {
+            shared = ch.map(FileChannel.MapMode.READ_ONLY, 0, (long) slots * slotBytes);
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(token == null ? "" : token);
+            out.flush();
+
+            WorkerFactory<Object> factory = (WorkerFactory<Object>) Class.forName(args[5])
+                    .getConstructor().newInstance();
+            ClassifierInterface<Object> classifier = factory.create(factoryArgs);
+            Worker worker = new Worker(classifier, factory.getCodec(), shared, slotBytes, out);
+            out.writeByte(Protocol.READY);
+            out.flush();
+
+            ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+                Thread t = new Thread(r, "classifier-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                worker.serve(in, executor);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        // the classifier may have left non-daemon threads behind
+        System.exit(0);
+    }
+
+    private void serve(DataInputStream in, ExecutorService executor) throws IOException {
+        while (true) {
+            byte op;
+            try {
+                op = in.readByte();
+            } catch (EOFException ex) {
+                // the pool closed the connection
+                return;
+            }
+            long id = in.readLong();
+            switch (op) {
+                case Protocol.PING:
+                    this.reply(id, Protocol.PONG, null, null);
+                    break;
+                case Protocol.PREDICT:
+                    String criterion = in.readUTF();
+                    int slot = in.readInt();
+                    int length = in.readInt();
+                    ByteBuffer data;
+                    if (slot == Protocol.INLINE) {
+                        byte[] bytes = new byte[length];
+                        in.readFully(bytes);
+                        data = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+                    } else {
+                        data = Protocol.slot(this.shared, slot, this.slotBytes, length);
+                    }
+                    executor.execute(() -> this.predict(id, criterion, data));
+                    break;
+                default:
+                    throw new IOException("Unknown request " + op);
+            }
+        }
+    }
+
+    private void predict(long id, String criterion, ByteBuffer data) {
+        Map<String, Double> predictions;
+        try {
+            Object item = this.classifier.adapt(this.codec.decode(data));
+            predictions = this.classifier.predict(criterion, item);
+        } catch (Throwable ex) {
+            // every request is answered, so that its slot is freed in the pool
+            String message = ex instanceof Error ? ex.toString() : String.valueOf(ex.getMessage());
+            this.reply(id, Protocol.ERROR, null, message);
+            if (ex instanceof Error) {
+                // the classifier may be left in an unusable state, have the pool start another worker
+                Runtime.getRuntime().halt(EXIT_ERROR);
+            }
+            return;
+        }
+        this.reply(id, Protocol.RESULT, predictions, null);
+    }
+
+    private void reply(long id, byte op, Map<String, Double> predictions, String message) {
+        try {
+            synchronized (this.out) {
+                this.out.writeByte(op);
+                this.out.writeLong(id);
+                if (op == Protocol.RESULT) {
+                    Protocol.writePredictions(this.out, predictions);
+                } else if (op == Protocol.ERROR) {
+                    this.out.writeUTF(Protocol.truncate(message));
+                }
+                this.out.flush();
+            }
+        } catch (IOException ex) {
+            // the pool is gone, the reading side will notice
+        }
+    }
+}
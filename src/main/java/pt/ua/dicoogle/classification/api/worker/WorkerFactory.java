@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.worker;
+
+import java.util.Collections;
+import java.util.List;
+
+import pt.ua.dicoogle.classification.api.ClassifierInterface;
+
+/** Factory of classifiers hosted in worker processes (see {@link WorkerPool}). Implementations must be public
+ * classes with a public constructor without arguments, since they are instantiated by name in each worker process,
+ * as well as in the host process for obtaining the codec.
+ *
+ * @param <B> the type of data points
+ */
+public interface WorkerFactory<B> {
+
+    /** Create the classifier of a worker process. This is only called in the worker process.
+     *
+     * @param args the arguments given to the pool
+     * @return a new classifier, which must be thread-safe if the pool's concurrency per worker is above 1
+     * @throws Exception if the classifier could not be created, in which case the worker exits
+     */
+    public ClassifierInterface<B> create(String... args) throws Exception;
+
+    /**
+     * @return the codec of data points, the same in the host and in the worker processes
+     */
+    public DataPointCodec<B> getCodec();
+
+    /**
+     * @return additional class path entries of the worker processes, such as the classifier's native libraries
+     *         and their dependencies. The code sources of the factory and of this API are always included.
+     */
+    public default List<String> getClassPath() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the options of the worker processes' JVM, such as heap limits
+     */
+    public default List<String> getJvmOptions() {
+        return Collections.emptyList();
+    }
+}
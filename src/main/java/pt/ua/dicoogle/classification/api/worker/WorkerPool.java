@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.worker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pt.ua.dicoogle.classification.api.ClassificationException;
+import pt.ua.dicoogle.classification.api.ClassifierInterface;
+
+/** A classifier hosted in a pool of local worker processes, so that a native crash or a memory leak of the
+ * classifier cannot take down the host JVM, and the host's garbage collection pauses do not stall inference.
+ *
+ * Each worker process creates its own classifier with a {@link WorkerFactory}, and runs up to a fixed number of
+ * predictions concurrently. Data points are encoded with the factory's codec into a memory-mapped file shared with
+ * the worker (or sent inline if larger than a slot), and predictions come back over a loopback socket. Requests go
+ * to the least loaded worker, waiting for one to be free if needed. Workers are checked periodically, and a worker
+ * which exited or stopped responding is restarted, failing the requests it had in flight.
+ *
+ * A failure reported by the classifier is thrown as a {@link ClassificationException}. A failure of the workers
+ * themselves, such as a crash, a lost connection, a timeout or no worker becoming available in time, is thrown as
+ * an {@link UncheckedIOException}, which the classifier manager counts against the classifier's circuit breaker.
+ *
+ * Extra parameters of {@link #predict} are not passed on to the workers. This class is thread-safe.
+ *
+ * @param <B> the type of data points
+ */
+public class WorkerPool<B> implements ClassifierInterface<B>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+    /** The default size of each slot of the shared files, in bytes. */
+    public static final int DEFAULT_SLOT_BYTES = 8 << 20;
+    /** The default maximum time to wait for a prediction, in milliseconds. */
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 60000;
+    /** The maximum time to wait for a worker to create its classifier, in milliseconds. */
+    public static final long START_TIMEOUT_MILLIS = 120000;
+    /** The interval between health checks, in milliseconds. */
+    public static final long HEALTH_CHECK_MILLIS = 1000;
+    private static final int MISSED_CHECKS = 3;
+
+    private final String factoryName;
+    private final List<String> args;
+    private final DataPointCodec<B> codec;
+    private final int concurrency;
+    private final int slotBytes;
+    private final long requestTimeoutMillis;
+    private final List<String> command;
+    private final AtomicReferenceArray<WorkerProcess> workers;
+    private final ScheduledExecutorService health;
+    // not a monitor, so that virtual threads waiting for a worker do not pin their carrier
+    private final ReentrantLock capacity = new ReentrantLock();
+    private final Condition released = this.capacity.newCondition();
+    private final AtomicLong restarts = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /** Create a pool with the default slot size and request timeout, and start its workers.
+     *
+     * @param factory the factory of the workers' classifiers
+     * @param args the arguments to the factory
+     * @param processes the number of worker processes
+     * @param concurrency the maximum number of concurrent predictions in each worker
+     * @throws UncheckedIOException if a worker could not be started
+     */
+    public WorkerPool(Class<? extends WorkerFactory<B>> factory, List<String> args, int processes, int concurrency) {
+        this(factory, args, processes, concurrency, DEFAULT_SLOT_BYTES, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    /** Create a pool and start its workers.
+     *
+     * @param factory the factory of the workers' classifiers
+     * @param args the arguments to the factory
+     * @param processes the number of worker processes
+     * @param concurrency the maximum number of concurrent predictions in each worker
+     * @param slotBytes the size of the shared memory reserved for each concurrent prediction, in bytes
+     * @param requestTimeoutMillis the maximum time to wait for a prediction, in milliseconds, including the time
+     *                             waiting for a free worker
+     * @throws UncheckedIOException if a worker could not be started
+     */
+    public WorkerPool(Class<? extends WorkerFactory<B>> factory, List<String> args, int processes, int concurrency,
+            int slotBytes, long requestTimeoutMillis) {
+        Objects.requireNonNull(factory);
+        if (processes < 1) {
+            throw new IllegalArgumentException("Number of worker processes must be positive");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Worker concurrency must be positive");
+        }
+        if (slotBytes < 1 || (long) slotBytes * concurrency > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid slot size");
+        }
+        WorkerFactory<B> f;
+        try {
+            f = factory.getConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException("Worker factory " + factory.getName() + " cannot be instantiated", ex);
+        }
+        this.factoryName = factory.getName();
+        this.args = new ArrayList<>(args);
+        this.codec = f.getCodec();
+        this.concurrency = concurrency;
+        this.slotBytes = slotBytes;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.command = new ArrayList<>();
+        this.command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        this.command.addAll(f.getJvmOptions());
+        this.command.add("-cp");
+        this.command.add(classPath(factory, f.getClassPath()));
+        this.command.add(Worker.class.getName());
+
+        this.workers = new AtomicReferenceArray<>(processes);
+        try {
+            for (int i = 0; i < processes; i++) {
+                this.workers.set(i, this.startWorker(i));
+            }
+        } catch (IOException ex) {
+            this.close();
+            throw new UncheckedIOException("Failed to start classifier workers", ex);
+        }
+        this.health = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "classifier-worker-health");
+            t.setDaemon(true);
+            return t;
+        });
+        this.health.scheduleWithFixedDelay(this::checkWorkers, HEALTH_CHECK_MILLIS, HEALTH_CHECK_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private WorkerProcess startWorker(int index) throws IOException {
+        return WorkerProcess.start(index, this.command, this.factoryName, this.args, this.concurrency,
+                this.slotBytes, START_TIMEOUT_MILLIS, this::released);
+    }
+
+    @Override
+    public Map<String, Double> predict(String criterion, B item, Object... parameters) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.requestTimeoutMillis);
+        WorkerProcess w = this.reserve(criterion, deadline);
+        CompletableFuture<Map<String, Double>> reply;
+        try {
+            reply = w.submit(criterion, item, this.codec);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to reach classifier worker", ex);
+        }
+        try {
+            return reply.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            throw new UncheckedIOException(new IOException("Classifier worker timed out", ex));
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof WorkerProcess.ClassifierFailure) {
+                throw new ClassificationException(criterion, "Classifier worker failed: " + cause.getMessage(),
+                        cause);
+            }
+            throw new UncheckedIOException("Classifier worker failed",
+                    cause instanceof IOException ? (IOException) cause : new IOException(cause));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ClassificationException(criterion, "Interrupted while waiting for classifier worker", ex);
+        }
+    }
+
+    /** Reserve a unit of load of the least loaded healthy worker, waiting until the deadline if all are busy. */
+    private WorkerProcess reserve(String criterion, long deadline) {
+        this.capacity.lock();
+        try {
+            while (true) {
+                if (this.closed) {
+                    throw new UncheckedIOException(new IOException("Classifier worker pool is closed"));
+                }
+                WorkerProcess best = null;
+                for (int i = 0; i < this.workers.length(); i++) {
+                    WorkerProcess w = this.workers.get(i);
+                    if (w != null && w.isHealthy() && w.getLoad() < this.concurrency
+                            && (best == null || w.getLoad() < best.getLoad())) {
+                        best = w;
+                    }
+                }
+                if (best != null && best.tryReserve(this.concurrency)) {
+                    return best;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new UncheckedIOException(new IOException("No classifier worker available"));
+                }
+                try {
+                    this.released.awaitNanos(remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new ClassificationException(criterion, "Interrupted while waiting for classifier worker",
+                            ex);
+                }
+            }
+        } finally {
+            this.capacity.unlock();
+        }
+    }
+
+    private void released() {
+        this.capacity.lock();
+        try {
+            this.released.signalAll();
+        } finally {
+            this.capacity.unlock();
+        }
+    }
+
+    private void checkWorkers() {
+        for (int i = 0; i < this.workers.length() && !this.closed; i++) {
+            WorkerProcess w = this.workers.get(i);
+            if (w != null && w.check(HEALTH_CHECK_MILLIS * MISSED_CHECKS)) {
+                continue;
+            }
+            if (w != null) {
+                logger.warn("Classifier worker {} of {} failed, restarting it", i, this.factoryName);
+                w.close();
+                this.workers.set(i, null);
+            }
+            try {
+                WorkerProcess restarted = this.startWorker(i);
+                this.restarts.incrementAndGet();
+                this.workers.set(i, restarted);
+                if (this.closed) {
+                    restarted.close();
+                }
+                this.released();
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Failed to restart classifier worker {} of {}", i, this.factoryName, ex);
+            }
+        }
+    }
+
+    /**
+     * @return the number of worker processes currently healthy
+     */
+    public int getHealthyWorkers() {
+        int n = 0;
+        for (int i = 0; i < this.workers.length(); i++) {
+            WorkerProcess w = this.workers.get(i);
+            if (w != null && w.isHealthy()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of times a worker process was restarted
+     */
+    public long getRestarts() {
+        return this.restarts.get();
+    }
+
+    /**
+     * @return whether the pool was closed
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /** Stop all worker processes, failing the predictions in flight.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.health != null) {
+            this.health.shutdownNow();
+        }
+        for (int i = 0; i < this.workers.length(); i++) {
+            WorkerProcess w = this.workers.getAndSet(i, null);
+            if (w != null) {
+                w.close();
+            }
+        }
+        this.released();
+    }
+
+    private static String classPath(Class<?> factory, List<String> extra) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (Class<?> c : Arrays.asList(Worker.class, factory)) {
+            CodeSource source = c.getProtectionDomain().getCodeSource();
+            if (source != null && source.getLocation() != null) {
+                try {
+                    entries.add(Paths.get(source.getLocation().toURI()).toString());
+                } catch (URISyntaxException | RuntimeException ex) {
+                    logger.debug("Cannot locate the code source of {}", c.getName(), ex);
+                }
+            }
+        }
+        entries.addAll(extra);
+        String hostPath = System.getProperty("java.class.path", "");
+        if (!hostPath.isEmpty()) {
+            entries.addAll(Arrays.asList(hostPath.split(File.pathSeparator)));
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+}
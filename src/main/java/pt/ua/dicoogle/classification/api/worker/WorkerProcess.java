@@ -0,0 +1,372 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.worker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** The host side of one worker process: the process itself, its connection and its shared file.
+ * This class is thread-safe.
+ */
+final class WorkerProcess implements Closeable {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int index;
+    private final Process process;
+    private final Socket socket;
+    private final DataOutputStream out;
+    // guards out; not a monitor, so that virtual threads writing a request do not pin their carrier
+    private final ReentrantLock writing = new ReentrantLock();
+    private final Path sharedFile;
+    private final MappedByteBuffer shared;
+    private final int slotBytes;
+    private final BlockingQueue<Integer> freeSlots;
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger load = new AtomicInteger();
+    private final Runnable onRelease;
+    private volatile boolean healthy = true;
+    private volatile long lastPong = System.nanoTime();
+
+    /** The failure reported by a worker's classifier, as opposed to a failure of the worker itself. */
+    static final class ClassifierFailure extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ClassifierFailure(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Pending {
+        final CompletableFuture<Map<String, Double>> future = new CompletableFuture<>();
+        final int slot;
+
+        Pending(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    private WorkerProcess(int index, Process process, Socket socket, Path sharedFile, MappedByteBuffer shared,
+            int slots, int slotBytes, Runnable onRelease) throws IOException {
+        this.index = index;
+        this.onRelease = onRelease;
+        this.process = process;
+        this.socket = socket;
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.sharedFile = sharedFile;
+        this.shared = shared;
+        this.slotBytes = slotBytes;
+        this.freeSlots = new ArrayBlockingQueue<>(slots);
+        for (int i = 0; i < slots; i++) {
+            this.freeSlots.add(i);
+        }
+    }
+
+    /** Launch a worker process and wait until its classifier is ready.
+     *
+     * @param index the index of the worker in its pool, for naming
+     * @param command the command launching the JVM of the worker, up to and excluding the worker's arguments
+     * @param factory the name of the factory class
+     * @param args the factory arguments
+     * @param concurrency the number of concurrent predictions
+     * @param slotBytes the size of each slot of the shared file
+     * @param startTimeoutMillis the maximum time to wait for the worker to be ready
+     * @param onRelease called whenever a unit of the worker's load is released
+     * @return the worker process
+     * @throws IOException if the worker could not be started
+     */
+    static WorkerProcess start(int index, List<String> command, String factory, List<String> args,
+            int concurrency, int slotBytes, long startTimeoutMillis, Runnable onRelease) throws IOException {
+        Path sharedFile = Files.createTempFile("dicoogle-classifier-worker", ".shm");
+        Process process = null;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            MappedByteBuffer shared;
+            try (FileChannel ch = FileChannel.open(sharedFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                shared = ch.map(FileChannel.MapMode.READ_WRITE, 0, (long) concurrency * slotBytes);
+            }
+            String token = Long.toHexString(RANDOM.nextLong()) + Long.toHexString(RANDOM.nextLong());
+            List<String> cmd = new ArrayList<>(command);
+            cmd.add(String.valueOf(server.getLocalPort()));
+            cmd.add(sharedFile.toString());
+            // one slot per concurrent prediction
+            cmd.add(String.valueOf(concurrency));
+            cmd.add(String.valueOf(slotBytes));
+            cmd.add(String.valueOf(concurrency));
+            cmd.add(factory);
+            cmd.addAll(args);
+            ProcessBuilder pb = new ProcessBuilder(cmd).inheritIO();
+            pb.environment().put(Protocol.TOKEN_ENV, token);
+            process = pb.start();
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(startTimeoutMillis);
+            server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(1, startTimeoutMillis)));
+            Socket socket = server.accept();
+            try {
+                socket.setTcpNoDelay(true);
+                int remaining = (int) TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                socket.setSoTimeout(Math.max(1, remaining));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (!token.equals(in.readUTF())) {
+                    throw new IOException("Worker connection not authenticated");
+                }
+                // the classifier is being created
+                remaining = (int) TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                socket.setSoTimeout(Math.max(1, remaining));
+                if (in.readByte() != Protocol.READY) {
+                    throw new IOException("Unexpected message from worker");
+                }
+                socket.setSoTimeout(0);
+                WorkerProcess w = new WorkerProcess(index, process, socket, sharedFile, shared, concurrency,
+                        slotBytes, onRelease);
+                Thread reader = new Thread(() -> w.readReplies(in), "classifier-worker-" + index + "-reader");
+                reader.setDaemon(true);
+                reader.start();
+                return w;
+            } catch (IOException | RuntimeException ex) {
+                socket.close();
+                throw ex;
+            }
+        } catch (SocketTimeoutException ex) {
+            destroy(process);
+            Files.deleteIfExists(sharedFile);
+            throw new IOException("Worker " + index + " did not start in time", ex);
+        } catch (IOException | RuntimeException ex) {
+            destroy(process);
+            Files.deleteIfExists(sharedFile);
+            throw ex;
+        }
+    }
+
+    private void readReplies(DataInputStream in) {
+        try {
+            while (true) {
+                byte op = in.readByte();
+                long id = in.readLong();
+                if (op == Protocol.PONG) {
+                    this.lastPong = System.nanoTime();
+                    continue;
+                }
+                Map<String, Double> predictions = null;
+                String message = null;
+                if (op == Protocol.RESULT) {
+                    predictions = Protocol.readPredictions(in);
+                } else if (op == Protocol.ERROR) {
+                    message = in.readUTF();
+                } else {
+                    throw new IOException("Unexpected message from worker");
+                }
+                Pending p = this.pending.remove(id);
+                if (p == null) {
+                    continue;
+                }
+                // the worker is done with the slot, even if the caller gave up waiting
+                this.freeSlots.add(p.slot);
+                this.unreserve();
+                if (predictions != null) {
+                    p.future.complete(predictions);
+                } else {
+                    p.future.completeExceptionally(new ClassifierFailure(message));
+                }
+            }
+        } catch (IOException ex) {
+            this.fail("Worker " + this.index + " connection lost");
+        }
+    }
+
+    /** Submit a prediction. The caller must have reserved a unit of this worker's load (see {@link #tryReserve}),
+     * which is released once the worker replies or fails.
+     */
+    <B> CompletableFuture<Map<String, Double>> submit(String criterion, B item, DataPointCodec<B> codec)
+            throws IOException {
+        Integer slot = this.freeSlots.poll();
+        if (slot == null) {
+            this.unreserve();
+            throw new IllegalStateException("No free slot in worker " + this.index);
+        }
+        int length;
+        byte[] inline = null;
+        try {
+            length = codec.encodedLength(item);
+            if (length <= this.slotBytes) {
+                codec.encode(item, Protocol.slot(this.shared, slot, this.slotBytes, length));
+            } else {
+                ByteBuffer b = ByteBuffer.allocate(length).order(ByteOrder.nativeOrder());
+                codec.encode(item, b);
+                inline = b.array();
+            }
+        } catch (RuntimeException ex) {
+            this.freeSlots.add(slot);
+            this.unreserve();
+            throw ex;
+        }
+        long id = this.ids.incrementAndGet();
+        Pending p = new Pending(slot);
+        this.pending.put(id, p);
+        try {
+            this.writing.lock();
+            try {
+                this.out.writeByte(Protocol.PREDICT);
+                this.out.writeLong(id);
+                this.out.writeUTF(criterion);
+                this.out.writeInt(inline == null ? slot : Protocol.INLINE);
+                this.out.writeInt(length);
+                if (inline != null) {
+                    this.out.write(inline);
+                }
+                this.out.flush();
+            } finally {
+                this.writing.unlock();
+            }
+        } catch (IOException ex) {
+            this.fail("Worker " + this.index + " connection lost");
+            throw ex;
+        }
+        if (!this.healthy) {
+            // the worker may have failed before the request was registered
+            this.failPending("Worker " + this.index + " is down");
+        }
+        return p.future;
+    }
+
+    /** Reserve a unit of this worker's load, if it is healthy and below the given concurrency. */
+    boolean tryReserve(int concurrency) {
+        while (this.healthy) {
+            int l = this.load.get();
+            if (l >= concurrency) {
+                return false;
+            }
+            if (this.load.compareAndSet(l, l + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unreserve() {
+        this.load.decrementAndGet();
+        this.onRelease.run();
+    }
+
+    int getLoad() {
+        return this.load.get();
+    }
+
+    /** Send a health check, and check whether the last one was answered within the given time. */
+    boolean check(long timeoutMillis) {
+        if (!this.healthy || !this.process.isAlive()) {
+            this.fail("Worker " + this.index + " exited");
+            return false;
+        }
+        if (System.nanoTime() - this.lastPong > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+            this.fail("Worker " + this.index + " is not responding");
+            return false;
+        }
+        try {
+            this.writing.lock();
+            try {
+                this.out.writeByte(Protocol.PING);
+                this.out.writeLong(0);
+                this.out.flush();
+            } finally {
+                this.writing.unlock();
+            }
+        } catch (IOException ex) {
+            this.fail("Worker " + this.index + " connection lost");
+            return false;
+        }
+        return true;
+    }
+
+    boolean isHealthy() {
+        return this.healthy;
+    }
+
+    /** Mark this worker as failed, failing all pending requests. */
+    void fail(String message) {
+        this.healthy = false;
+        this.failPending(message);
+    }
+
+    private void failPending(String message) {
+        for (Long id : this.pending.keySet()) {
+            Pending p = this.pending.remove(id);
+            if (p != null) {
+                this.unreserve();
+                p.future.completeExceptionally(new IOException(message));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.fail("Worker " + this.index + " was shut down");
+        try {
+            this.socket.close();
+        } catch (IOException ex) {
+            // nothing else to do
+        }
+        try {
+            // closing the connection makes the worker exit on its own
+            if (!this.process.waitFor(1, TimeUnit.SECONDS)) {
+                destroy(this.process);
+            }
+        } catch (InterruptedException ex) {
+            destroy(this.process);
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Files.deleteIfExists(this.sharedFile);
+        } catch (IOException ex) {
+            // left to the temporary directory's cleanup
+        }
+    }
+
+    private static void destroy(Process process) {
+        if (process != null) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.net.URI;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Factory of Java Flight Recorder events for the classification pipeline, so that classification stalls can be
+ * correlated with garbage collection and I/O in a flight recording. Events carry the classifier name, the
+ * criterion, the item URI, byte counts and the outcome, and are grouped under "Dicoogle / Classification".
+ *
+ * This is the implementation for Java 11 or later runtimes, packaged in the versioned section of the
+ * multi-release jar. Events are only created while a recording has them enabled, for example with
+ * {@code -XX:StartFlightRecording} or {@code jcmd <pid> JFR.start}.
+ */
+public final class FlightEvents {
+
+    private FlightEvents() {}
+
+    /**
+     * @return whether this runtime can emit flight recorder events
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /** Start the event of a {@code query} call.
+     *
+     * @param classifier the name of the plugin
+     * @param criterion the classification criteria
+     * @return the started event
+     */
+    public static FlightEvent query(String classifier, String criterion) {
+        return StageEvent.start("QUERY", classifier, criterion);
+    }
+
+    /** Start the event of the classification of an item in storage.
+     *
+     * @param classifier the name of the plugin
+     * @param criterion the classification criteria
+     * @param item the URI of the item
+     * @return the started event
+     */
+    public static FlightEvent item(String classifier, String criterion, URI item) {
+        return StageEvent.start("ITEM", classifier, criterion).item(item);
+    }
+
+    /** Start the event of a stage of the pipeline.
+     *
+     * @param stage the stage
+     * @param classifier the name of the plugin or classifier, as in {@link MetricsRegistry}
+     * @param criterion the classification criterion
+     * @return the started event
+     */
+    public static FlightEvent stage(Stage stage, String classifier, String criterion) {
+        return StageEvent.start(stage.name(), classifier, criterion);
+    }
+
+    /** Start the event of loading a classifier instance.
+     *
+     * @param classifier the name of the classifier
+     * @param version the version of the classifier
+     * @return the started event
+     */
+    public static FlightEvent load(String classifier, String version) {
+        return LoadEvent.start(classifier, version);
+    }
+
+    @Name("pt.ua.dicoogle.classification.Stage")
+    @Label("Classification Stage")
+    @Description("A classification call, the classification of an item, or a stage of the pipeline")
+    @Category({"Dicoogle", "Classification"})
+    @StackTrace(false)
+    static final class StageEvent extends Event implements FlightEvent {
+        private static final EventType TYPE = EventType.getEventType(StageEvent.class);
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Classifier")
+        String classifier;
+
+        @Label("Criterion")
+        String criterion;
+
+        @Label("Item")
+        String item;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Outcome")
+        String outcome;
+
+        static FlightEvent start(String stage, String classifier, String criterion) {
+            if (!TYPE.isEnabled()) {
+                return FlightEvent.NONE;
+            }
+            StageEvent event = new StageEvent();
+            event.stage = stage;
+            event.classifier = classifier;
+            event.criterion = criterion;
+            event.begin();
+            return event;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return true;
+        }
+
+        @Override
+        public FlightEvent item(Object item) {
+            if (item instanceof URI || item instanceof String) {
+                this.item = item.toString();
+            }
+            return this;
+        }
+
+        @Override
+        public FlightEvent bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public void end(String outcome) {
+            this.end();
+            if (this.shouldCommit()) {
+                this.outcome = outcome;
+                this.commit();
+            }
+        }
+    }
+
+    @Name("pt.ua.dicoogle.classification.ClassifierLoad")
+    @Label("Classifier Load")
+    @Description("The creation of a classifier instance")
+    @Category({"Dicoogle", "Classification"})
+    static final class LoadEvent extends Event implements FlightEvent {
+        private static final EventType TYPE = EventType.getEventType(LoadEvent.class);
+
+        @Label("Classifier")
+        String classifier;
+
+        @Label("Version")
+        String version;
+
+        @Label("Outcome")
+        String outcome;
+
+        static FlightEvent start(String classifier, String version) {
+            if (!TYPE.isEnabled()) {
+                return FlightEvent.NONE;
+            }
+            LoadEvent event = new LoadEvent();
+            event.classifier = classifier;
+            event.version = version;
+            event.begin();
+            return event;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return true;
+        }
+
+        @Override
+        public FlightEvent item(Object item) {
+            return this;
+        }
+
+        @Override
+        public FlightEvent bytes(long bytes) {
+            return this;
+        }
+
+        @Override
+        public void end(String outcome) {
+            this.end();
+            if (this.shouldCommit()) {
+                this.outcome = outcome;
+                this.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Factory of executors running one classification per item, which spend most of their time blocked on storage
+ * reads. On Java 21 or later runtimes, the multi-release jar replaces this class with one creating a virtual
+ * thread per item, so that thousands of reads may be in flight without as many platform threads. CPU-bound work
+ * should be bounded separately, such as with the plugin's inference permits.
+ *
+ * This is the implementation for Java 21 or later runtimes, packaged in the versioned section of the
+ * multi-release jar.
+ */
+public final class ItemExecutors {
+
+    /** The number of platform threads per available processor in the fallback executor. */
+    public static final int FALLBACK_THREADS_PER_PROCESSOR = 8;
+
+    private ItemExecutors() {}
+
+    /**
+     * @return whether the executors created run each item on a virtual thread
+     */
+    public static boolean isVirtual() {
+        return true;
+    }
+
+    /** Create an executor for running one task per item.
+     *
+     * @param name the prefix of the names of the executor's threads
+     * @return a new executor, which should be shut down once no longer needed
+     */
+    public static ExecutorService newPerItemExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}
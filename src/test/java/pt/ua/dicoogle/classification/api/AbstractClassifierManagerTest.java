@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che2.data.BasicDicomObject;
+import org.dcm4che2.data.DicomObject;
+import org.junit.Assert;
+import org.junit.Test;
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+public class AbstractClassifierManagerTest {
+
+    /** A classifier predicting a fixed probability for class "yes". */
+    private static class FixedClassifier implements ClassifierInterface<Object> {
+        private final double p;
+        int calls = 0;
+        volatile long delayMillis = 0;
+        volatile boolean failing = false;
+        volatile Object[] lastParameters = null;
+        volatile int errorAfter = -1;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        FixedClassifier(double p) {
+            this.p = p;
+        }
+
+        @Override
+        public Map<String, Double> predict(String criterion, Object item, Object... parameters) {
+            calls++;
+            lastParameters = parameters;
+            if (errorAfter >= 0 && calls > errorAfter) {
+                throw new AssertionError("Broken model");
+            }
+            if (failing) {
+                throw new ClassificationException(criterion, "Unavailable");
+            }
+            if (delayMillis > 0) {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+            }
+            Map<String, Double> m = new HashMap<>();
+            m.put("yes", p);
+            m.put("no", 1 - p);
+            return m;
+        }
+    }
+
+    private static class Descriptor implements ClassifierDescriptor {
+        final String name;
+        final double p;
+        final String cascadeTarget;
+        final Collection<String> criteria;
+        String version = "0";
+        int warmupIterations = 0;
+        int poolSize = 1;
+        long poolIdleTimeoutMillis = 60_000;
+        Collection<String> dependsOn = Collections.emptyList();
+
+        Descriptor(String name, double p, String cascadeTarget, String... criteria) {
+            this.name = name;
+            this.p = p;
+            this.cascadeTarget = cascadeTarget;
+            this.criteria = Arrays.asList(criteria);
+        }
+
+        @Override
+        public int getWarmupIterations() {
+            return warmupIterations;
+        }
+
+        @Override
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        @Override
+        public long getPoolIdleTimeoutMillis() {
+            return poolIdleTimeoutMillis;
+        }
+
+        @Override
+        public String getVersion() {
+            return version;
+        }
+
+        @Override
+        public Collection<String> getDependsOn() {
+            return dependsOn;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Collection<String> getCriteria() {
+            return criteria;
+        }
+
+        @Override
+        public boolean isPreload() {
+            return true;
+        }
+
+        @Override
+        public String getCascadeTarget() {
+            return cascadeTarget;
+        }
+
+        @Override
+        public double getCascadeThreshold() {
+            return 0.8;
+        }
+    }
+
+    private static class Manager extends AbstractClassifierManager<FixedClassifier, Object, Descriptor> {
+        final Map<String, FixedClassifier> created = new HashMap<>();
+        final List<FixedClassifier> released = new ArrayList<>();
+        volatile int errorAfter = -1;
+
+        @Override
+        protected FixedClassifier createClassifier(Descriptor descriptor) {
+            FixedClassifier c = new FixedClassifier(descriptor.p);
+            c.errorAfter = errorAfter;
+            created.put(descriptor.getName(), c);
+            return c;
+        }
+
+        @Override
+        protected List<Object> warmupSamples(Descriptor descriptor) {
+            return Arrays.asList("a", "b", "c");
+        }
+
+        @Override
+        protected void releaseClassifier(FixedClassifier classifier) {
+            released.add(classifier);
+        }
+
+        @Override
+        protected boolean canClassify(String criterion, DicomObject obj, Object... parameters) {
+            return true;
+        }
+
+        @Override
+        protected Object toDataPoint(DicomObject dicomObject) {
+            return dicomObject;
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+    }
+
+    @Test
+    public void testCascadeConfident() {
+        Manager m = new Manager();
+        m.register(new Descriptor("cheap", 0.9, "heavy", "c"));
+        m.register(new Descriptor("heavy", 0.6, null, "c"));
+        Map<String, Double> out = m.predict("c", new Object());
+        Assert.assertEquals(0.9, out.get("cheap#yes"), 1e-9);
+        Assert.assertFalse(out.containsKey("heavy#yes"));
+        Assert.assertEquals(0, m.created.get("heavy").calls);
+    }
+
+    @Test
+    public void testCascadeEscalates() {
+        Manager m = new Manager();
+        // registration order does not matter
+        m.register(new Descriptor("heavy", 0.99, null, "c"));
+        m.register(new Descriptor("cheap", 0.6, "heavy", "c"));
+        Map<String, Double> out = m.predict("c", new Object());
+        // the cascade answers under the name of its head
+        Assert.assertEquals(0.99, out.get("cheap#yes"), 1e-9);
+        Assert.assertFalse(out.containsKey("heavy#yes"));
+        Assert.assertEquals(1, m.created.get("cheap").calls);
+        Assert.assertEquals(1, m.created.get("heavy").calls);
+    }
+
+    @Test
+    public void testCascadeUnknownTarget() {
+        Manager m = new Manager();
+        m.register(new Descriptor("cheap", 0.6, "missing", "c"));
+        Map<String, Double> out = m.predict("c", new Object());
+        Assert.assertEquals(0.6, out.get("cheap#yes"), 1e-9);
+    }
+
+    @Test
+    public void testSwap() throws Exception {
+        Manager m = new Manager();
+        Descriptor v1 = new Descriptor("model", 0.6, null, "c");
+        v1.version = "1";
+        m.register(v1);
+        FixedClassifier first = m.created.get("model");
+        Assert.assertEquals("1", m.getVersion("model"));
+
+        Descriptor v2 = new Descriptor("model", 0.7, null, "c");
+        v2.version = "2";
+        m.swap(v2, Runnable::run).get();
+        Assert.assertEquals("2", m.getVersion("model"));
+        Assert.assertEquals(0.7, m.predict("c", new Object()).get("model#yes"), 1e-9);
+        // the previous version was idle, so it was released right away
+        Assert.assertEquals(1, m.released.size());
+        Assert.assertSame(first, m.released.get(0));
+    }
+
+    @Test
+    public void testWarmup() {
+        Manager m = new Manager();
+        Descriptor d = new Descriptor("model", 0.6, null, "c");
+        d.warmupIterations = 20;
+        m.register(d);
+        Assert.assertEquals(20, m.created.get("model").calls);
+        LoadStatus status = m.getLoadStatus("model").get();
+        Assert.assertEquals(20, status.getWarmupIterations());
+        Assert.assertTrue(status.getSteadyStateNanos() >= 0);
+        Assert.assertTrue(status.getWarmupNanos() >= 0);
+
+        Manager cold = new Manager();
+        cold.register(new Descriptor("model", 0.6, null, "c"));
+        Assert.assertEquals(0, cold.created.get("model").calls);
+        Assert.assertEquals(0, cold.getLoadStatus("model").get().getWarmupIterations());
+    }
+
+    @Test
+    public void testWarmupError() throws Exception {
+        Manager m = new Manager();
+        m.errorAfter = 5;
+        Descriptor d = new Descriptor("model", 0.6, null, "c");
+        d.warmupIterations = 20;
+        d.poolSize = 2;
+        m.register(d);
+        // an Error during warm-up still leaves a load status
+        Assert.assertEquals(5, m.getLoadStatus("model").get().getWarmupIterations());
+
+        // the warm-up of another pooled instance does not replace the status of the generation
+        FixedClassifier core = m.created.get("model");
+        core.errorAfter = -1;
+        core.delayMillis = 200;
+        m.errorAfter = -1;
+        Thread t = new Thread(() -> m.predict("c", new Object()));
+        t.start();
+        Thread.sleep(50);
+        m.predict("c", new Object());
+        t.join();
+        Assert.assertNotSame(core, m.created.get("model"));
+        Assert.assertEquals(5, m.getLoadStatus("model").get().getWarmupIterations());
+    }
+
+    @Test
+    public void testPoolEviction() throws Exception {
+        Manager m = new Manager();
+        Descriptor d = new Descriptor("model", 0.6, null, "c");
+        d.poolSize = 2;
+        d.poolIdleTimeoutMillis = 300;
+        m.register(d);
+        FixedClassifier core = m.created.get("model");
+        core.delayMillis = 200;
+        Thread other = new Thread(() -> m.predict("c", new Object()));
+        other.start();
+        Thread.sleep(50);
+        m.predict("c", new Object());
+        other.join();
+        Assert.assertFalse(core == m.created.get("model"));
+        Assert.assertTrue(m.released.isEmpty());
+
+        // the additional instance is evicted without further predictions
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (m.released.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, m.released.size());
+        Assert.assertSame(m.created.get("model"), m.released.get(0));
+    }
+
+    @Test
+    public void testVersionStamps() throws Exception {
+        Manager m = new Manager();
+        Descriptor organ = new Descriptor("organ", 0.9, null, "organ");
+        organ.version = "1";
+        Descriptor liver = new Descriptor("liver", 0.9, null, "liver");
+        liver.dependsOn = Collections.singletonList("organ");
+        m.register(liver);
+        m.register(organ);
+        m.register(new Descriptor("modality", 0.9, "modality-heavy", "modality"));
+        m.register(new Descriptor("modality-heavy", 0.9, null, "modality"));
+        Assert.assertNull(m.getVersionStamp("missing"));
+        String organStamp = m.getVersionStamp("organ");
+        String liverStamp = m.getVersionStamp("liver");
+        String modalityStamp = m.getVersionStamp("modality");
+
+        Descriptor organ2 = new Descriptor("organ", 0.9, null, "organ");
+        organ2.version = "2";
+        m.swap(organ2, Runnable::run).get();
+        // the stamps of the classifier and of those depending on it change
+        Assert.assertFalse(organStamp.equals(m.getVersionStamp("organ")));
+        Assert.assertFalse(liverStamp.equals(m.getVersionStamp("liver")));
+        Assert.assertEquals(modalityStamp, m.getVersionStamp("modality"));
+
+        Assert.assertEquals(Arrays.asList("organ", "liver"), m.getAffectedClassifiers(Collections.singleton("organ")));
+        Assert.assertEquals(Collections.singletonList("liver"),
+                m.getAffectedClassifiers(Collections.singleton("liver")));
+        Assert.assertEquals("liver", m.getCriterionOf("liver").get());
+
+        // replacing a cascade target changes the stamp of its head
+        Descriptor heavy2 = new Descriptor("modality-heavy", 0.9, null, "modality");
+        heavy2.version = "2";
+        m.swap(heavy2, Runnable::run).get();
+        Assert.assertFalse(modalityStamp.equals(m.getVersionStamp("modality")));
+        Assert.assertEquals(Arrays.asList("modality", "modality-heavy"),
+                m.getAffectedClassifiers(Collections.singleton("modality-heavy")));
+    }
+
+    @Test
+    public void testInferencePermits() {
+        Manager m = new Manager();
+        m.register(new Descriptor("model", 0.6, null, "c"));
+        FixedClassifier c = m.created.get("model");
+        c.delayMillis = 20;
+        m.setInferencePermits(2);
+        List<CompletableFuture<Collection<SearchResult>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(m.queryAsync("c", new BasicDicomObject()));
+        }
+        for (CompletableFuture<Collection<SearchResult>> f : futures) {
+            Assert.assertEquals(2, f.join().size());
+        }
+        Assert.assertEquals(2, c.maxActive.get());
+        m.getItemExecutor().shutdown();
+
+        // the default executor bounds inference to the available processors, unless bounded before
+        Manager d = new Manager();
+        d.register(new Descriptor("model", 0.6, null, "c"));
+        Assert.assertEquals(2, d.queryAsync("c", new BasicDicomObject()).join().size());
+        Assert.assertEquals(Runtime.getRuntime().availableProcessors(), d.getInferencePermits());
+        d.getItemExecutor().shutdown();
+    }
+
+    @Test
+    public void testPartialFailure() {
+        Manager m = new Manager();
+        m.register(new Descriptor("organ-net", 0.9, null, "organ"));
+        m.register(new Descriptor("modality-net", 0.9, null, "modality"));
+        m.created.get("modality-net").failing = true;
+        try {
+            m.predict("organ,modality", new Object());
+            Assert.fail("Expected a partial failure");
+        } catch (PartialClassificationException ex) {
+            Assert.assertEquals(0.9, ex.getPredictions().get("organ-net#yes"), 1e-9);
+            Assert.assertEquals(1, ex.getFailures().size());
+            Assert.assertEquals("modality-net", ex.getFailures().get(0).getCriterion());
+        }
+        // the valid outputs and one error output
+        Assert.assertEquals(3, m.query("organ,modality", new BasicDicomObject()).size());
+        Assert.assertEquals(1, m.query("modality", new BasicDicomObject()).size());
+    }
+
+    @Test
+    public void testRequestClassStripped() {
+        Manager m = new Manager();
+        m.register(new Descriptor("organ-net", 0.9, null, "organ"));
+        Map<String, Double> out = m.predict("organ", new Object(), "upstream", RequestClass.BULK);
+        Assert.assertEquals(0.9, out.get("organ-net#yes"), 1e-9);
+        // the request class is for scheduling only
+        Assert.assertArrayEquals(new Object[] {"upstream"}, m.created.get("organ-net").lastParameters);
+    }
+}
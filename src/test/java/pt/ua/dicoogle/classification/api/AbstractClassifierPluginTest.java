@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ua.dicoogle.classification.api.util.CircuitBreaker;
+import pt.ua.dicoogle.classification.api.util.ContentCache;
+import pt.ua.dicoogle.classification.api.util.EncodedDicom;
+import pt.ua.dicoogle.classification.api.util.ScalableBloomFilter;
+import pt.ua.dicoogle.sdk.StorageInputStream;
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+public class AbstractClassifierPluginTest {
+
+    private static final URI ITEM = URI.create("mem:/study/1.dcm");
+    private static final PredictionIdentifier LIVER = new PredictionIdentifier("organ-net", "organ", "liver");
+
+    /** A plugin whose items are kept in memory, predicting a fixed score. */
+    private static class OrganPlugin extends AbstractClassifierPlugin<float[]> {
+        final AtomicInteger checks = new AtomicInteger();
+        final AtomicInteger conversions = new AtomicInteger();
+        final AtomicInteger predictions = new AtomicInteger();
+        volatile byte[] content = encode("1.2.3.1");
+        volatile IOException storageFailure = null;
+        volatile IOException conversionFailure = null;
+        volatile boolean accepting = true;
+        volatile boolean parameterIndependent = false;
+        volatile boolean direct = false;
+        volatile boolean streaming = false;
+        final List<byte[]> pixelData = Collections.synchronizedList(new ArrayList<>());
+        volatile int[] seriesTags = null;
+        volatile Object[] lastConditionParameters = null;
+
+        @Override
+        protected boolean canClassify(String criterion, DicomObject obj, Object... parameters) {
+            this.checks.incrementAndGet();
+            this.lastConditionParameters = parameters;
+            return this.accepting;
+        }
+
+        @Override
+        protected float[] toDataPoint(DicomObject dicomObject) throws IOException {
+            this.conversions.incrementAndGet();
+            if (this.conversionFailure != null) {
+                throw this.conversionFailure;
+            }
+            byte[] pixels = dicomObject.getBytes(Tag.PixelData);
+            if (pixels != null) {
+                this.pixelData.add(pixels.clone());
+            }
+            return new float[] {1, 2};
+        }
+
+        @Override
+        protected int[] getSeriesScopedTags(String criterion) {
+            return this.seriesTags;
+        }
+
+        @Override
+        protected boolean isFrameStreaming(String criterion) {
+            return this.streaming;
+        }
+
+        @Override
+        protected boolean isDirectPixelData(String criterion) {
+            return this.direct;
+        }
+
+        @Override
+        protected boolean isPredictionParameterIndependent(String criterion) {
+            return this.parameterIndependent;
+        }
+
+        @Override
+        public Map<String, Double> predict(String criterion, float[] item, Object... parameters) {
+            this.predictions.incrementAndGet();
+            return Collections.singletonMap(criterion + "#liver", 0.9);
+        }
+
+        @Override
+        public String getName() {
+            return "organ-net";
+        }
+
+        @Override
+        protected Optional<StorageInputStream> fromStorage(URI item) {
+            return Optional.of(new StorageInputStream() {
+                @Override
+                public URI getURI() {
+                    return item;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    if (storageFailure != null) {
+                        throw storageFailure;
+                    }
+                    return new ByteArrayInputStream(content);
+                }
+
+                @Override
+                public long getSize() {
+                    return content.length;
+                }
+            });
+        }
+    }
+
+    private static byte[] encode(String sopInstanceUID) {
+        return new EncodedDicom()
+                .ui(Tag.SOPInstanceUID, sopInstanceUID)
+                .ui(Tag.SeriesInstanceUID, "1.2.3")
+                .us(Tag.Rows, 1)
+                .us(Tag.Columns, 2)
+                .pixelData(new byte[] {1, 0, 2, 0})
+                .toByteArray();
+    }
+
+    private static List<SearchResult> query(OrganPlugin plugin, String criterion) {
+        return query(plugin, criterion, ITEM);
+    }
+
+    private static List<SearchResult> query(OrganPlugin plugin, String criterion, URI item, Object... rest) {
+        Object[] parameters = new Object[rest.length + 1];
+        parameters[0] = item;
+        System.arraycopy(rest, 0, parameters, 1, rest.length);
+        return new ArrayList<>(plugin.query(criterion, parameters));
+    }
+
+    @Test
+    public void testStorageFailure() {
+        OrganPlugin plugin = new OrganPlugin();
+        PredictionIndex index = new PredictionIndex();
+        plugin.setPredictionIndex(index);
+
+        List<SearchResult> results = query(plugin, "organ");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(0.9, results.get(0).getScore(), 1e-9);
+        Assert.assertEquals(1, index.atLeast(LIVER, 0.5).size());
+
+        // a failed read is an error of the criterion, not an item without predictions
+        plugin.storageFailure = new IOException("storage is gone");
+        results = query(plugin, "organ");
+        Assert.assertEquals(1, results.size());
+        Assert.assertTrue(Double.isNaN(results.get(0).getScore()));
+        Assert.assertEquals(1, index.atLeast(LIVER, 0.5).size());
+        Assert.assertEquals(ITEM, index.atLeast(LIVER, 0.5).get(0).getItem());
+        try {
+            plugin.predict("organ", ITEM);
+            Assert.fail("expected a classification exception");
+        } catch (ClassificationException ex) {
+            Assert.assertEquals("organ", ex.getCriterion());
+        }
+        Assert.assertEquals(1, plugin.predictions.get());
+    }
+
+    @Test
+    public void testSeriesMemo() {
+        OrganPlugin plugin = new OrganPlugin();
+        plugin.seriesTags = new int[] {Tag.Rows};
+
+        // a rejection holds for the rest of the series
+        plugin.accepting = false;
+        Assert.assertTrue(query(plugin, "organ", URI.create("mem:/study/1.dcm")).isEmpty());
+        Assert.assertTrue(query(plugin, "organ", URI.create("mem:/study/2.dcm")).isEmpty());
+        Assert.assertEquals(1, plugin.checks.get());
+        Assert.assertEquals(0, plugin.conversions.get());
+
+        // a failed conversion is tried again on the next item
+        plugin.accepting = true;
+        plugin.conversionFailure = new IOException("cannot convert");
+        Assert.assertTrue(query(plugin, "spleen", URI.create("mem:/study/1.dcm")).isEmpty());
+        Assert.assertTrue(query(plugin, "spleen", URI.create("mem:/study/2.dcm")).isEmpty());
+        Assert.assertEquals(2, plugin.conversions.get());
+        Assert.assertEquals(0, plugin.predictions.get());
+
+        plugin.conversionFailure = null;
+        Assert.assertEquals(1, query(plugin, "spleen", URI.create("mem:/study/3.dcm")).size());
+        Assert.assertEquals(1, query(plugin, "spleen", URI.create("mem:/study/4.dcm")).size());
+        Assert.assertEquals(1, plugin.predictions.get());
+    }
+
+    @Test
+    public void testDeduplication() {
+        OrganPlugin plugin = new OrganPlugin();
+        ContentCache<Map<String, Double>> cache = new ContentCache<>();
+        plugin.setContentCache(cache);
+
+        Assert.assertEquals(1, query(plugin, "organ", URI.create("mem:/study/1.dcm")).size());
+        // the same pixel data under another SOP Instance UID
+        plugin.content = encode("1.2.3.2");
+        Assert.assertEquals(1, query(plugin, "organ", URI.create("mem:/study/2.dcm")).size());
+        Assert.assertEquals(1, plugin.predictions.get());
+        Assert.assertEquals(1, cache.size());
+
+        // other parameters may lead to other predictions
+        Assert.assertEquals(1, query(plugin, "organ", URI.create("mem:/study/2.dcm"), "fast").size());
+        Assert.assertEquals(2, plugin.predictions.get());
+        Assert.assertEquals(1, query(plugin, "organ", URI.create("mem:/study/1.dcm"), "fast").size());
+        Assert.assertEquals(2, plugin.predictions.get());
+
+        plugin.parameterIndependent = true;
+        Assert.assertEquals(1, query(plugin, "organ", URI.create("mem:/study/1.dcm"), "slow").size());
+        Assert.assertEquals(2, plugin.predictions.get());
+
+        // other pixel data
+        plugin.content = new EncodedDicom()
+                .us(Tag.Rows, 1)
+                .us(Tag.Columns, 2)
+                .pixelData(new byte[] {3, 0, 4, 0})
+                .toByteArray();
+        Assert.assertEquals(1, query(plugin, "organ", URI.create("mem:/study/3.dcm")).size());
+        Assert.assertEquals(3, plugin.predictions.get());
+    }
+
+    @Test
+    public void testDamagedItem() {
+        OrganPlugin plugin = new OrganPlugin();
+        byte[] full = plugin.content;
+        plugin.content = Arrays.copyOf(full, full.length - 2);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(query(plugin, "organ").isEmpty());
+        }
+        // a truncated file is not a failure of the storage
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, plugin.getStorageBreaker(ITEM).getState());
+
+        plugin.storageFailure = new IOException("storage is gone");
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(1, query(plugin, "organ").size());
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, plugin.getStorageBreaker(ITEM).getState());
+        Assert.assertEquals(0, plugin.predictions.get());
+    }
+
+    @Test
+    public void testDirectPixelDataFallback() {
+        OrganPlugin plugin = new OrganPlugin();
+        plugin.direct = true;
+        List<SearchResult> results = query(plugin, "organ");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(0.9, results.get(0).getScore(), 1e-9);
+        // the pixel data was put back in the object
+        Assert.assertArrayEquals(new byte[] {1, 0, 2, 0}, plugin.pixelData.get(0));
+        Assert.assertEquals(1, plugin.conversions.get());
+    }
+
+    @Test
+    public void testFrameFallback() {
+        OrganPlugin plugin = new OrganPlugin();
+        plugin.streaming = true;
+        plugin.content = new EncodedDicom()
+                .is(Tag.NumberOfFrames, 2)
+                .us(Tag.Rows, 1)
+                .us(Tag.Columns, 2)
+                .pixelData(new byte[] {1, 0, 2, 0})
+                .toByteArray();
+        List<SearchResult> results = query(plugin, "organ");
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(0.9, results.get(0).getScore(), 1e-9);
+        // each frame was classified on its own
+        Assert.assertEquals(2, plugin.predictions.get());
+        Assert.assertEquals(2, plugin.pixelData.size());
+        Assert.assertArrayEquals(new byte[] {1, 0}, plugin.pixelData.get(0));
+        Assert.assertArrayEquals(new byte[] {2, 0}, plugin.pixelData.get(1));
+    }
+
+    @Test
+    public void testRequestClassNotKeyed() {
+        OrganPlugin plugin = new OrganPlugin();
+        plugin.setNegativeCache(new ScalableBloomFilter(1000, 0.001));
+        plugin.accepting = false;
+        Assert.assertTrue(query(plugin, "organ", ITEM, "fast").isEmpty());
+        Assert.assertArrayEquals(new Object[] {"fast"}, plugin.lastConditionParameters);
+        // the same request in bulk is rejected from the negative cache
+        Assert.assertTrue(query(plugin, "organ", ITEM, "fast", RequestClass.BULK).isEmpty());
+        Assert.assertEquals(1, plugin.checks.get());
+
+        plugin.accepting = true;
+        plugin.setContentCache(new ContentCache<>());
+        Assert.assertEquals(1, query(plugin, "spleen", ITEM, "fast", RequestClass.BULK).size());
+        Assert.assertArrayEquals(new Object[] {"fast"}, plugin.lastConditionParameters);
+        Assert.assertEquals(1, query(plugin, "spleen", ITEM, "fast").size());
+        Assert.assertEquals(1, plugin.predictions.get());
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameReducerTest {
+
+    private static Map<String, Double> frame(double a, double b) {
+        Map<String, Double> m = new HashMap<>();
+        m.put("a", a);
+        m.put("b", b);
+        return m;
+    }
+
+    private static Map<String, Double> reduce(FrameReducer reducer) {
+        FrameReducer.Accumulator acc = reducer.accumulator();
+        acc.add(frame(0.1, 0.9));
+        acc.add(frame(0.7, 0.3));
+        acc.add(frame(0.4, 0.6));
+        Assert.assertEquals(3, acc.getFrames());
+        return acc.result();
+    }
+
+    @Test
+    public void testMax() {
+        Map<String, Double> r = reduce(FrameReducer.MAX);
+        Assert.assertEquals(0.7, r.get("a"), 1e-9);
+        Assert.assertEquals(0.9, r.get("b"), 1e-9);
+    }
+
+    @Test
+    public void testMin() {
+        Map<String, Double> r = reduce(FrameReducer.MIN);
+        Assert.assertEquals(0.1, r.get("a"), 1e-9);
+        Assert.assertEquals(0.3, r.get("b"), 1e-9);
+    }
+
+    @Test
+    public void testMean() {
+        Map<String, Double> r = reduce(FrameReducer.MEAN);
+        Assert.assertEquals(0.4, r.get("a"), 1e-9);
+        Assert.assertEquals(0.6, r.get("b"), 1e-9);
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(FrameReducer.MEAN.accumulator().result().isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che2.data.BasicDicomObject;
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.data.VR;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import pt.ua.dicoogle.classification.api.util.ItemExecutors;
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+/** Checks the executors of the versioned section of the multi-release jar. This runs as an integration test
+ * against the packaged jar, as the versioned classes are not picked from the classes directory, and is skipped
+ * on runtimes older than Java 21.
+ */
+public class ItemExecutorsIT {
+
+    /** A plugin recording whether its predictions ran on a virtual thread. */
+    private static class ThreadPlugin extends AbstractClassifierPlugin<float[]> {
+        volatile Boolean virtual = null;
+
+        @Override
+        protected boolean canClassify(String criterion, DicomObject obj, Object... parameters) {
+            return true;
+        }
+
+        @Override
+        protected float[] toDataPoint(DicomObject dicomObject) {
+            return new float[] {1, 2};
+        }
+
+        @Override
+        public Map<String, Double> predict(String criterion, float[] item, Object... parameters) {
+            try {
+                this.virtual = (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+            } catch (ReflectiveOperationException ex) {
+                throw new AssertionError(ex);
+            }
+            return Collections.singletonMap(criterion + "#liver", 0.9);
+        }
+
+        @Override
+        public String getName() {
+            return "thread-net";
+        }
+    }
+
+    private static int featureVersion() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        return Integer.parseInt(version);
+    }
+
+    @Test
+    public void testVirtualItemExecutor() throws Exception {
+        Assume.assumeTrue("Virtual thread executors require Java 21", featureVersion() >= 21);
+        Assert.assertTrue(ItemExecutors.isVirtual());
+
+        ThreadPlugin plugin = new ThreadPlugin();
+        DicomObject item = new BasicDicomObject();
+        item.putString(Tag.SOPInstanceUID, VR.UI, "1.2.3.1");
+        try {
+            CompletableFuture<Collection<SearchResult>> future = plugin.queryAsync("organ", item);
+            List<SearchResult> results = new ArrayList<>(future.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, results.size());
+            Assert.assertEquals(0.9, results.get(0).getScore(), 1e-9);
+            Assert.assertEquals(Boolean.TRUE, plugin.virtual);
+        } finally {
+            plugin.getItemExecutor().shutdown();
+        }
+    }
+}
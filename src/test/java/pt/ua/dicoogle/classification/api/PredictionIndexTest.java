@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PredictionIndexTest {
+
+    private static final PredictionIdentifier LIVER = new PredictionIdentifier("organ-net", "organ", "liver");
+
+    private static URI item(int i) {
+        return URI.create("file:/data/" + i + ".dcm");
+    }
+
+    @Test
+    public void testThresholdAndTop() {
+        PredictionIndex index = new PredictionIndex(4);
+        Random random = new Random(7);
+        float[] scores = new float[1000];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextFloat();
+            index.put(LIVER, item(i), scores[i]);
+        }
+        int expected = 0;
+        for (float s : scores) {
+            if (s >= 0.8) {
+                expected++;
+            }
+        }
+        List<PredictionIndex.Hit> hits = index.atLeast(LIVER, 0.8);
+        Assert.assertEquals(expected, hits.size());
+        for (int i = 1; i < hits.size(); i++) {
+            Assert.assertTrue(hits.get(i - 1).getScore() >= hits.get(i).getScore());
+        }
+        List<PredictionIndex.Hit> top = index.top(LIVER, 10);
+        Assert.assertEquals(10, top.size());
+        Assert.assertEquals(hits.subList(0, 10).toString(), top.toString());
+        Assert.assertTrue(index.atLeast(new PredictionIdentifier("organ-net", "organ", "lung"), 0).isEmpty());
+    }
+
+    @Test
+    public void testUpdates() {
+        PredictionIndex index = new PredictionIndex(2);
+        for (int i = 0; i < 10; i++) {
+            index.put(LIVER, item(i), i / 10.0);
+        }
+        // raise the lowest, remove the highest
+        index.put(LIVER, item(0), 0.95);
+        index.remove(LIVER, item(9));
+        index.update(item(5), "organ-net", Collections.singletonMap("organ#liver", 0.05));
+
+        List<PredictionIndex.Hit> top = index.top(LIVER, 3);
+        Assert.assertEquals(item(0), top.get(0).getItem());
+        Assert.assertEquals(item(8), top.get(1).getItem());
+        Assert.assertEquals(item(7), top.get(2).getItem());
+        Assert.assertEquals(9, index.atLeast(LIVER, 0).size());
+        Assert.assertEquals(0.05, index.atLeast(LIVER, 0).get(8).getScore(), 1e-6);
+        // error outputs are not indexed
+        index.update(item(20), "organ-net", Collections.singletonMap("organ#liver", Double.NaN));
+        Assert.assertEquals(9, index.atLeast(LIVER, 0).size());
+        // nor is negative zero
+        index.put(LIVER, item(21), -0.0);
+        Assert.assertEquals(9, index.atLeast(LIVER, 0).size());
+    }
+
+    @Test
+    public void testReplace() {
+        PredictionIdentifier lung = new PredictionIdentifier("organ-net", "organ", "lung");
+        PredictionIdentifier ct = new PredictionIdentifier("organ-net", "modality", "CT");
+        PredictionIndex index = new PredictionIndex(2);
+        Map<String, Double> predictions = new TreeMap<>();
+        predictions.put("organ#liver", 0.9);
+        predictions.put("modality#CT", 0.8);
+        index.update(item(0), "organ-net", predictions);
+        index.update(item(1), "organ-net", predictions);
+
+        // classes no longer predicted for a criterion drop the item, other criteria are left alone
+        index.update(item(0), "organ-net", Collections.singletonMap("organ#lung", 0.7));
+        Assert.assertEquals(1, index.atLeast(LIVER, 0).size());
+        Assert.assertEquals(1, index.atLeast(lung, 0).size());
+        Assert.assertEquals(2, index.atLeast(ct, 0).size());
+
+        // empty predictions of a criterion remove the item from all of its classes
+        index.update(item(0), "organ-net", Collections.singleton("organ"), Collections.emptyMap(),
+                Collections.singletonMap("organ", "organ@2"));
+        Assert.assertTrue(index.atLeast(lung, 0).isEmpty());
+        Assert.assertEquals(1, index.atLeast(LIVER, 0).size());
+        Assert.assertEquals(2, index.atLeast(ct, 0).size());
+        Assert.assertEquals("organ@2", index.getStamp(item(0), "organ-net", "organ"));
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        PredictionIndex index = new PredictionIndex();
+        TreeMap<String, Double> predictions = new TreeMap<>();
+        predictions.put("organ#liver", 0.9);
+        predictions.put("organ#lung", 0.1);
+        for (int i = 0; i < 200; i++) {
+            index.update(item(i), "organ-net", predictions);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+        PredictionIndex loaded = PredictionIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(index.getPredictions(), loaded.getPredictions());
+        Assert.assertEquals(200, loaded.getItemCount());
+        Assert.assertEquals(index.atLeast(LIVER, 0.5).toString(), loaded.atLeast(LIVER, 0.5).toString());
+        // equal scores compress to a byte per delta
+        Assert.assertTrue(loaded.sizeInBytes() < 200 * 2 * 4);
+
+        // the classes of the loaded items are known to updates
+        loaded.update(item(0), "organ-net", Collections.singletonMap("organ#lung", 0.7));
+        Assert.assertEquals(199, loaded.atLeast(LIVER, 0.5).size());
+        Assert.assertEquals(item(0), loaded.top(new PredictionIdentifier("organ-net", "organ", "lung"), 1).get(0)
+                .getItem());
+    }
+
+    @Test
+    public void testStamps() throws IOException {
+        PredictionIndex index = new PredictionIndex();
+        Map<String, Double> predictions = Collections.singletonMap("organ#liver", 0.9);
+        for (int i = 0; i < 10; i++) {
+            String version = i < 4 ? "organ@2" : "organ@1";
+            index.update(item(i), "organ-net", Collections.singleton("organ"), predictions,
+                    Collections.singletonMap("organ", version));
+        }
+        Assert.assertEquals("organ@2", index.getStamp(item(0), "organ-net", "organ"));
+        Assert.assertEquals("organ@1", index.getStamp(item(9), "organ-net", "organ"));
+        Assert.assertNull(index.getStamp(item(0), "organ-net", "modality"));
+        Assert.assertNull(index.getStamp(item(10), "organ-net", "organ"));
+
+        List<URI> stale = index.getStale("organ-net", "organ", "organ@2");
+        Assert.assertEquals(6, stale.size());
+        Assert.assertEquals(item(4), stale.get(0));
+        Assert.assertEquals(10, index.getStale("organ-net", "organ", "organ@3").size());
+        Assert.assertTrue(index.getStale("organ-net", "modality", "organ@2").isEmpty());
+
+        index.stamp(item(4), "organ-net", "organ", "organ@2");
+        Assert.assertEquals(5, index.getStale("organ-net", "organ", "organ@2").size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+        PredictionIndex loaded = PredictionIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(index.getStale("organ-net", "organ", "organ@2"),
+                loaded.getStale("organ-net", "organ", "organ@2"));
+        Assert.assertEquals("organ@2", loaded.getStamp(item(4), "organ-net", "organ"));
+    }
+}
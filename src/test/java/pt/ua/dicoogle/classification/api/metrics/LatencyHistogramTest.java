@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 65, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long v : values) {
+            int i = LatencyHistogram.indexOf(v);
+            long high = LatencyHistogram.highestValueOf(i);
+            Assert.assertTrue("value " + v + " above its bucket", v <= high);
+            Assert.assertTrue("bucket of " + v + " too wide", high - v <= v / 32);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        Assert.assertEquals(0, h.getValueAtPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000L);
+        }
+        Assert.assertEquals(1000, h.getCount());
+        Assert.assertEquals(1_000_000, h.getMax());
+        Assert.assertEquals(500_500, h.getMean(), 1e-6);
+        long p50 = h.getValueAtPercentile(50);
+        Assert.assertTrue(p50 >= 500_000 && p50 <= 500_000 * 33 / 32);
+        long p99 = h.getValueAtPercentile(99);
+        Assert.assertTrue(p99 >= 990_000 && p99 <= 990_000 * 33 / 32);
+        Assert.assertEquals(1_000_000, h.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimedInputStreamTest {
+
+    @Test
+    public void testMarkAndReset() throws IOException {
+        TimedInputStream in = new TimedInputStream(new BufferedInputStream(new ByteArrayInputStream(new byte[100])));
+        Assert.assertEquals(10, in.read(new byte[10]));
+        in.mark(50);
+        Assert.assertEquals(20, in.read(new byte[20]));
+        Assert.assertEquals(0, in.read());
+        Assert.assertEquals(31, in.getBytes());
+
+        // bytes read again after a reset are counted once
+        in.reset();
+        Assert.assertEquals(30, in.read(new byte[30]));
+        Assert.assertEquals(40, in.getBytes());
+        Assert.assertEquals(10, in.skip(10));
+        Assert.assertEquals(50, in.getBytes());
+        Assert.assertTrue(in.getNanos() >= 0);
+    }
+}
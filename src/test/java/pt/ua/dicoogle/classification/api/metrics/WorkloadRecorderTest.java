@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ua.dicoogle.classification.api.RequestClass;
+import pt.ua.dicoogle.sdk.datastructs.SearchResult;
+
+public class WorkloadRecorderTest {
+
+    @Test
+    public void testRecordFormat() {
+        long[] stages = new long[Stage.values().length];
+        stages[Stage.PREDICT.ordinal()] = 1200;
+        stages[Stage.STORAGE_READ.ordinal()] = 35;
+        WorkloadRecord r = new WorkloadRecord(1500000000000L, "organ-net", "organ,modality", "file:/a.dcm",
+                "uri,map:2,BULK", 7, 1, 1300, stages);
+        WorkloadRecord parsed = WorkloadRecord.parse(r.format());
+        Assert.assertEquals(r, parsed);
+        Assert.assertEquals(1200, parsed.getStageMicros(Stage.PREDICT));
+        Assert.assertEquals(0, parsed.getStageMicros(Stage.ADAPT));
+
+        WorkloadRecord empty = new WorkloadRecord(0, "c", "x", null, "-", 0, 0, 0, new long[stages.length]);
+        Assert.assertEquals(empty, WorkloadRecord.parse(empty.format()));
+
+        Assert.assertEquals("uri,map:0,BULK",
+                WorkloadRecord.shapeOf(URI.create("file:/a.dcm"), Collections.emptyMap(), RequestClass.BULK));
+    }
+
+    @Test
+    public void testRecorder() throws IOException {
+        StringWriter out = new StringWriter();
+        InMemoryMetricsRegistry delegate = new InMemoryMetricsRegistry();
+        WorkloadRecorder recorder = new WorkloadRecorder(out, delegate);
+        Object[] parameters = {URI.create("file:/a.dcm")};
+        recorder.queryStarted("plugin", "organ", parameters);
+        recorder.recordLatency("organ-net", "organ", Stage.PREDICT, 2000000);
+        // nested calls are folded into the outer one
+        recorder.queryStarted("plugin", "organ", parameters);
+        recorder.queryFinished("plugin", "organ", Collections.emptyList());
+        recorder.recordLatency("organ-net", "organ", Stage.PREDICT, 1000000);
+        recorder.queryFinished("plugin", "organ", Collections.singletonList(
+                new SearchResult(URI.create("class://organ-net/organ#liver"), 0.5, new HashMap<>())));
+        // outside of a call, measurements are only passed on
+        recorder.recordLatency("organ-net", "organ", Stage.PREDICT, 1000000);
+        recorder.flush();
+
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(1, lines.length);
+        WorkloadRecord r = WorkloadRecord.parse(lines[0]);
+        Assert.assertEquals("file:/a.dcm", r.getItem());
+        Assert.assertEquals("uri", r.getShape());
+        Assert.assertEquals(1, r.getResults());
+        Assert.assertEquals(0, r.getErrors());
+        Assert.assertEquals(3000, r.getStageMicros(Stage.PREDICT));
+        Assert.assertEquals(3, delegate.getLatency("organ-net", "organ", Stage.PREDICT).get().getCount());
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ByteBufferInputStreamTest {
+
+    @Test
+    public void testRead() throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, (byte) 0xff});
+        ByteBufferInputStream in = new ByteBufferInputStream(source);
+        Assert.assertEquals(1, in.read());
+        byte[] b = new byte[3];
+        Assert.assertEquals(3, in.read(b, 0, 3));
+        Assert.assertArrayEquals(new byte[]{2, 3, 4}, b);
+        Assert.assertEquals(2, in.available());
+        in.mark(0);
+        Assert.assertEquals(1, in.skip(1));
+        Assert.assertEquals(0xff, in.read());
+        Assert.assertEquals(-1, in.read());
+        Assert.assertEquals(-1, in.read(b, 0, 3));
+        in.reset();
+        Assert.assertEquals(5, in.read());
+        // the source buffer is left untouched
+        Assert.assertEquals(0, source.position());
+    }
+}
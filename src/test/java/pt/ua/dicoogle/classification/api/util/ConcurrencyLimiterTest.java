@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testFixedLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 0, false);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.acquire(0));
+        Assert.assertFalse(limiter.tryAcquire());
+        // no room in the queue
+        Assert.assertFalse(limiter.acquire(0));
+        Assert.assertEquals(2, limiter.getInFlight());
+
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testQueueTimeout() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, false);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.acquire(20));
+        Assert.assertEquals(0, limiter.getQueueLength());
+    }
+
+    @Test
+    public void testWaiterIsWoken() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, false);
+        Assert.assertTrue(limiter.tryAcquire());
+        boolean[] acquired = new boolean[1];
+        Thread t = new Thread(() -> {
+            try {
+                acquired[0] = limiter.acquire(5000);
+            } catch (InterruptedException ex) {
+                // leave as not acquired
+            }
+        });
+        t.start();
+        while (limiter.getQueueLength() == 0) {
+            Thread.sleep(1);
+        }
+        limiter.release(1000);
+        t.join();
+        Assert.assertTrue(acquired[0]);
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testAdaptiveShrinks() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(16, 0, true);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(1_000_000);
+        }
+        Assert.assertEquals(16, limiter.getLimit());
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(20_000_000);
+        }
+        Assert.assertTrue(limiter.getLimit() < 16);
+        Assert.assertTrue(limiter.getLimit() >= 1);
+    }
+
+    private static Thread waiter(ConcurrencyLimiter limiter, boolean bulk, String id, List<String> order)
+            throws InterruptedException {
+        int queued = limiter.getQueueLength();
+        Thread t = new Thread(() -> {
+            try {
+                if (limiter.acquire(5000, bulk)) {
+                    order.add(id);
+                }
+            } catch (InterruptedException ex) {
+                // leave as not acquired
+            }
+        });
+        t.start();
+        while (limiter.getQueueLength() == queued) {
+            Thread.sleep(1);
+        }
+        return t;
+    }
+
+    @Test
+    public void testBulkYields() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, false);
+        List<String> order = new CopyOnWriteArrayList<>();
+        Assert.assertTrue(limiter.tryAcquire());
+        Thread bulk = waiter(limiter, true, "bulk", order);
+        Thread interactive = waiter(limiter, false, "interactive", order);
+        // bulk callers do not jump the queue either
+        Assert.assertFalse(limiter.tryAcquire(true));
+
+        limiter.release();
+        interactive.join();
+        Assert.assertEquals("interactive", order.get(0));
+        limiter.release();
+        bulk.join();
+        Assert.assertEquals("bulk", order.get(1));
+    }
+
+    @Test
+    public void testBulkIsNotStarved() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, false, 1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        Assert.assertTrue(limiter.tryAcquire());
+        Thread bulk = waiter(limiter, true, "bulk", order);
+        Thread first = waiter(limiter, false, "first", order);
+        limiter.release();
+        first.join();
+        Thread second = waiter(limiter, false, "second", order);
+        // one regular grant was made while bulk waited, so bulk goes next
+        limiter.release();
+        bulk.join();
+        limiter.release();
+        second.join();
+        Assert.assertEquals(java.util.Arrays.asList("first", "bulk", "second"), order);
+    }
+}
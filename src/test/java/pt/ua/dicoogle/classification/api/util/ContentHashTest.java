@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ContentHashTest {
+
+    @Test
+    public void testKnownValues() {
+        Assert.assertEquals("00000000000000000000000000000000", new ContentHash().digest());
+        Assert.assertEquals("cbd8a7b341bd9b025b1e906a48ae1d19",
+                new ContentHash().update("hello".getBytes(StandardCharsets.UTF_8)).digest());
+    }
+
+    @Test
+    public void testStreaming() {
+        byte[] data = new byte[1000];
+        new Random(3).nextBytes(data);
+        String whole = new ContentHash().update(data).digest();
+
+        ContentHash pieces = new ContentHash();
+        int[] sizes = {1, 7, 15, 16, 17, 100, 3};
+        int off = 0;
+        for (int i = 0; off < data.length; i++) {
+            int n = Math.min(sizes[i % sizes.length], data.length - off);
+            if (i % 2 == 0) {
+                pieces.update(data, off, n);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(n);
+                buffer.put(data, off, n);
+                buffer.flip();
+                pieces.update(buffer);
+            }
+            off += n;
+        }
+        Assert.assertEquals(whole, pieces.digest());
+
+        data[999] ^= 1;
+        Assert.assertFalse(whole.equals(new ContentHash().update(data).digest()));
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.data.TransferSyntax;
+import org.dcm4che2.io.DicomInputStream;
+import org.dcm4che2.io.StopTagInputHandler;
+
+/** A writer of small data sets in Explicit VR Little Endian, for tests reading pixel data from a stream.
+ * Elements must be added in ascending tag order.
+ */
+public final class EncodedDicom {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    public EncodedDicom us(int tag, int value) {
+        header(tag, "US");
+        short16(2);
+        short16(value);
+        return this;
+    }
+
+    public EncodedDicom is(int tag, int value) {
+        byte[] s = Integer.toString(value).getBytes(StandardCharsets.US_ASCII);
+        header(tag, "IS");
+        short16(s.length + s.length % 2);
+        out.write(s, 0, s.length);
+        if (s.length % 2 != 0) {
+            out.write(' ');
+        }
+        return this;
+    }
+
+    public EncodedDicom ui(int tag, String value) {
+        byte[] s = value.getBytes(StandardCharsets.US_ASCII);
+        header(tag, "UI");
+        short16(s.length + s.length % 2);
+        out.write(s, 0, s.length);
+        if (s.length % 2 != 0) {
+            out.write(0);
+        }
+        return this;
+    }
+
+    /** Add native pixel data. */
+    public EncodedDicom pixelData(byte[] value) {
+        header(Tag.PixelData, "OW");
+        short16(0);
+        int32(value.length);
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    /** Add encapsulated pixel data.
+     *
+     * @param offsets the basic offset table, which may be empty
+     * @param fragments the fragments following the offset table
+     */
+    public EncodedDicom encapsulated(int[] offsets, byte[]... fragments) {
+        header(Tag.PixelData, "OB");
+        short16(0);
+        int32(-1);
+        item(Tag.Item, offsets.length * 4);
+        for (int o : offsets) {
+            int32(o);
+        }
+        for (byte[] f : fragments) {
+            item(Tag.Item, f.length);
+            out.write(f, 0, f.length);
+        }
+        item(Tag.SequenceDelimitationItem, 0);
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    /** Open a stream over the data set, which stops right after the header of the pixel data. */
+    public DicomInputStream open() throws IOException {
+        DicomInputStream in = new DicomInputStream(new ByteArrayInputStream(toByteArray()),
+                TransferSyntax.ExplicitVRLittleEndian);
+        in.setHandler(new StopTagInputHandler(Tag.PixelData));
+        return in;
+    }
+
+    private void header(int tag, String vr) {
+        short16(tag >>> 16);
+        short16(tag);
+        out.write(vr.charAt(0));
+        out.write(vr.charAt(1));
+    }
+
+    private void item(int tag, int length) {
+        short16(tag >>> 16);
+        short16(tag);
+        int32(length);
+    }
+
+    private void short16(int v) {
+        out.write(v);
+        out.write(v >> 8);
+    }
+
+    private void int32(int v) {
+        short16(v);
+        short16(v >> 16);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.IOException;
+
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.io.DicomInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameReaderTest {
+
+    private static EncodedDicom image(int frames, int rows, int columns) {
+        return new EncodedDicom()
+                .us(Tag.SamplesPerPixel, 1)
+                .is(Tag.NumberOfFrames, frames)
+                .us(Tag.Rows, rows)
+                .us(Tag.Columns, columns)
+                .us(Tag.BitsAllocated, 8);
+    }
+
+    private static FrameReader reader(EncodedDicom dicom) throws IOException {
+        DicomInputStream in = dicom.open();
+        DicomObject header = in.readDicomObject();
+        return new FrameReader(in, header);
+    }
+
+    private static void assertFrame(int index, byte[] data, Frame frame) {
+        Assert.assertNotNull(frame);
+        Assert.assertEquals(index, frame.getIndex());
+        Assert.assertArrayEquals(data, frame.getData());
+    }
+
+    @Test
+    public void testNative() throws IOException {
+        FrameReader reader = reader(image(3, 1, 2).pixelData(new byte[]{1, 2, 3, 4, 5, 6}));
+        Assert.assertFalse(reader.isEncapsulated());
+        Assert.assertEquals(3, reader.getNumberOfFrames());
+        Frame first = reader.next(null);
+        assertFrame(0, new byte[]{1, 2}, first);
+        Assert.assertFalse(first.isEncapsulated());
+        // a spare array of the right length is reused
+        byte[] spare = first.getData();
+        Frame second = reader.next(spare);
+        assertFrame(1, new byte[]{3, 4}, second);
+        Assert.assertSame(spare, second.getData());
+        assertFrame(2, new byte[]{5, 6}, reader.next(new byte[3]));
+        Assert.assertNull(reader.next(null));
+    }
+
+    @Test
+    public void testOffsetTable() throws IOException {
+        // the second frame starts at the third fragment, after 8 + 2 and 8 + 1 bytes
+        FrameReader reader = reader(image(2, 1, 3).encapsulated(new int[]{0, 19},
+                new byte[]{1, 2}, new byte[]{3}, new byte[]{4, 5, 6}));
+        Assert.assertTrue(reader.isEncapsulated());
+        Frame first = reader.next(null);
+        assertFrame(0, new byte[]{1, 2, 3}, first);
+        Assert.assertTrue(first.isEncapsulated());
+        assertFrame(1, new byte[]{4, 5, 6}, reader.next(null));
+        Assert.assertNull(reader.next(null));
+    }
+
+    @Test
+    public void testNoOffsetTable() throws IOException {
+        // one fragment per frame
+        FrameReader reader = reader(image(3, 1, 1).encapsulated(new int[0],
+                new byte[]{1}, new byte[]{2, 2}, new byte[]{3}));
+        assertFrame(0, new byte[]{1}, reader.next(null));
+        assertFrame(1, new byte[]{2, 2}, reader.next(null));
+        assertFrame(2, new byte[]{3}, reader.next(null));
+        Assert.assertNull(reader.next(null));
+
+        // all fragments of a single frame are joined
+        reader = reader(image(1, 1, 4).encapsulated(new int[0], new byte[]{1, 2}, new byte[]{3, 4}));
+        assertFrame(0, new byte[]{1, 2, 3, 4}, reader.next(null));
+        Assert.assertNull(reader.next(null));
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.IOException;
+
+import org.dcm4che2.data.BasicDicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.data.VR;
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ua.dicoogle.classification.api.InputSpec;
+import pt.ua.dicoogle.classification.api.InputSpec.PixelType;
+import pt.ua.dicoogle.classification.api.InputSpec.Resampling;
+
+public class InputDecoderTest {
+
+    private static BasicDicomObject image(int rows, int columns, int samplesPerPixel, int bitsAllocated,
+            byte[] pixels) {
+        BasicDicomObject obj = new BasicDicomObject();
+        obj.putInt(Tag.Rows, VR.US, rows);
+        obj.putInt(Tag.Columns, VR.US, columns);
+        obj.putInt(Tag.SamplesPerPixel, VR.US, samplesPerPixel);
+        obj.putInt(Tag.BitsAllocated, VR.US, bitsAllocated);
+        obj.putString(Tag.PhotometricInterpretation, VR.CS, samplesPerPixel == 3 ? "RGB" : "MONOCHROME2");
+        obj.putBytes(Tag.PixelData, bitsAllocated == 8 ? VR.OB : VR.OW, pixels);
+        return obj;
+    }
+
+    /** Little endian 16-bit samples. */
+    private static byte[] words(int... values) {
+        byte[] b = new byte[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            b[i * 2] = (byte) values[i];
+            b[i * 2 + 1] = (byte) (values[i] >> 8);
+        }
+        return b;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] b = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            b[i] = (byte) values[i];
+        }
+        return b;
+    }
+
+    private static float[] decode(InputSpec spec, BasicDicomObject obj) throws IOException {
+        return new InputDecoder(spec).decodeFloat(obj, 0, null);
+    }
+
+    private static int[] unsigned(byte[] b) {
+        int[] v = new int[b.length];
+        for (int i = 0; i < b.length; i++) {
+            v[i] = b[i] & 0xff;
+        }
+        return v;
+    }
+
+    @Test
+    public void testBitsStored() throws IOException {
+        // the bits above BitsStored are not part of the value
+        BasicDicomObject obj = image(1, 3, 1, 16, words(0xF800, 0xA7FF, 0x5001));
+        obj.putInt(Tag.BitsStored, VR.US, 12);
+        InputSpec spec = new InputSpec(3, 1, 1, PixelType.FLOAT32);
+        Assert.assertArrayEquals(new float[]{2048, 2047, 1}, decode(spec, obj), 0);
+
+        obj.putInt(Tag.PixelRepresentation, VR.US, 1);
+        Assert.assertArrayEquals(new float[]{-2048, 2047, 1}, decode(spec, obj), 0);
+    }
+
+    @Test
+    public void testPlanarConfiguration() throws IOException {
+        byte[] pixels = bytes(10, 11, 20, 21, 30, 31);
+        InputSpec spec = new InputSpec(2, 1, 3, PixelType.FLOAT32);
+
+        BasicDicomObject interleaved = image(1, 2, 3, 8, pixels);
+        Assert.assertArrayEquals(new float[]{10, 11, 20, 21, 30, 31}, decode(spec, interleaved), 0);
+
+        BasicDicomObject planar = image(1, 2, 3, 8, pixels);
+        planar.putInt(Tag.PlanarConfiguration, VR.US, 1);
+        Assert.assertArrayEquals(new float[]{10, 20, 30, 11, 21, 31}, decode(spec, planar), 0);
+
+        // color channels are averaged into gray levels, and gray levels are replicated
+        Assert.assertArrayEquals(new float[]{20, 21},
+                decode(new InputSpec(2, 1, 1, PixelType.FLOAT32), planar), 1e-5f);
+        BasicDicomObject gray = image(1, 2, 1, 8, bytes(7, 9));
+        Assert.assertArrayEquals(new float[]{7, 7, 7, 9, 9, 9}, decode(spec, gray), 0);
+    }
+
+    @Test
+    public void testResampling() throws IOException {
+        byte[] pixels = new byte[16];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) i;
+        }
+        BasicDicomObject obj = image(4, 4, 1, 8, pixels);
+        InputSpec spec = new InputSpec(2, 2, 1, PixelType.FLOAT32);
+        // the pixels nearest to the output pixel centers
+        Assert.assertArrayEquals(new float[]{5, 7, 13, 15}, decode(spec, obj), 0);
+        // the mean of each 2x2 block
+        Assert.assertArrayEquals(new float[]{2.5f, 4.5f, 10.5f, 12.5f},
+                decode(spec.withResampling(Resampling.AREA), obj), 0);
+
+        // upsampling repeats pixels with either method
+        BasicDicomObject small = image(1, 2, 1, 8, bytes(1, 2));
+        InputSpec wide = new InputSpec(4, 1, 1, PixelType.FLOAT32);
+        Assert.assertArrayEquals(new float[]{1, 1, 2, 2}, decode(wide, small), 0);
+        Assert.assertArrayEquals(new float[]{1, 1, 2, 2}, decode(wide.withResampling(Resampling.AREA), small), 0);
+    }
+
+    @Test
+    public void testNormalization() throws IOException {
+        BasicDicomObject obj = image(1, 3, 1, 8, bytes(0, 51, 255));
+        InputDecoder bytes = new InputDecoder(new InputSpec(3, 1, 1, PixelType.UINT8));
+        InputDecoder floats = new InputDecoder(new InputSpec(3, 1, 1, PixelType.FLOAT32));
+        // bytes map the range of stored values to [0, 255], floats keep the values without a window
+        Assert.assertArrayEquals(new int[]{0, 51, 255}, unsigned(bytes.decodeBytes(obj, 0, null)));
+        Assert.assertArrayEquals(new float[]{0, 51, 255}, floats.decodeFloat(obj, 0, null), 0);
+
+        BasicDicomObject signed = image(1, 3, 1, 8, bytes(-128, 0, 127));
+        signed.putInt(Tag.PixelRepresentation, VR.US, 1);
+        Assert.assertArrayEquals(new int[]{0, 128, 255}, unsigned(bytes.decodeBytes(signed, 0, null)));
+        Assert.assertArrayEquals(new float[]{-128, 0, 127}, floats.decodeFloat(signed, 0, null), 0);
+
+        // output arrays of the right length are reused
+        byte[] out = new byte[3];
+        Assert.assertSame(out, bytes.decodeBytes(obj, 0, out));
+        Assert.assertEquals(3, bytes.decodeBytes(obj, 0, new byte[2]).length);
+    }
+
+    @Test
+    public void testRescaleAndWindow() throws IOException {
+        // a CT slice with stored values for -1024, 0 and 40 HU
+        BasicDicomObject obj = image(1, 3, 1, 16, words(0, 1024, 1064));
+        obj.putString(Tag.RescaleSlope, VR.DS, "1");
+        obj.putString(Tag.RescaleIntercept, VR.DS, "-1024");
+        InputSpec spec = new InputSpec(3, 1, 1, PixelType.FLOAT32);
+        Assert.assertArrayEquals(new float[]{-1024, 0, 40}, decode(spec, obj), 0);
+
+        // the linear VOI function, clamped to [0, 1]
+        float[] expected = {0, (float) ((0 - 39.5) / 399 + 0.5), (float) ((40 - 39.5) / 399 + 0.5)};
+        Assert.assertArrayEquals(expected, decode(spec.withWindow(40, 400), obj), 1e-6f);
+
+        // the window declared in the object, if any
+        Assert.assertArrayEquals(new float[]{-1024, 0, 40}, decode(spec.withObjectWindow(), obj), 0);
+        obj.putString(Tag.WindowCenter, VR.DS, "40\\50");
+        obj.putString(Tag.WindowWidth, VR.DS, "400\\500");
+        Assert.assertArrayEquals(expected, decode(spec.withObjectWindow(), obj), 1e-6f);
+
+        obj.putString(Tag.RescaleSlope, VR.DS, "2");
+        Assert.assertArrayEquals(new float[]{-1024, 1024, 1104}, decode(spec, obj), 0);
+    }
+
+    @Test
+    public void testMonochrome1() throws IOException {
+        BasicDicomObject obj = image(1, 3, 1, 8, bytes(0, 51, 255));
+        obj.putString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME1");
+        InputSpec spec = new InputSpec(3, 1, 1, PixelType.UINT8);
+        Assert.assertArrayEquals(new int[]{255, 204, 0},
+                unsigned(new InputDecoder(spec).decodeBytes(obj, 0, null)));
+        // windowed values are inverted as well, unlike plain rescaled values
+        InputSpec floats = new InputSpec(3, 1, 1, PixelType.FLOAT32);
+        Assert.assertArrayEquals(new float[]{1, (float) (0.5 - (51 - 127.0) / 199), 0},
+                decode(floats.withWindow(127.5, 200), obj), 1e-6f);
+        Assert.assertArrayEquals(new float[]{0, 51, 255}, decode(floats, obj), 0);
+    }
+
+    @Test
+    public void testFrames() throws IOException {
+        BasicDicomObject obj = image(1, 2, 1, 16, words(1, 2, 3, 4, 5, 6));
+        obj.putInt(Tag.NumberOfFrames, VR.IS, 3);
+        InputDecoder decoder = new InputDecoder(new InputSpec(2, 1, 1, PixelType.FLOAT32));
+        Assert.assertArrayEquals(new float[]{3, 4}, decoder.decodeFloat(obj, 1, null), 0);
+        Assert.assertArrayEquals(new float[]{5, 6}, decoder.decodeFloat(obj, 2, null), 0);
+        try {
+            decoder.decodeFloat(obj, 3, null);
+            Assert.fail("Frame out of bounds was decoded");
+        } catch (IndexOutOfBoundsException ex) {
+            // ok
+        }
+
+        // pixel data shorter than the declared frames
+        obj.putInt(Tag.NumberOfFrames, VR.IS, 4);
+        try {
+            decoder.decodeFloat(obj, 3, null);
+            Assert.fail("Missing frame was decoded");
+        } catch (IOException ex) {
+            // ok
+        }
+    }
+}
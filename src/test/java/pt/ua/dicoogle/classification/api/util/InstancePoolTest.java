@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InstancePoolTest {
+
+    @Test
+    public void testLazyCreation() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        List<Object> disposed = new ArrayList<>();
+        Object core = new Object();
+        InstancePool<Object> pool = new InstancePool<>(() -> core, () -> {
+            created.incrementAndGet();
+            return new Object();
+        }, disposed::add, 2, 60_000);
+
+        Assert.assertEquals(0, pool.size());
+        Object a = pool.borrow();
+        Assert.assertSame(core, a);
+        Assert.assertEquals(0, created.get());
+        pool.release(a);
+
+        // reuses the idle instance
+        Assert.assertSame(core, pool.borrow());
+        Object b = pool.borrow();
+        Assert.assertNotSame(core, b);
+        Assert.assertEquals(1, created.get());
+        Assert.assertEquals(2, pool.size());
+
+        pool.release(b);
+        pool.release(core);
+        Assert.assertEquals(2, pool.idleCount());
+        Assert.assertTrue(disposed.isEmpty());
+    }
+
+    @Test
+    public void testIdleEviction() throws InterruptedException {
+        List<Object> disposed = new ArrayList<>();
+        Object core = new Object();
+        InstancePool<Object> pool = new InstancePool<>(() -> core, Object::new, disposed::add, 3, 0);
+
+        Object a = pool.borrow();
+        Object b = pool.borrow();
+        pool.release(b);
+        pool.release(a);
+        pool.evictIdle();
+
+        // only the core instance remains
+        Assert.assertEquals(1, pool.size());
+        Assert.assertEquals(1, disposed.size());
+        Assert.assertSame(b, disposed.get(0));
+        Assert.assertSame(core, pool.borrow());
+    }
+
+    @Test
+    public void testClearDiscardsBorrowed() throws InterruptedException {
+        List<Object> disposed = new ArrayList<>();
+        InstancePool<Object> pool = new InstancePool<>(Object::new, Object::new, disposed::add, 2, 60_000);
+
+        Object a = pool.borrow();
+        Object b = pool.borrow();
+        pool.clear();
+        Assert.assertEquals(0, pool.size());
+        pool.release(b);
+        pool.release(a);
+        Assert.assertEquals(1, disposed.size());
+        Assert.assertEquals(0, pool.idleCount());
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.dcm4che2.data.DicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.io.DicomInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PixelDataBufferTest {
+
+    /** Two frames of 1x2 16-bit samples, from 1 to 4. */
+    private static EncodedDicom image() {
+        return new EncodedDicom()
+                .us(Tag.SamplesPerPixel, 1)
+                .is(Tag.NumberOfFrames, 2)
+                .us(Tag.Rows, 1)
+                .us(Tag.Columns, 2)
+                .us(Tag.BitsAllocated, 16)
+                .us(Tag.BitsStored, 12)
+                .us(Tag.PixelRepresentation, 1)
+                .pixelData(new byte[]{1, 0, 2, 0, 3, 0, 4, 0});
+    }
+
+    private static void assertPixels(PixelDataBuffer pixels) {
+        Assert.assertEquals(2, pixels.getFrames());
+        Assert.assertEquals(1, pixels.getRows());
+        Assert.assertEquals(2, pixels.getColumns());
+        Assert.assertEquals(16, pixels.getBitsAllocated());
+        Assert.assertEquals(12, pixels.getBitsStored());
+        Assert.assertTrue(pixels.isSigned());
+        Assert.assertTrue(pixels.isDirect());
+        Assert.assertEquals(ByteOrder.LITTLE_ENDIAN, pixels.getByteOrder());
+        Assert.assertEquals(4, pixels.getFrameLength());
+        Assert.assertEquals(8, pixels.getBuffer().remaining());
+        ByteBuffer frame = pixels.getFrame(1);
+        Assert.assertEquals(4, frame.remaining());
+        Assert.assertEquals(3, frame.getShort(0));
+        Assert.assertEquals(4, frame.getShort(2));
+        try {
+            pixels.getFrame(2);
+            Assert.fail("Frame out of bounds was returned");
+        } catch (IndexOutOfBoundsException ex) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        DicomInputStream in = image().open();
+        DicomObject header = in.readDicomObject();
+        PixelDataBuffer pixels = PixelDataBuffer.read(in, header);
+        assertPixels(pixels);
+        Assert.assertEquals(8, pixels.getBuffer().capacity());
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        ByteBuffer spare = ByteBuffer.allocateDirect(64);
+        DicomInputStream in = image().open();
+        PixelDataBuffer pixels = PixelDataBuffer.read(in, in.readDicomObject(), spare);
+        assertPixels(pixels);
+        // the whole capacity is kept for the next item
+        Assert.assertEquals(64, pixels.getBuffer().capacity());
+        spare.put(4, (byte) 9);
+        Assert.assertEquals(9, pixels.getFrame(1).getShort(0));
+
+        // buffers which are too small or on the heap are not reused
+        in = image().open();
+        pixels = PixelDataBuffer.read(in, in.readDicomObject(), ByteBuffer.allocateDirect(4));
+        assertPixels(pixels);
+        Assert.assertEquals(8, pixels.getBuffer().capacity());
+        in = image().open();
+        pixels = PixelDataBuffer.read(in, in.readDicomObject(), ByteBuffer.allocate(64));
+        assertPixels(pixels);
+    }
+
+    @Test
+    public void testSlice() throws IOException {
+        byte[] encoded = image().toByteArray();
+        ByteBuffer mapped = ByteBuffer.allocateDirect(encoded.length);
+        mapped.put(encoded).flip();
+        DicomInputStream in = image().open();
+        PixelDataBuffer pixels = PixelDataBuffer.slice(in, mapped, in.readDicomObject());
+        Assert.assertNotNull(pixels);
+        assertPixels(pixels);
+        // the pixel data is not copied
+        mapped.put(encoded.length - 4, (byte) 9);
+        Assert.assertEquals(9, pixels.getFrame(1).getShort(0));
+
+        // a mapping which does not match the stream is declined
+        in = image().open();
+        mapped.position(2);
+        Assert.assertNull(PixelDataBuffer.slice(in, mapped, in.readDicomObject()));
+    }
+}
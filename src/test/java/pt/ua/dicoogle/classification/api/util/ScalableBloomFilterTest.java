@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScalableBloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        for (int i = 0; i < 5000; i++) {
+            filter.add("file:/data/" + i + ".dcm");
+        }
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertTrue(filter.mightContain("file:/data/" + i + ".dcm"));
+        }
+        Assert.assertTrue(filter.size() <= 5000);
+        Assert.assertTrue(filter.size() > 4900);
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 20000; i++) {
+            filter.add("in" + i);
+        }
+        int positives = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (filter.mightContain("out" + i)) {
+                positives++;
+            }
+        }
+        // bounded by twice the initial rate, with some slack
+        Assert.assertTrue("false positives: " + positives, positives < 20000 * 0.03);
+    }
+
+    @Test
+    public void testAdd() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01);
+        Assert.assertFalse(filter.mightContain("a"));
+        Assert.assertTrue(filter.add("a"));
+        Assert.assertFalse(filter.add("a"));
+        Assert.assertTrue(filter.mightContain("a"));
+        filter.clear();
+        Assert.assertFalse(filter.mightContain("a"));
+        Assert.assertEquals(0, filter.size());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(50, 0.001);
+        for (int i = 0; i < 500; i++) {
+            filter.add("k" + i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        ScalableBloomFilter copy = ScalableBloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(filter.size(), copy.size());
+        Assert.assertEquals(filter.sizeInBytes(), copy.sizeInBytes());
+        for (int i = 0; i < 500; i++) {
+            Assert.assertTrue(copy.mightContain("k" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(filter.mightContain("x" + i), copy.mightContain("x" + i));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalid() throws IOException {
+        ScalableBloomFilter.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che2.data.BasicDicomObject;
+import org.dcm4che2.data.Tag;
+import org.dcm4che2.data.VR;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SeriesCacheTest {
+
+    private static BasicDicomObject slice(String series, String modality) {
+        BasicDicomObject obj = new BasicDicomObject();
+        obj.putString(Tag.SeriesInstanceUID, VR.UI, series);
+        obj.putString(Tag.Modality, VR.CS, modality);
+        return obj;
+    }
+
+    @Test
+    public void testSameSeries() {
+        SeriesCache<String> cache = new SeriesCache<>(16, 60_000);
+        AtomicInteger calls = new AtomicInteger();
+        int[] tags = {Tag.Modality};
+        for (int i = 0; i < 10; i++) {
+            String v = cache.computeIfAbsent("c", slice("1.2.3", "CT"), tags,
+                    o -> o.getString(Tag.Modality) + calls.incrementAndGet());
+            Assert.assertEquals("CT1", v);
+        }
+        Assert.assertEquals(1, calls.get());
+
+        // different attribute values, scope or series are computed separately
+        cache.computeIfAbsent("c", slice("1.2.3", "MR"), tags, o -> "x" + calls.incrementAndGet());
+        cache.computeIfAbsent("d", slice("1.2.3", "CT"), tags, o -> "x" + calls.incrementAndGet());
+        cache.computeIfAbsent("c", slice("1.2.4", "CT"), tags, o -> "x" + calls.incrementAndGet());
+        Assert.assertEquals(4, calls.get());
+        Assert.assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testNullNotMemoized() {
+        SeriesCache<String> cache = new SeriesCache<>(16, 60_000);
+        AtomicInteger calls = new AtomicInteger();
+        int[] tags = {};
+        Assert.assertNull(cache.computeIfAbsent("c", slice("1", "CT"), tags, o -> {
+            calls.incrementAndGet();
+            return null;
+        }));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals("ok", cache.computeIfAbsent("c", slice("1", "CT"), tags, o -> {
+            calls.incrementAndGet();
+            return "ok";
+        }));
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testNoSeries() {
+        SeriesCache<Integer> cache = new SeriesCache<>(16, 60_000);
+        AtomicInteger calls = new AtomicInteger();
+        BasicDicomObject obj = new BasicDicomObject();
+        cache.computeIfAbsent("c", obj, new int[0], o -> calls.incrementAndGet());
+        cache.computeIfAbsent("c", obj, new int[0], o -> calls.incrementAndGet());
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBounded() {
+        SeriesCache<Integer> cache = new SeriesCache<>(2, 60_000);
+        int[] tags = {};
+        cache.computeIfAbsent("c", slice("1", "CT"), tags, o -> 1);
+        cache.computeIfAbsent("c", slice("2", "CT"), tags, o -> 2);
+        cache.computeIfAbsent("c", slice("1", "CT"), tags, o -> -1);
+        cache.computeIfAbsent("c", slice("3", "CT"), tags, o -> 3);
+        Assert.assertEquals(2, cache.size());
+        // the least recently used series was dropped
+        Assert.assertEquals(Integer.valueOf(1), cache.computeIfAbsent("c", slice("1", "CT"), tags, o -> -1));
+        Assert.assertEquals(Integer.valueOf(-2), cache.computeIfAbsent("c", slice("2", "CT"), tags, o -> -2));
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        SeriesCache<Integer> cache = new SeriesCache<>(16, 1);
+        int[] tags = {};
+        cache.computeIfAbsent("c", slice("1", "CT"), tags, o -> 1);
+        Thread.sleep(5);
+        Assert.assertEquals(Integer.valueOf(2), cache.computeIfAbsent("c", slice("1", "CT"), tags, o -> 2));
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2016  Universidade de Aveiro, DETI/IEETA, Bioinformatics Group - http://bioinformatics.ua.pt/
+ *
+ * This file is part of Dicoogle/dicoogle-classification-api.
+ *
+ * Dicoogle/dicoogle-classification-api is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Dicoogle/dicoogle-classification-api is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Dicoogle.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package pt.ua.dicoogle.classification.api.worker;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import org.dcm4che2.data.DicomObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import pt.ua.dicoogle.classification.api.AbstractClassifierManager;
+import pt.ua.dicoogle.classification.api.ClassificationException;
+import pt.ua.dicoogle.classification.api.ClassifierDescriptor;
+import pt.ua.dicoogle.classification.api.ClassifierInterface;
+
+public class WorkerPoolTest {
+
+    /** Sums the data point, fails on criterion "fail", throws an error on criterion "error" and crashes on
+     * criterion "crash". */
+    public static class SumFactory implements WorkerFactory<float[]> {
+        @Override
+        public ClassifierInterface<float[]> create(String... args) {
+            return (criterion, item, parameters) -> {
+                if (criterion.equals("crash")) {
+                    Runtime.getRuntime().halt(1);
+                }
+                if (criterion.equals("error")) {
+                    throw new StackOverflowError("thrown on purpose");
+                }
+                if (criterion.equals("fail")) {
+                    throw new ClassificationException(criterion, "failed on purpose");
+                }
+                double sum = 0;
+                for (float v : item) {
+                    sum += v;
+                }
+                return Collections.singletonMap(criterion + "#sum", sum);
+            };
+        }
+
+        @Override
+        public DataPointCodec<float[]> getCodec() {
+            return DataPointCodec.FLOAT_ARRAY;
+        }
+    }
+
+    private static float[] ones(int n) {
+        float[] item = new float[n];
+        java.util.Arrays.fill(item, 1);
+        return item;
+    }
+
+    @Test
+    public void testPredict() {
+        // small slots, so that the larger data point goes inline
+        try (WorkerPool<float[]> pool = new WorkerPool<>(SumFactory.class, Collections.emptyList(), 2, 2,
+                64, 30000)) {
+            Assert.assertEquals(2, pool.getHealthyWorkers());
+            Map<String, Double> p = pool.predict("organ", ones(10));
+            Assert.assertEquals(10, p.get("organ#sum"), 1e-9);
+            p = pool.predict("organ", ones(100));
+            Assert.assertEquals(100, p.get("organ#sum"), 1e-9);
+            try {
+                pool.predict("fail", ones(1));
+                Assert.fail("expected a classification exception");
+            } catch (ClassificationException ex) {
+                Assert.assertEquals("fail", ex.getCriterion());
+            }
+        }
+    }
+
+    @Test
+    public void testRestart() throws InterruptedException {
+        try (WorkerPool<float[]> pool = new WorkerPool<>(SumFactory.class, Collections.emptyList(), 1, 1)) {
+            try {
+                pool.predict("crash", ones(1));
+                Assert.fail("expected a worker failure");
+            } catch (UncheckedIOException ex) {
+                // the worker failed, not the classifier
+            }
+            long deadline = System.currentTimeMillis() + 30000;
+            while (pool.getRestarts() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Assert.assertEquals(1, pool.getRestarts());
+            Assert.assertEquals(3, pool.predict("organ", ones(3)).get("organ#sum"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testError() throws InterruptedException {
+        try (WorkerPool<float[]> pool = new WorkerPool<>(SumFactory.class, Collections.emptyList(), 1, 1)) {
+            try {
+                pool.predict("error", ones(1));
+                Assert.fail("expected a classification exception");
+            } catch (ClassificationException ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("StackOverflowError"));
+            }
+            // the worker exits after answering, and is replaced
+            long deadline = System.currentTimeMillis() + 30000;
+            while (pool.getRestarts() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Assert.assertEquals(1, pool.getRestarts());
+            Assert.assertEquals(3, pool.predict("organ", ones(3)).get("organ#sum"), 1e-9);
+        }
+    }
+
+    private static class SumDescriptor implements ClassifierDescriptor {
+        @Override
+        public String getName() {
+            return "sum";
+        }
+
+        @Override
+        public Collection<String> getCriteria() {
+            return Collections.singleton("organ");
+        }
+
+        @Override
+        public boolean isPreload() {
+            return true;
+        }
+    }
+
+    /** Hosts the sum classifier in a worker pool. */
+    private static class SumManager
+            extends AbstractClassifierManager<WorkerPool<float[]>, float[], SumDescriptor> {
+        @Override
+        protected WorkerPool<float[]> createClassifier(SumDescriptor descriptor) {
+            return this.createWorkerPool(descriptor, SumFactory.class);
+        }
+
+        @Override
+        protected boolean canClassify(String criterion, DicomObject obj, Object... parameters) {
+            return true;
+        }
+
+        @Override
+        protected float[] toDataPoint(DicomObject dicomObject) {
+            return ones(1);
+        }
+
+        @Override
+        public String getName() {
+            return "sum";
+        }
+    }
+
+    @Test
+    public void testManagerReset() {
+        SumManager m = new SumManager();
+        m.register(new SumDescriptor());
+        WorkerPool<float[]> first = m.getClassifiers().findFirst().get();
+        Assert.assertEquals(2, m.predict("organ", ones(2)).get("sum#organ#sum"), 1e-9);
+        m.reset("sum");
+        Assert.assertTrue(first.isClosed());
+        Assert.assertEquals(0, first.getHealthyWorkers());
+
+        // a new pool is started on demand
+        Assert.assertEquals(3, m.predict("organ", ones(3)).get("sum#organ#sum"), 1e-9);
+        WorkerPool<float[]> second = m.getClassifiers().findFirst().get();
+        Assert.assertFalse(second.isClosed());
+        m.resetAll();
+        Assert.assertTrue(second.isClosed());
+    }
+}